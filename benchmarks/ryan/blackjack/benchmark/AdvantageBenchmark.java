@@ -0,0 +1,62 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+package ryan.blackjack.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ryan.blackjack.dataAccess.SettingsDA;
+import ryan.blackjack.domain.PlayerAdvantage;
+import ryan.blackjack.domain.Settings;
+import ryan.blackjack.domain.Shoe;
+
+/**
+ * Evaluates the player advantage of a full shoe, as GameLogic.evaluatePlayerAdvantage() does on
+ * its first call. Every invocation starts with new evaluators, so nothing is cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AdvantageBenchmark
+{
+    @Param({"1", "2", "6", "8"})
+    public int countDecks;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Settings settings;
+    private Shoe     shoe;
+
+    @Setup
+    public void setUp()
+    {
+        settings = SettingsDA.getInstance().defaultSettings();
+        settings.setShoeCapacity(countDecks * 52);
+        settings.setEvaluateAdvantageInParallel(parallel);
+        shoe = new Shoe(settings);
+    }
+
+    @Benchmark
+    public double evaluatePlayerAdvantage()
+    {
+        return PlayerAdvantage.evaluate(settings, shoe).totalPlayerROI();
+    }
+}
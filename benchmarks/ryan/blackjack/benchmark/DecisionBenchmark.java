@@ -0,0 +1,118 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+package ryan.blackjack.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ryan.blackjack.dataAccess.SettingsDA;
+import ryan.blackjack.domain.Card;
+import ryan.blackjack.domain.DealerHand;
+import ryan.blackjack.domain.PlayerHand;
+import ryan.blackjack.domain.ROIEvaluator;
+import ryan.blackjack.domain.Settings;
+import ryan.blackjack.domain.Shoe;
+
+/**
+ * Evaluates single in-game decisions from fixed mid-shoe compositions, with cold tables.
+ * The hit ROI exercises the player's turn, the stand ROI the dealer's turn.
+ * Each composition is a 6-deck shoe, shuffled with a fixed seed, with half its cards dealt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecisionBenchmark
+{
+    @Param({"1", "2", "3"})
+    public long seed;
+
+    @Param({"hard16v10", "pair8sv9", "soft18vA"})
+    public String deal;
+
+    private int[]        cardTypeCounts13;       //shoe less dealt cards and both hands
+    private int          shoeSize;
+    private PlayerHand   pH;
+    private DealerHand   dH;
+    private ROIEvaluator evaluator;
+
+    @Setup
+    public void setUp()
+    {
+        Settings settings = SettingsDA.getInstance().defaultSettings();
+        settings.setShoeCapacity(6 * 52);
+        Shoe shoe = new Shoe(settings, new Random(seed));
+        shoe.shuffle();
+        for(int cIdx = 0; cIdx < 3 * 52; cIdx++)
+            shoe.remove(shoe.next());
+
+        pH = new PlayerHand(1.0, settings.ruleSet());
+        dH = new DealerHand();
+        if(deal.equals("hard16v10"))
+            deal(shoe, new int[]{Card.TEN, Card.SIX}, Card.KING);
+        else if(deal.equals("pair8sv9"))
+            deal(shoe, new int[]{Card.EIGHT, Card.EIGHT}, Card.NINE);
+        else
+            deal(shoe, new int[]{Card.PLAYER_ACE, Card.SEVEN}, Card.PLAYER_ACE);
+        cardTypeCounts13 = shoe.cardTypeCounts();
+        shoeSize = shoe.size();
+        evaluator = new ROIEvaluator(settings);
+    }
+
+    @Benchmark
+    public double hitROI()
+    {
+        return coldEvaluator().evaluateHitROI();
+    }
+
+    @Benchmark
+    public double standROI()
+    {
+        return coldEvaluator().evaluateStandROI();
+    }
+
+    /**
+     * Gets the evaluator with its tables cleared, set to this composition and deal
+     */
+    private ROIEvaluator coldEvaluator()
+    {
+        evaluator.clearPlayerHandROIs();
+        evaluator.setState(cardTypeCounts13.clone(), shoeSize);
+        evaluator.setHands(pH, dH);
+        return evaluator;
+    }
+
+    /**
+     * Deals the specified card types, of any suit still in the shoe, to the player and dealer
+     */
+    private void deal(Shoe shoe, int[] playerCardTypes, int dealerCardType)
+    {
+        for(int cardType : playerCardTypes)
+            pH.insertCard(remove(shoe, cardType));
+        dH.insertCard(remove(shoe, dealerCardType));
+    }
+
+    private Card remove(Shoe shoe, int cardType)
+    {
+        Card card = Card.of(cardType, shoe.probableSuit(cardType, Shoe.REMOVE));
+        shoe.remove(card);
+        return card;
+    }
+}
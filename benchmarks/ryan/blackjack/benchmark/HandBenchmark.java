@@ -0,0 +1,62 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+package ryan.blackjack.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ryan.blackjack.dataAccess.SettingsDA;
+import ryan.blackjack.domain.Card;
+import ryan.blackjack.domain.PlayerHand;
+import ryan.blackjack.domain.RuleSet;
+
+/**
+ * Hashes PlayerHands of 2 to 5 cards, as every transposition table probe used to
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandBenchmark
+{
+    private PlayerHand[] hands;
+
+    @Setup
+    public void setUp()
+    {
+        int[][] cardTypes = {{Card.TEN, Card.SIX}, {Card.PLAYER_ACE, Card.TWO, Card.FOUR},
+                {Card.TWO, Card.THREE, Card.FOUR, Card.FIVE}, 
+                {Card.TWO, Card.TWO, Card.THREE, Card.THREE, Card.FOUR}};
+        RuleSet rules = SettingsDA.getInstance().defaultSettings().ruleSet();
+        hands = new PlayerHand[cardTypes.length];
+        for(int hIdx = 0; hIdx < hands.length; hIdx++)
+        {
+            hands[hIdx] = new PlayerHand(1.0, rules);
+            for(int cardType : cardTypes[hIdx])
+                hands[hIdx].insert(cardType);
+        }
+    }
+
+    @Benchmark
+    public void hashCodes(Blackhole blackhole)
+    {
+        for(PlayerHand pH : hands)
+            blackhole.consume(pH.hashCode());
+    }
+}
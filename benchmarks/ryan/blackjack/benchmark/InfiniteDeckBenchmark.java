@@ -0,0 +1,50 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+package ryan.blackjack.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ryan.blackjack.dataAccess.SettingsDA;
+import ryan.blackjack.domain.PlayerAdvantage;
+import ryan.blackjack.domain.Settings;
+
+/**
+ * Evaluates the infinite-deck player advantage from scratch, ie. building every table, as
+ * GameLogic.evaluatePlayerAdvantage() does after the rules change in infinite-deck mode
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InfiniteDeckBenchmark
+{
+    private Settings settings;
+
+    @Setup
+    public void setUp()
+    {
+        settings = SettingsDA.getInstance().defaultSettings();
+    }
+
+    @Benchmark
+    public double evaluateInfiniteDeck()
+    {
+        return PlayerAdvantage.evaluateInfiniteDeck(settings).totalPlayerROI();
+    }
+}
@@ -0,0 +1,70 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+package ryan.blackjack.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGeneratorFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ryan.blackjack.dataAccess.SettingsDA;
+import ryan.blackjack.domain.RandomStream;
+import ryan.blackjack.domain.Settings;
+import ryan.blackjack.domain.Shoe;
+
+/**
+ * Shuffles a full 8-deck shoe with each shuffle type and random generator, and counts card types 
+ * of a full shoe
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShoeBenchmark
+{
+    @Param({"" + Shoe.SHUFFLE_TYPE_PSEUDORANDOM, "" + Shoe.SHUFFLE_TYPE_CUT_SPLIT_MERGE_LOOP})
+    public int shuffleType;
+
+    @Param({"Random", "SplittableRandom", "Xoshiro256PlusPlus", "RandomStream"})
+    public String generator;
+
+    private Shoe shoe;
+
+    @Setup
+    public void setUp()
+    {
+        Settings settings = SettingsDA.getInstance().defaultSettings();
+        settings.setShoeCapacity(8 * 52);
+        settings.setShoeShuffleType(shuffleType);
+        shoe = new Shoe(settings, generator.equals("RandomStream") ? new RandomStream(1L) :
+                RandomGeneratorFactory.of(generator).create(1L));
+    }
+
+    @Benchmark
+    public Shoe shuffle()
+    {
+        shoe.shuffle();
+        return shoe;
+    }
+
+    @Benchmark
+    public int[] cardTypeCounts()
+    {
+        return shoe.cardTypeCounts();
+    }
+}
@@ -0,0 +1,145 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// boolean saveResults(ArrayList<Cell> cells, String fileName) --> writes a CSV results table
+// int loadResults(String fileName, RuleSweep sweep)            --> primes sweep's cache from CSV
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.dataAccess;
+
+import ryan.blackjack.domain.RuleSweep;
+import ryan.blackjack.domain.Settings;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+
+/**
+ * Enables reading and writing RuleSweep results as a CSV table, one row per combination.
+ *
+ * A human-readable file is used, unlike config.dat, as the table is for analysis in other tools.
+ * The last column is the quoted rule fingerprint, so a saved table can prime the cache of a later
+ * sweep.
+ */
+public final class RuleSweepDA
+{
+    //----------------------------------------- Constants ------------------------------------------
+    public static final String HEADER =
+            "decks,h17,das,surrender,splits2toK,blackJackROI,playerROI,houseEdge,fingerprint";
+
+    //-------------------------------------- Class Attributes --------------------------------------
+    private static RuleSweepDA singleton;                   //single instance of this class
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Gets the single instance of this class
+     * @return the single instance of this class
+     */
+    public static synchronized RuleSweepDA getInstance()
+    {
+        if(singleton == null)
+            singleton = new RuleSweepDA();
+        return singleton;
+    }
+
+    /**
+     * Constructor. Private to ensure only single DA object ever exists and one time
+     */
+    private RuleSweepDA()
+    {
+    }
+
+    /**
+     * Reads a saved results table, and caches each row's advantage in sweep
+     * @param fileName the CSV file to read
+     * @param sweep the sweep to prime
+     * @return count of rows cached, or 0 if the file could not be read
+     */
+    public int loadResults(String fileName, RuleSweep sweep)
+    {
+        BufferedReader in = null;
+        int countRows = 0;
+
+        try
+        {
+            in = new BufferedReader(new FileReader(fileName));
+            String line = in.readLine();                     //header
+            while((line = in.readLine()) != null)
+            {
+                int quote = line.indexOf('"');
+                if(quote < 0 || !line.endsWith("\""))
+                    continue;                                //not a results row
+                String[] columns = line.substring(0, quote).split(",");
+                sweep.cache(line.substring(quote + 1, line.length() - 1),
+                        Double.parseDouble(columns[6]));
+                countRows++;
+            }
+        }
+        catch(FileNotFoundException fnfe)
+        {
+            System.err.println(fileName + " not found. Evaluating every combination");
+        }
+        catch(IOException | RuntimeException e)
+        {
+            System.err.println("Load error. Evaluating every combination not yet loaded");
+        }
+        finally
+        {
+            try
+            {
+                if(in != null)
+                    in.close();
+            }
+            catch(IOException ioe)
+            {
+                ioe.printStackTrace();
+            }
+        }
+        return countRows;
+    }
+
+    /**
+     * Writes a results table, one row per combination, in the order given
+     * @param cells the results of a sweep
+     * @param fileName the CSV file to write. Replaced if it exists.
+     * @return whether the table was written
+     */
+    public boolean saveResults(ArrayList<RuleSweep.Cell> cells, String fileName)
+    {
+        PrintWriter out = null;
+
+        try
+        {
+            out = new PrintWriter(new FileWriter(fileName));
+            out.println(HEADER);
+            for(RuleSweep.Cell cell : cells)
+            {
+                Settings s = cell.settings();
+                out.println(s.shoeCapacity() / 52 + "," + s.dealerHitsSoft17() + "," +
+                        s.canDoubleAfter2toK_Split() + "," + s.surrenderType() + "," +
+                        s.times2toK_Splittable() + "," + s.blackJackROI() + "," +
+                        cell.playerROI() + "," + cell.houseEdge() + ",\"" +
+                        cell.fingerprint() + "\"");
+            }
+            return !out.checkError();
+        }
+        catch(IOException ioe)
+        {
+            System.err.println("Save error");
+            return false;
+        }
+        finally
+        {
+            if(out != null)
+                out.close();
+        }
+    }
+}
@@ -9,10 +9,7 @@
 package ryan.blackjack.dataAccess;
 
 import ryan.blackjack.domain.Settings;
-import ryan.blackjack.domain.PlayerHand;
-import ryan.blackjack.domain.ROI;
 import ryan.blackjack.domain.CountStrategy;
-import ryan.blackjack.domain.BetStrategy;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -82,7 +79,7 @@ public final class SettingsDA
     /**
      * Attempts to load saved Settings.
      * 
-     * If successful, applies relevant settings to domain class static variables
+     * If successful, applies the custom CountStrategy settings to CountStrategy
      * @return System settings
      */
     public Settings loadSettings()
@@ -131,28 +128,14 @@ public final class SettingsDA
     }
 
     /**
-     * Update all relevant system static variables
-     * @return System settings
+     * Updates the custom CountStrategy name and adjustments, as displayed.
+     * Table rules are not global: they are read from settings.ruleSet() by each table.
+     * @param settings System settings
      */
     public void applySettingsToSystem(Settings settings)
     {
         CountStrategy.setCustomName(settings.customCountName());
         CountStrategy.setCustomAdjustments(settings.customCountAdjustments());
-        BetStrategy.setMinBet(settings.minBet());
-        BetStrategy.setMaxBet(settings.maxBet());
-        ROI.setBlackJackROI(settings.blackJackROI());
-        ROI.setSplitBlackJackROI(settings.splitBlackJackROI());
-        ROI.setFiveCard21Amount(settings.fiveCard21Amount());
-        PlayerHand.setCanHitAfterAcesSplit(settings.canHitAfterAcesSplit());
-        PlayerHand.setSplitCardEqualityType(settings.splitCardEqualityType());
-        PlayerHand.setTimes2toK_Splittable(settings.times2toK_Splittable());
-        PlayerHand.setTimesAcesSplittable(settings.timesAcesSplittable());
-        PlayerHand.setDoublableStates(
-        		settings.doublableCardCounts(),
-        		settings.doublableScores(),
-                settings.canDoubleAfter2toK_Split(),
-                settings.canDoubleAfterAcesSplit()
-        );
     }
 
 
@@ -18,19 +18,19 @@ public class Bank {
     private double                 	currentBank;              	//Current bank balance
     private double                 	minBank;                  	//Lowest bank balance ever experienced
     private double                 	maxBank;                  	//Highest bank balance ever experienced
-    private int						bankHistoryIncrements;		//increment between rounds ,ie initial is {1,2,3...} => 1
+    private long					bankHistoryIncrements;		//increment between rounds ,ie initial is {1,2,3...} => 1
     
-    private int						roundsPlayed;				//how many rounds played by this player (might not equal total rounds if player sat out)
+    private long					roundsPlayed;				//how many rounds played by this player (might not equal total rounds if player sat out)
     
-    private TreeMap<Integer,Double>		bankHistory;              	//Maps round number to bank level prior to round. eg {2=>$1000} is AFTER round 2 is complete
+    private TreeMap<Long,Double>		bankHistory;              	//Maps round number to bank level prior to round. eg {2=>$1000} is AFTER round 2 is complete
     
     public Bank(double initialBank)
     {
-    	bankHistory = new TreeMap<Integer,Double>();
+    	bankHistory = new TreeMap<Long,Double>();
     	roundsPlayed = 0;
         bankHistoryIncrements = 1;
         
-    	bankHistory.put(0, initialBank);
+    	bankHistory.put(0L, initialBank);
         currentBank = initialBank;
         minBank = initialBank;
         maxBank = initialBank;
@@ -38,7 +38,7 @@ public class Bank {
     
     public double initialBank()
     {
-    	return bankHistory.get(0);
+    	return bankHistory.get(0L);
     }
     
     public double currentBank()
@@ -79,12 +79,41 @@ public class Bank {
     }
     
     
+    //appends other's rounds to this bank, as if they were played after this bank's rounds.
+    //other's balances are offset so its initial bank is this bank's current bank
+    public void merge(Bank other)
+    {
+    	double offset = currentBank - other.initialBank();
+    	minBank = Math.min(minBank, other.minBank + offset);
+    	maxBank = Math.max(maxBank, other.maxBank + offset);
+
+    	//record other's history at this bank's increments, from the round each falls within
+    	long totalRounds = roundsPlayed + other.roundsPlayed;
+    	long round = (roundsPlayed + bankHistoryIncrements - 1) / bankHistoryIncrements * 
+    			bankHistoryIncrements;
+    	while(round < totalRounds)
+    	{
+    		bankHistory.put(round, other.bankHistory.floorEntry(round - roundsPlayed).getValue() + 
+    				offset);
+    		if(BANK_HISTORY_MAX_SIZE == bankHistory.size())
+    		{
+    			reduceBankHistory();
+    			round = round / bankHistoryIncrements * bankHistoryIncrements;
+    		}
+    		round += bankHistoryIncrements;
+    	}
+
+    	roundsPlayed = totalRounds;
+    	currentBank = other.currentBank + offset;
+    }
+    
+    
     //increases the increment between data points
     private void reduceBankHistory()
     {
     	bankHistoryIncrements *= 2;
-    	TreeMap<Integer,Double> newBankHistory = new TreeMap<Integer,Double>();
-    	for(int i = 0; i <= bankHistory.lastKey(); i += bankHistoryIncrements)
+    	TreeMap<Long,Double> newBankHistory = new TreeMap<Long,Double>();
+    	for(long i = 0; i <= bankHistory.lastKey(); i += bankHistoryIncrements)
     	{
     		newBankHistory.put(i, bankHistory.get(i));
     	}
@@ -92,8 +121,8 @@ public class Bank {
     }
     
     @SuppressWarnings("unchecked")
-	public TreeMap<Integer,Double> bankHistory()
+	public TreeMap<Long,Double> bankHistory()
     {
-    	return (TreeMap<Integer,Double>)bankHistory.clone();
+    	return (TreeMap<Long,Double>)bankHistory.clone();
     }
 }
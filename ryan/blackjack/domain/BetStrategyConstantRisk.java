@@ -46,14 +46,15 @@ public final class BetStrategyConstantRisk extends BetStrategy
      * If trueCount is below threshold, or player is in debt, returns table's minimum bet. 
      * Else returns a fixed proportion of the players bank.
      * @param trueCount this player's CountStrategy's current trueCount
+     * @param rules the table rules, eg its minimum and maximum bets
      * @return initial bet for the coming round
      */
-    public double getBet(double trueCount)
+    public double getBet(double trueCount, RuleSet rules)
     {
-        if(trueCount < trueCountThreshold || player.bank() < minBet())
-            return minBet();
+        if(trueCount < trueCountThreshold || player.bank() < rules.minBet())
+            return rules.minBet();
         else
-            return Math.min( maxBet(), player.bank() / bankToBetRatio);
+            return Math.min( rules.maxBet(), player.bank() / bankToBetRatio);
     }
 
     /**
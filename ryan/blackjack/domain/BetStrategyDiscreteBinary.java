@@ -37,9 +37,10 @@ public final class BetStrategyDiscreteBinary extends BetStrategy
      * If trueCount is less than threshold, return low bet, otherwise return big bet
      * 
      * @param trueCount this player's CountStrategy's current trueCount
+     * @param rules the table rules, eg its minimum and maximum bets
      * @return initial bet for the coming round
      */
-    public double getBet(double trueCount)
+    public double getBet(double trueCount, RuleSet rules)
     {
         if(trueCount < trueCountThreshold)
             return lowBet;
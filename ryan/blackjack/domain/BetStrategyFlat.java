@@ -31,9 +31,10 @@ public final class BetStrategyFlat extends BetStrategy
      * Gets an initial bet for a round. Always returns the same value, regardless of count value
      * 
      * @param trueCount this player's CountStrategy's current trueCount. (IGNORED)
+     * @param rules the table rules, eg its minimum and maximum bets
      * @return initial bet for the coming round
      */
-    public double getBet(double trueCount)
+    public double getBet(double trueCount, RuleSet rules)
     {
         return betSize;
     }
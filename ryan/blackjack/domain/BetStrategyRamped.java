@@ -39,14 +39,15 @@ public final class BetStrategyRamped extends BetStrategy
      * Else, places a bet that varies proportionally with trueCounts excess of trueCount threshold
      * 
      * @param trueCount this player's CountStrategy's current trueCount
+     * @param rules the table rules, eg its minimum and maximum bets
      * @return initial bet for the coming round
      */
-    public double getBet(double trueCount)
+    public double getBet(double trueCount, RuleSet rules)
     {
         if(trueCount < trueCountThreshold)
-            return minBet();
+            return rules.minBet();
         else
-            return Math.min(maxBet(),
+            return Math.min(rules.maxBet(),
                     minRampedBet + minRampedBet * (trueCount - trueCountThreshold) * rampFactor);
     }
 
@@ -34,11 +34,12 @@ public final class BetStrategyUserSpecified extends BetStrategy
      * Gets an initial bet for a round. Gets the value from the user
      * 
      * @param trueCount this player's CountStrategy's current trueCount
+     * @param rules the table rules, eg its minimum and maximum bets
      * @return initial bet for the coming round
      */
-    public double getBet(double trueCount)
+    public double getBet(double trueCount, RuleSet rules)
     {
-        return ui.getBet(pIdx, minBet(), maxBet());
+        return ui.getBet(pIdx, rules.minBet(), rules.maxBet());
     }
 }
 
@@ -9,12 +9,16 @@
 package ryan.blackjack.domain;
 
 /**
- * Card class
+ * Card class.
+ * Cards are immutable flyweights: there is exactly one instance of each of the 52 cards, got by
+ * Card.of(). Each also has an int code, (playerType * 4 + suit), which Shoe and Hand store in
+ * place of a reference.
  */
 public final class Card
 {
     //----------------------------------------- Constants ------------------------------------------
     public static final int COUNT_CARD_SUITS =  4;
+    public static final int COUNT_CARDS      = 52;           //count of distinct cards, and codes
     
     public static final int CLUBS    = 0;
     public static final int DIAMONDS = 1;
@@ -74,19 +78,92 @@ public final class Card
             return DEALER_ACE;
     }
 
-    private int type;                                            //{2,3,4,5,6,7,8,9,X,J,Q,K,A}
-    private int suit;                                            //{Club,Diamond,Heart,Spade}
+    // the canonical instance of each card, indexed by code
+    private static final Card[] CARDS = new Card[COUNT_CARDS];
+    static
+    {
+        for(int type = TWO; type <= PLAYER_ACE; type++)
+            for(int suit = CLUBS; suit <= SPADES; suit++)
+                CARDS[code(type, suit)] = new Card(type, suit);
+    }
+
+    /**
+     * Returns the code of the specified card
+     * @param type player card type {0-12}
+     * @param suit suit {0-3}
+     * @return the code of the card, (type * 4 + suit)
+     */
+    public static int code(int type, int suit)
+    {
+        return type * COUNT_CARD_SUITS + suit;
+    }
 
     /**
-     * Constructor
+     * Returns the canonical Card of the specified type and suit
+     * @param type player card type {0-12}
+     * @param suit suit {0-3}
+     * @return the canonical Card of the specified type and suit
      */
-    public Card(int type, int suit)
+    public static Card of(int type, int suit)
     {
         if(type < TWO || type > PLAYER_ACE || suit < CLUBS || suit > SPADES)
             throw new IllegalArgumentException("type: " + type + ", suit: " + suit);
+        return CARDS[code(type, suit)];
+    }
+
+    /**
+     * Returns the canonical Card with the specified code
+     * @param code a card code, as from code()
+     * @return the canonical Card with the specified code
+     */
+    public static Card of(int code)
+    {
+        if(code < 0 || code >= COUNT_CARDS)
+            throw new IllegalArgumentException("code: " + code);
+        return CARDS[code];
+    }
+
+    /**
+     * Returns the player card type of the specified code
+     * @param code a card code, as from code()
+     * @return the player card type {0-12} of the specified code
+     */
+    public static int playerType(int code)
+    {
+        return code / COUNT_CARD_SUITS;
+    }
 
+    /**
+     * Returns the suit of the specified code
+     * @param code a card code, as from code()
+     * @return the suit {0-3} of the specified code
+     */
+    public static int suit(int code)
+    {
+        return code % COUNT_CARD_SUITS;
+    }
+
+    private final int type;                                      //{2,3,4,5,6,7,8,9,X,J,Q,K,A}
+    private final int suit;                                      //{Club,Diamond,Heart,Spade}
+    private final int code;                                      //type * 4 + suit
+
+    /**
+     * Constructor (private). Use Card.of() to get a Card
+     */
+    private Card(int type, int suit)
+    {
         this.type = type;
         this.suit = suit;
+        this.code = code(type, suit);
+    }
+
+    /**
+     * Returns the code of this card, (playerType * 4 + suit)
+     * @return the code of this card
+     */
+    public int code()
+    {
+        return code;
     }
 
     /**
@@ -145,14 +222,16 @@ public final class Card
     @Override
     public boolean equals(Object other)
     {
-        if(!(other instanceof Card))
-            return false;
-
-        Card o = (Card)other;
+        return other instanceof Card && ((Card)other).code == code;
+    }
 
-        if(o.playerType() == playerType() && o.suit() == suit())
-            return true;
-        else
-            return false;    
+    /**
+     * Returns this card's code, which is unique to each card and consistent with equals()
+     * @return this card's code
+     */
+    @Override
+    public int hashCode()
+    {
+        return code;
     }
 }
\ No newline at end of file
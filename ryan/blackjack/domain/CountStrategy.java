@@ -9,7 +9,11 @@
 package ryan.blackjack.domain;
 
 /**
- * CountStrategy class
+ * CountStrategy class.
+ * Holds the running count adjustment of each card value for each CountStrategy: the built-in
+ * strategies, the custom strategy, and any registered later. A flattened [playerCardType][strategy]
+ * delta table is rebuilt whenever adjustments change, so Shoe can update every running count in a
+ * single pass over one row per card.
  */
 public final class CountStrategy
 {
@@ -52,13 +56,15 @@ public final class CountStrategy
     public static final boolean    DEFAULT_DISPLAY_PLAYER_BJ_GUAGE = true;
 
     //-------------------------------------- Class Attributes --------------------------------------
-    private static String[] names = new String[8];              //names of each CountStrategy
+    //names and adjustments of each CountStrategy. Each is replaced by a copy on every change, never
+    // written or resized in place, so a reader always sees a complete table
+    private static volatile String[] names = new String[8];
     static
     {
         for(int idx = 0; idx < DEFAULT_NAMES.length; idx++)
             names[idx] = DEFAULT_NAMES[idx];
     }
-    private static double[][] adjustments = new double[8][10];  //adjustments for each CountStrategy
+    private static volatile double[][] adjustments = new double[8][10];
     static
     {
         for(int idx = 0; idx < DEFAULT_ADJUSTMENTS.length; idx++)
@@ -71,22 +77,25 @@ public final class CountStrategy
      * Sets the name of the custom CountStrategy
      * @param customName name of Custom CountStrategy
      */
-    public static void setCustomName(String customName)
+    public static synchronized void setCustomName(String customName)
     {
         if(customName == null)
             throw new IllegalArgumentException("Custom Name cannot be null");
         if(customName.length() == 0)
             throw new IllegalArgumentException("Custom Name cannot be Zero-length");
     
-        names[names.length - 1] = customName;
+        String[] newNames = names.clone();
+        newNames[CUSTOM] = customName;
+        names = newNames;
     }
 
     /**
-     * Sets the running count adjustments for the custom CountStrategy
+     * Sets the running count adjustments for the custom CountStrategy, as displayed.
+     * Shoes count with the custom adjustments of their own RuleSet.
      * 
      * @param customAdjustments array of running count adjustments
      */
-    public static void setCustomAdjustments(double[] customAdjustments)
+    public static synchronized void setCustomAdjustments(double[] customAdjustments)
     {
         if(customAdjustments == null)
             throw new IllegalArgumentException("Custom Adjustments cannot be null");
@@ -95,7 +104,64 @@ public final class CountStrategy
             throw new IllegalArgumentException("length must be COUNT_ADJUSTMENTS_TYPES: " + 
                     customAdjustments.length);
         
-        adjustments[adjustments.length - 1] = customAdjustments.clone();
+        double[][] newAdjustments = adjustments.clone();
+        newAdjustments[CUSTOM] = customAdjustments.clone();
+        adjustments = newAdjustments;
+    }
+
+    /**
+     * Registers a new CountStrategy, (eg to compare systems in a simulation)
+     * 
+     * @param name name of the new CountStrategy
+     * @param strategyAdjustments running count adjustments, one per COUNT_ADJUSTMENTS_TYPES
+     * @return the new CountStrategy
+     */
+    public static synchronized int register(String name, double[] strategyAdjustments)
+    {
+        if(name == null || name.length() == 0)
+            throw new IllegalArgumentException("Name cannot be null or Zero-length");
+        if(strategyAdjustments == null || strategyAdjustments.length != COUNT_ADJUSTMENTS_TYPES)
+            throw new IllegalArgumentException("length must be COUNT_ADJUSTMENTS_TYPES");
+
+        int strategy = names.length;
+        String[] newNames = new String[strategy + 1];
+        double[][] newAdjustments = new double[strategy + 1][];
+        System.arraycopy(names, 0, newNames, 0, strategy);
+        System.arraycopy(adjustments, 0, newAdjustments, 0, strategy);
+        newNames[strategy] = name;
+        newAdjustments[strategy] = strategyAdjustments.clone();
+        names = newNames;
+        adjustments = newAdjustments;
+        return strategy;
+    }
+
+    /**
+     * Gets the count of CountStrategies, including the custom and any registered strategies
+     * 
+     * @return the count of CountStrategies
+     */
+    public static int countStrategies()
+    {
+        return names.length;
+    }
+
+    /**
+     * Builds a delta table: the running count adjustment of every CountStrategy registered so far
+     * for every card type, at [playerCardType * (deltas.length / 13) + strategy].
+     * 
+     * @param customAdjustments running count adjustments of the custom CountStrategy
+     * @return a new delta table
+     */
+    static double[] buildDeltas(double[] customAdjustments)
+    {
+        double[][] adjustments = CountStrategy.adjustments;
+        int count = adjustments.length;
+        double[] table = new double[Card.COUNT_PLAYER_CARD_TYPES * count];
+        for(int type = Card.TWO; type <= Card.PLAYER_ACE; type++)
+            for(int strategy = 0; strategy < count; strategy++)
+                table[type * count + strategy] = (strategy == CUSTOM ? customAdjustments : 
+                        adjustments[strategy])[Card.PLAYER_VALUES[type] - 2];
+        return table;
     }
 
     /**
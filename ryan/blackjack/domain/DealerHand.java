@@ -73,29 +73,9 @@ public final class DealerHand extends Hand
         confirmedNotBlackJack = true;
     }
 
-    /** 
-     * Produces a unique hashCode for the 4,171 unique bust/!bust card combinations
-     * @return hashcode of this DealerHand
-     */
-    @Override
-    public int hashCode()
-    {
-        if(hashCode != Hand.INVALID)
-            return hashCode;
-        hashCode = cardTypeCount(0) + 1;
-        for(int i = 1; i < 13; i++)
-        {
-            hashCode = hashCode * 23;
-            hashCode += cardTypeCount(i) + 1;
-        }
-        if(hashCode == Hand.INVALID)
-            hashCode--;
-        return hashCode;
-    }
-
     /**
      * Temporarily inserts the specified cardType in this hand. 
-     * Does not modify Card[].
+     * Does not modify cards[].
      * (Must be fast as this method is called many times during prob. evaluation)
      * @param cardType the card type to insert
      */
@@ -114,7 +94,7 @@ public final class DealerHand extends Hand
             score -= 10;
             countSoftAces--;
         }
-        hashCode = Hand.INVALID;                                //to reflect that hand has changed
+        key += KEY_WEIGHTS[cardType];          //unique for the 4,171 unique bust/!bust combos
     }
 
     /**
@@ -125,19 +105,20 @@ public final class DealerHand extends Hand
     @Override
     public void insertCard(Card card)
     {
-        cards[countCards] = card;
+        cards[countCards] = card.code();
         insert(card.dealerType());
     }
 
     /**
      * Removes the most recently inserted cardType from this hand
-     * Reverses a temporary change to the hand. Does not modify Card[].
+     * Reverses a temporary change to the hand. Does not modify cards[].
      * (Must be fast as this method is called many times during probability evaluation)
      */
     @Override
     public void removeLast()
     {
         score -= Card.DEALER_VALUES[cardTypes[--countCards]];
+        key -= KEY_WEIGHTS[cardTypes[countCards]];
         if(cardTypes[countCards] == Card.DEALER_ACE)
         {
             countAces--;
@@ -148,7 +129,6 @@ public final class DealerHand extends Hand
             score += 10;
             countSoftAces++;
         }
-        hashCode = -1;
     }
 
 }
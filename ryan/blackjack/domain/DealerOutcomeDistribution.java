@@ -0,0 +1,531 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// void evaluate(DealerHand dH, int[] cardTypeCounts10, int shoeSize)
+//                                   --> selects the distribution for this state, computing if new
+// double probability(int outcome)   --> probability of outcome in the selected distribution
+// double standROI(PlayerHand pH)    --> O(1) ROI of pH standing against the selected distribution
+// void clear()                      --> removes all cached distributions
+// static SharedTranspositionTable createSharedDistributions(long memoryBytes,
+//         EvaluationSession session)
+//                                   --> distributions for engines on several threads to share
+
+// *********************************************ERRORS**********************************************
+// IllegalStateException             --> if shoe empties during evaluation
+package ryan.blackjack.domain;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Dealer final-outcome distribution engine.
+ * The probability of each final dealer outcome (17, 18, 19, 20, 21, bust, BlackJack) depends
+ * only on the dealer's hand, whether the dealer has peeked, and the remaining shoe composition.
+ * It does not depend on the PlayerHand. Each distribution is therefore computed once per
+ * composition and cached, after which the ROI of standing on any score is an O(1) dot product.
+ * The cache is bounded. Once full it is cleared, as a distribution is cheap to recompute.
+ * Engines on different threads may instead share a single SharedTranspositionTable of
+ * distributions, so that a composition evaluated by one is reused by all. Engines for dealer 10,
+ * J, Q and K face cards reach the same compositions of dealer card types. A shared table's storage
+ * is owned by an EvaluationSession, so may be off the Java heap. The private caches always stay
+ * on the heap, as the sub-hand cache is scratch space reused for every composition.
+ */
+public final class DealerOutcomeDistribution
+{
+    //----------------------------------------- Constants ------------------------------------------
+    public static final int    COUNT_OUTCOMES = 7;
+    public static final int    LOWEST_STAND_SCORE = 17;      //outcome of dealer score s is s - 17
+    public static final int    BUST           = 5;
+    public static final int    BLACKJACK      = 6;
+
+    private static final int   NOT_FINAL      = -1;      //dealer must draw
+
+    private static final long  FINGERPRINT_SEED = 0x5DEECE66DL;
+
+    //-------------------------------------- Class Attributes --------------------------------------
+    //random weights for fingerprinting a state. A state's fingerprint is the sum of the weights of
+    // each card remaining, plus the weights of the DealerHand and its peek state.
+    private static final long[] CARD_TYPE_WEIGHTS = new long[Card.COUNT_DEALER_CARD_TYPES];
+    private static final long   HAND_WEIGHT;
+    private static final long   PEEKED_WEIGHT;
+    static
+    {
+        Random random = new Random(FINGERPRINT_SEED);
+        for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
+            CARD_TYPE_WEIGHTS[cardType] = random.nextLong() | 1;
+        HAND_WEIGHT = random.nextLong() | 1;
+        PEEKED_WEIGHT = random.nextLong();
+    }
+
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final long   DEFAULT_MEMORY_BYTES = 9L << 20;        //both caches, ~64K entries
+    public static final long   DEFAULT_SHARED_MEMORY_BYTES = 16L << 20; //256K distributions
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Creates a table of distributions for engines on different threads to share
+     * @param memoryBytes memory budget of the table. Allocated in full, so capped at 
+     *                    DEFAULT_SHARED_MEMORY_BYTES.
+     * @param session session owning the table's storage, on or off the Java heap
+     * @return an empty table of distributions
+     */
+    public static SharedTranspositionTable createSharedDistributions(long memoryBytes, 
+            EvaluationSession session)
+    {
+        return new SharedTranspositionTable(SharedTranspositionTable.capacityFor(
+                Math.min(memoryBytes, DEFAULT_SHARED_MEMORY_BYTES), COUNT_OUTCOMES), 
+                COUNT_OUTCOMES, session);
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings        settings;               //current System settings
+    private OutcomeTable    distributions;          //distribution of each fingerprinted state
+    private SharedTranspositionTable sharedDistributions;   //used instead, if shared
+    private OutcomeTable    dealerHandOutcomes;     //distribution of each sub-hand of a single state
+    private double[][]      outcomes;               //[countCards][outcome] work space per depth
+    private int[]           drawCardTypes;          //[countCards] card type drawn by each frame
+    private double[]        drawProbs;              //[countCards] probability of that card
+    private double[]        selected;               //distribution selected by evaluate()
+    private int[]           cardTypeCounts10;       //borrowed from caller during evaluate()
+    private int             shoeSize;               //borrowed from caller during evaluate()
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Caches within the default memory budget.
+     * @param settings the settings to evaluate against. Read, never modified.
+     */
+    public DealerOutcomeDistribution(Settings settings)
+    {
+        this(settings, DEFAULT_MEMORY_BYTES);
+    }
+
+    /**
+     * Constructor
+     * @param settings the settings to evaluate against. Read, never modified.
+     * @param memoryBytes memory budget of both caches, shared equally
+     */
+    public DealerOutcomeDistribution(Settings settings, long memoryBytes)
+    {
+        this(settings, memoryBytes, null);
+    }
+
+    /**
+     * Constructor
+     * @param settings the settings to evaluate against. Read, never modified.
+     * @param memoryBytes memory budget of the private caches: shared equally between
+     *                    distributions and sub-hands, or all for sub-hands if distributions are
+     *                    shared
+     * @param sharedDistributions table of distributions shared with engines on other threads, 
+     *                            as from createSharedDistributions(), or null to cache privately
+     */
+    public DealerOutcomeDistribution(Settings settings, long memoryBytes, 
+            SharedTranspositionTable sharedDistributions)
+    {
+        this.settings = settings;
+        long subHandBytes = memoryBytes;
+        if(sharedDistributions == null)
+        {
+            subHandBytes = memoryBytes / 2;
+            distributions = new OutcomeTable(OutcomeTable.capacityFor(memoryBytes - subHandBytes));
+        }
+        this.sharedDistributions = sharedDistributions;
+        dealerHandOutcomes = new OutcomeTable(OutcomeTable.capacityFor(subHandBytes));
+        outcomes = new double[DealerHand.MAX_COUNT_CARDS + 1][COUNT_OUTCOMES];
+        drawCardTypes = new int[DealerHand.MAX_COUNT_CARDS + 1];
+        drawProbs = new double[DealerHand.MAX_COUNT_CARDS + 1];
+        selected = new double[COUNT_OUTCOMES];
+    }
+
+    /**
+     * Removes all cached distributions. Must be called if settings change, but need not be 
+     * called when cards are dealt, as each distribution is keyed by its composition.
+     * If distributions are shared, no engine sharing them may be evaluating.
+     */
+    public void clear()
+    {
+        if(sharedDistributions != null)
+            sharedDistributions.clear();
+        else
+            distributions.clear();
+    }
+
+    /**
+     * Selects the distribution of final outcomes for the specified DealerHand and shoe.
+     * Retrieved from the cache if this composition has been evaluated before, else computed by
+     * recursing over every possible sequence of dealer cards.
+     * The DealerHand and counts are modified temporarily during evaluation, but always restored.
+     * @param dH the dealer's hand
+     * @param cardTypeCounts10 count of each dealer card type remaining
+     * @param shoeSize count of cards remaining
+     */
+    public void evaluate(DealerHand dH, int[] cardTypeCounts10, int shoeSize)
+    {
+        long fingerprint = dH.key() * HAND_WEIGHT;
+        if(dH.confirmedNotBlackJack())
+            fingerprint += PEEKED_WEIGHT;
+        for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
+            fingerprint += cardTypeCounts10[cardType] * CARD_TYPE_WEIGHTS[cardType];
+
+        if(sharedDistributions != null)
+        {
+            if(sharedDistributions.get(fingerprint, selected, 0))
+                return;
+        }
+        else
+        {
+            int offset = distributions.find(fingerprint);
+            if(offset != OutcomeTable.MISSING)
+            {
+                System.arraycopy(distributions.values(), offset, selected, 0, COUNT_OUTCOMES);
+                return;
+            }
+        }
+
+        this.cardTypeCounts10 = cardTypeCounts10;
+        this.shoeSize = shoeSize;
+        dealerHandOutcomes.clear();                         //sub-hands are only valid for 1 shoe
+        Arrays.fill(selected, 0.0);
+        addOutcomes(dH, 1.0, selected);
+        this.cardTypeCounts10 = null;
+
+        if(sharedDistributions != null)
+            sharedDistributions.put(fingerprint, selected, 0);
+        else
+        {
+            int offset = distributions.add(fingerprint);        //may resize, so before values()
+            System.arraycopy(selected, 0, distributions.values(), offset, COUNT_OUTCOMES);
+        }
+    }
+
+    /**
+     * Returns the probability of the specified outcome in the distribution selected by evaluate()
+     * @param outcome one of score - LOWEST_STAND_SCORE, BUST or BLACKJACK
+     * @return the probability of the specified outcome
+     */
+    public double probability(int outcome)
+    {
+        return selected[outcome];
+    }
+
+    /**
+     * Returns the ROI of the specified PlayerHand standing against the distribution selected by
+     * evaluate(). O(1), as every player score is compared against the same 7 outcomes.
+     * @param pH a non-bust PlayerHand
+     * @return the ROI of pH standing
+     */
+    public double standROI(PlayerHand pH)
+    {
+        double tieROI = settings.dealerWinsTies() ? ROI.loss() : ROI.draw();
+        double roi = selected[BUST] * ROI.win();
+        roi += selected[BLACKJACK] * (pH.isBlackJack() ? tieROI : ROI.loss());
+        for(int outcome = 0; outcome < BUST; outcome++)
+        {
+            int dealerScore = outcome + LOWEST_STAND_SCORE;
+            if(pH.score() > dealerScore)
+                roi += selected[outcome] * ROI.win();
+            else if(pH.score() < dealerScore)
+                roi += selected[outcome] * ROI.loss();
+            else
+                roi += selected[outcome] * tieROI;
+        }
+        return roi;
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Adds prob * the distribution of final outcomes of dH to the specified distribution.
+     * Final hands add to a single outcome. Other hands are evaluated by dealerTurnOutcomes().
+     * @param dH the dealer's hand
+     * @param prob probability of dH occurring
+     * @param distribution distribution to add to
+     */
+    private void addOutcomes(DealerHand dH, double prob, double[] distribution)
+    {
+        int outcome = finalOutcome(dH);
+        if(outcome != NOT_FINAL)
+            distribution[outcome] += prob;
+        else
+        {
+            double[] dHOutcomes = dealerTurnOutcomes(dH);
+            for(outcome = 0; outcome < COUNT_OUTCOMES; outcome++)
+                distribution[outcome] += prob * dHOutcomes[outcome];
+        }
+    }
+
+    /**
+     * Iterative algorithm. Evaluates the distribution of final outcomes of a DealerHand that
+     * must draw. Each sub-hand is evaluated once per shoe, then retrieved from a table.
+     *
+     * Each sub-hand that must draw is a frame on an explicit stack, indexed by its count of
+     * cards, whose distribution is accumulated in outcomes[countCards]. A frame draws each card
+     * type in turn. If the sub-hand drawn must draw again, the frame's card and probability are
+     * saved and a frame is pushed for it. When a frame has drawn every card type, its
+     * distribution is added to the frame below, which resumes with its next card type.
+     * Sums are taken in exactly the same order as a recursive evaluation, so distributions are
+     * identical to the last bit.
+     * @param dH a DealerHand that must draw
+     * @return the distribution of final outcomes of dH. Valid until the next call.
+     */
+    private double[] dealerTurnOutcomes(DealerHand dH)
+    {
+        int bottom = dH.countCards();
+        if(!pushDealerTurn(dH))
+            return outcomes[bottom];
+
+        int      d = bottom;                                //frame being evaluated
+        double[] distribution = outcomes[d];
+        int      cardType = Card.TWO;                       //next card type to draw
+        double   prob;
+
+        frames:
+        while(true)
+        {
+            //if dealer has peeked at A or 10-value, and continued, dealer doesn't have BJ
+            boolean peeked = d == 1 && dH.confirmedNotBlackJack();
+            for(; cardType <= Card.DEALER_ACE; cardType++)
+            {
+                if(cardTypeCounts10[cardType] == 0)
+                    continue;
+                if(peeked)
+                {
+                    if(dH.score() == 10 && cardType == Card.DEALER_ACE ||   //can have [X][!A]
+                            dH.score() == 11 && cardType == Card.TEN)       //can have [A][!X]
+                        continue;
+                    if(dH.score() == 10)
+                        prob = (double)cardTypeCounts10[cardType] /
+                                (shoeSize - cardTypeCounts10[Card.DEALER_ACE]);
+                    else
+                        prob = (double)cardTypeCounts10[cardType] /
+                                (shoeSize - cardTypeCounts10[Card.TEN]);
+                }
+                else
+                    prob = (double)cardTypeCounts10[cardType] / shoeSize;
+                cardTypeCounts10[cardType]--;
+                shoeSize--;
+                dH.insert(cardType);
+
+                int outcome = finalOutcome(dH);
+                if(outcome != NOT_FINAL)
+                    distribution[outcome] += prob;
+                else if(pushDealerTurn(dH))
+                {
+                    drawCardTypes[d] = cardType;            //resumed once the new frame is done
+                    drawProbs[d] = prob;
+                    distribution = outcomes[++d];
+                    cardType = Card.TWO;
+                    continue frames;
+                }
+                else
+                    addOutcomes(distribution, prob, outcomes[d + 1]);
+
+                dH.removeLast();
+                cardTypeCounts10[cardType]++;
+                shoeSize++;
+            }
+
+            //frame d has drawn every card type
+            int offset = dealerHandOutcomes.add(dH.key());
+            System.arraycopy(distribution, 0, dealerHandOutcomes.values(), offset, COUNT_OUTCOMES);
+            if(d == bottom)
+                return distribution;
+
+            //resume the frame below, after the card that reached frame d
+            double[] subHandOutcomes = distribution;
+            distribution = outcomes[--d];
+            cardType = drawCardTypes[d];
+            addOutcomes(distribution, drawProbs[d], subHandOutcomes);
+            dH.removeLast();
+            cardTypeCounts10[cardType]++;
+            shoeSize++;
+            cardType++;
+        }
+    }
+
+    /**
+     * Adds prob * a sub-hand's distribution to the distribution of the frame that drew it
+     * @param distribution distribution of the frame
+     * @param prob probability of the sub-hand
+     * @param subHandOutcomes distribution of the sub-hand
+     */
+    private static void addOutcomes(double[] distribution, double prob, double[] subHandOutcomes)
+    {
+        for(int outcome = 0; outcome < COUNT_OUTCOMES; outcome++)
+            distribution[outcome] += prob * subHandOutcomes[outcome];
+    }
+
+    /**
+     * Returns the outcome of a final dealer hand
+     * @param dH the dealer's hand
+     * @return the outcome of dH, or NOT_FINAL if the dealer must draw
+     */
+    private int finalOutcome(DealerHand dH)
+    {
+        if(dH.isBust())
+            return BUST;
+        else if(dH.isBlackJack())
+            return BLACKJACK;
+        else if(dH.score() > 17 || dH.score() == 17 &&
+                (!settings.dealerHitsSoft17() || !dH.isSoft()))
+            return dH.score() - LOWEST_STAND_SCORE;
+        else
+            return NOT_FINAL;
+    }
+
+    /**
+     * Starts evaluating a DealerHand that must draw. If already in the table, its distribution
+     * is copied to outcomes[countCards]. Otherwise a frame is pushed, ready to draw.
+     * @param dH a DealerHand that must draw
+     * @return whether a frame was pushed. If not, outcomes[dH.countCards()] is complete.
+     */
+    private boolean pushDealerTurn(DealerHand dH)
+    {
+        double[] distribution = outcomes[dH.countCards()];
+        int offset = dealerHandOutcomes.find(dH.key());
+        if(offset != OutcomeTable.MISSING)
+        {
+            System.arraycopy(dealerHandOutcomes.values(), offset, distribution, 0, COUNT_OUTCOMES);
+            return false;
+        }
+
+        if(shoeSize == 0)
+            throw new IllegalStateException("Shoe empty (dealerTurn)");
+
+        Arrays.fill(distribution, 0.0);
+        return true;
+    }
+
+    //---------------------------------------- INNER CLASSES ---------------------------------------
+    /**
+     * Table mapping a long key to a distribution of COUNT_OUTCOMES probabilities.
+     * As TranspositionTable, but each slot holds a whole distribution, stored contiguously.
+     * Once full at its maximum capacity, the table is cleared rather than evicting entries.
+     */
+    private static final class OutcomeTable
+    {
+        private static final int    MISSING = -1;            //returned by find() if key not present
+        private static final long   HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;  //Fibonacci hashing
+        private static final int    MAX_LOAD_PERCENT = 50;   //resize when more than half full
+        private static final int    DEFAULT_CAPACITY = 1 << 10;
+        private static final int    MIN_CAPACITY = 16;
+        private static final int    MAX_CAPACITY = 1 << 26;  //so values fit in a single array
+        private static final int    BYTES_PER_SLOT = 8 + COUNT_OUTCOMES * 8 + 4;
+
+        private long[]   keys;           //key of each slot
+        private double[] values;         //COUNT_OUTCOMES probabilities per slot
+        private int[]    generations;    //slot is in use only if its generation == generation
+        private int      generation;     //current generation. Incremented by clear()
+        private int      shift;          //64 - log2(capacity), selects the top bits of the hash
+        private int      size;           //count of slots in use
+        private int      maxSize;        //size at which table is resized or cleared
+        private int      maxCapacity;    //count of slots beyond which table clears, not grows
+
+        /**
+         * Returns the largest maximum capacity whose slots fit in a memory budget
+         * @param bytes memory budget of the table
+         * @return the largest power of 2 count of slots that fits in bytes, at least MIN_CAPACITY
+         */
+        private static int capacityFor(long bytes)
+        {
+            return (int)Math.min(MAX_CAPACITY, 
+                    Math.max(MIN_CAPACITY, Long.highestOneBit(bytes / BYTES_PER_SLOT)));
+        }
+
+        private OutcomeTable(int maxCapacity)
+        {
+            allocate(Math.min(DEFAULT_CAPACITY, maxCapacity));
+            this.maxCapacity = maxCapacity;
+            generation = 1;
+        }
+
+        /**
+         * Removes all entries. O(1), existing slots are invalidated by starting a new generation.
+         */
+        private void clear()
+        {
+            size = 0;
+            if(++generation == 0)
+            {
+                Arrays.fill(generations, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * Gets the offset into values() of the distribution stored for the specified key
+         * @param key key of a distribution
+         * @return offset into values(), or MISSING if this table does not contain the key
+         */
+        private int find(long key)
+        {
+            int mask = keys.length - 1;
+            for(int slot = slot(key); generations[slot] == generation; slot = (slot + 1) & mask)
+                if(keys[slot] == key)
+                    return slot * COUNT_OUTCOMES;
+            return MISSING;
+        }
+
+        /**
+         * Adds a slot for the specified key, which must not already be present.
+         * If full, the table grows, or is cleared if already at its maximum capacity.
+         * @param key key of a distribution
+         * @return offset into values() at which caller must store the distribution
+         */
+        private int add(long key)
+        {
+            if(size + 1 > maxSize)
+                if(keys.length < maxCapacity)
+                    resize();
+                else
+                    clear();
+            int mask = keys.length - 1;
+            int slot = slot(key);
+            while(generations[slot] == generation)
+                slot = (slot + 1) & mask;
+            keys[slot] = key;
+            generations[slot] = generation;
+            size++;
+            return slot * COUNT_OUTCOMES;
+        }
+
+        /**
+         * Returns the array holding every distribution. Valid until the next add().
+         * @return the array holding every distribution
+         */
+        private double[] values()
+        {
+            return values;
+        }
+
+        private void allocate(int capacity)
+        {
+            keys = new long[capacity];
+            values = new double[capacity * COUNT_OUTCOMES];
+            generations = new int[capacity];
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+            maxSize = (int)((long)capacity * MAX_LOAD_PERCENT / 100);
+        }
+
+        private void resize()
+        {
+            long[]   oldKeys = keys;
+            double[] oldValues = values;
+            int[]    oldGenerations = generations;
+
+            allocate(keys.length * 2);
+            size = 0;
+            for(int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+                if(oldGenerations[oldSlot] == generation)
+                    System.arraycopy(oldValues, oldSlot * COUNT_OUTCOMES, values,
+                            add(oldKeys[oldSlot]), COUNT_OUTCOMES);
+        }
+
+        private int slot(long key)
+        {
+            return (int)((key * HASH_MULTIPLIER) >>> shift);
+        }
+    }
+}
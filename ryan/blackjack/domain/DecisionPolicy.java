@@ -0,0 +1,64 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// boolean acceptEvenMoney(Shoe shoe, DealerHand dH, PlayerHand pH)
+// boolean takeInsurance(Shoe shoe, DealerHand dH, PlayerHand pH)
+// boolean surrender(Shoe shoe, DealerHand dH, PlayerHand pH)
+// String action(Shoe shoe, DealerHand dH, PlayerHand pH)
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.domain;
+
+/**
+ * DecisionPolicy interface.
+ * Makes each decision a Player faces during a round, without any user interaction, so that
+ * SimulationEngine can play rounds headless. Implementations must not modify the shoe or hands.
+ */
+public interface DecisionPolicy
+{
+    //------------------------------------- Instance Behaviour -------------------------------------
+
+    /**
+     * Gets whether the Player accepts even money for a BlackJack.
+     * Pre: Dealer has single Ace, pH is BlackJack, dealer offers even money
+     * @param shoe the shoe, less every card dealt so far
+     * @param dH the dealer's hand
+     * @param pH the Player's BlackJack
+     * @return whether the Player accepts even money
+     */
+    public boolean acceptEvenMoney(Shoe shoe, DealerHand dH, PlayerHand pH);
+
+    /**
+     * Gets whether the Player takes insurance. If so, the maximum insurance wager is laid.
+     * Pre: Dealer has single Ace, dealer offers insurance, pH is not redeemed
+     * @param shoe the shoe, less every card dealt so far
+     * @param dH the dealer's hand
+     * @param pH the Player's sole hand
+     * @return whether the Player takes insurance
+     */
+    public boolean takeInsurance(Shoe shoe, DealerHand dH, PlayerHand pH);
+
+    /**
+     * Gets whether the Player surrenders their sole hand
+     * Pre: surrender offered, no insurance taken, pH is not redeemed and not BlackJack
+     * @param shoe the shoe, less every card dealt so far
+     * @param dH the dealer's hand
+     * @param pH the Player's sole hand
+     * @return whether the Player surrenders
+     */
+    public boolean surrender(Shoe shoe, DealerHand dH, PlayerHand pH);
+
+    /**
+     * Gets the Player's next action for the specified hand. Doubling lays the maximum bet.
+     * Pre: pH is hittable
+     * @param shoe the shoe, less every card dealt so far
+     * @param dH the dealer's hand
+     * @param pH the hand to act on
+     * @return Option.STAND, Option.HIT, Option.SPLIT (only if splittable), or 
+     *         Option.DOUBLE_DOWN (only if doublable)
+     */
+    public String action(Shoe shoe, DealerHand dH, PlayerHand pH);
+}
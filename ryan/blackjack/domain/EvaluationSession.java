@@ -0,0 +1,189 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// ByteBuffer allocate(long bytes)   --> zeroed storage for a table, off-heap if session is
+// void release(ByteBuffer buffer)   --> frees storage before the session closes, eg once resized
+// void close()                      --> frees all storage and invalidates the tables using it
+// long allocatedBytes()             --> off-heap bytes currently allocated
+// boolean isOffHeap()               --> whether storage is allocated off the Java heap
+
+// *********************************************ERRORS**********************************************
+// IllegalStateException if storage is allocated after the session is closed, or if a table is
+//                       used after its session is closed
+// IllegalArgumentException if more than 2GB is allocated as a single buffer
+package ryan.blackjack.domain;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * EvaluationSession class.
+ * Owns the storage of the transposition tables of a set of evaluators, eg those created for a
+ * single PlayerAdvantage.evaluate(), and so controls its lifetime.
+ * A heap session allocates ordinary buffers, reclaimed by the garbage collector once its tables
+ * are discarded. An off-heap session allocates direct buffers, so that however large its tables
+ * grow, the collector never scans or copies them. They are freed at once by release() or close(),
+ * rather than whenever the collector next runs. Each table registers with its session, which
+ * invalidates it on close(), so a table used afterwards throws rather than reading freed memory.
+ * Freeing relies on the JDK's sun.misc.Unsafe.invokeCleaner(). If it is not available, closed
+ * storage is left for the collector to free, as it would be for a heap session.
+ */
+public final class EvaluationSession implements AutoCloseable
+{
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final boolean DEFAULT_EVALUATE_OFF_HEAP = false;
+
+    //-------------------------------------- Class Attributes --------------------------------------
+    private static final Object UNSAFE;                     //null if storage cannot be freed
+    private static final Method INVOKE_CLEANER;
+    static
+    {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try
+        {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            unsafe = theUnsafe.get(null);
+        }
+        catch(ReflectiveOperationException | RuntimeException e)
+        {
+            invokeCleaner = null;                           //left to the garbage collector
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private boolean         offHeap;                //whether buffers are direct
+    private boolean         closed;
+    private Set<ByteBuffer> buffers;                //direct buffers not yet freed
+    private long            allocatedBytes;         //capacity of buffers
+    private List<Runnable>  invalidators;           //invalidate each table using this session
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor
+     * @param offHeap whether to allocate storage off the Java heap
+     */
+    public EvaluationSession(boolean offHeap)
+    {
+        this.offHeap = offHeap;
+        buffers = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+        invalidators = new ArrayList<Runnable>();
+    }
+
+    /**
+     * Allocates zeroed storage for a table, in native byte order
+     * @param bytes size of the storage
+     * @return the storage. Direct, if this is an off-heap session.
+     */
+    public synchronized ByteBuffer allocate(long bytes)
+    {
+        if(closed)
+            throw new IllegalStateException("Evaluation session is closed");
+        if(bytes < 0 || bytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid table size: " + bytes + " bytes");
+        if(!offHeap)
+            return ByteBuffer.allocate((int)bytes).order(ByteOrder.nativeOrder());
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int)bytes).order(ByteOrder.nativeOrder());
+        buffers.add(buffer);
+        allocatedBytes += bytes;
+        return buffer;
+    }
+
+    /**
+     * Returns the count of off-heap bytes currently allocated
+     * @return the count of off-heap bytes allocated and not yet freed
+     */
+    public synchronized long allocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * Frees all storage allocated by this session. Every table registered with it is invalidated
+     * first, so that using it afterwards throws IllegalStateException rather than reading freed
+     * memory. Closing a closed session has no effect.
+     */
+    @Override
+    public synchronized void close()
+    {
+        for(Runnable invalidator : invalidators)
+            invalidator.run();
+        invalidators.clear();
+        for(ByteBuffer buffer : buffers)
+            free(buffer);
+        buffers.clear();
+        allocatedBytes = 0;
+        closed = true;
+    }
+
+    /**
+     * Returns whether storage is allocated off the Java heap
+     * @return whether storage is allocated off the Java heap
+     */
+    public boolean isOffHeap()
+    {
+        return offHeap;
+    }
+
+    /**
+     * Registers a table using this session's storage, to be invalidated when it closes
+     * @param invalidator drops the table's storage, so that any further use throws
+     */
+    synchronized void register(Runnable invalidator)
+    {
+        if(closed)
+            throw new IllegalStateException("Evaluation session is closed");
+        invalidators.add(invalidator);
+    }
+
+    /**
+     * Frees storage before this session is closed, eg a table's storage once it has resized.
+     * The storage must not be used again.
+     * @param buffer storage allocated by this session
+     */
+    public synchronized void release(ByteBuffer buffer)
+    {
+        if(buffers.remove(buffer))
+        {
+            allocatedBytes -= buffer.capacity();
+            free(buffer);
+        }
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Frees a direct buffer now, if the JDK allows. Otherwise the garbage collector frees it once
+     * it is unreachable.
+     * @param buffer a direct buffer that will not be used again
+     */
+    private static void free(ByteBuffer buffer)
+    {
+        if(INVOKE_CLEANER == null)
+            return;
+        try
+        {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        }
+        catch(ReflectiveOperationException | RuntimeException e)
+        {
+            //left to the garbage collector
+        }
+    }
+}
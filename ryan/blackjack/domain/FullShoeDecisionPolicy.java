@@ -0,0 +1,154 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.domain;
+
+/**
+ * FullShoeDecisionPolicy class.
+ * Chooses the Option with the best ROI against the full shoe, less only the cards in the hands 
+ * being decided, (ie composition-dependent basic strategy). Cards dealt earlier in the shoe are
+ * ignored, so each decision is evaluated once and then cached. After warm-up, a decision is a
+ * single table lookup, making this the policy for long bankroll studies.
+ */
+public final class FullShoeDecisionPolicy implements DecisionPolicy
+{
+    //----------------------------------------- Constants ------------------------------------------
+    private static final String[] ACTIONS = 
+            {Option.STAND, Option.HIT, Option.SPLIT, Option.DOUBLE_DOWN};  //cached by index
+    private static final long     PLAYER_HAND_WEIGHT = 0x9E3779B97F4A7C15L;
+    private static final long     DEALER_HAND_WEIGHT = 0xC2B2AE3D27D4EB4FL;
+    private static final long     PEEKED_WEIGHT      = 0x165667B19E3779F9L;
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings           settings;            //current System settings
+    private int[]              fullCounts13;        //card type counts of the full shoe
+    private int                fullShoeSize;        //count of cards in the full shoe
+    private ROIEvaluator[]     evaluators;          //one per dealer face card type
+    private TranspositionTable actions;             //index into ACTIONS, by decisionKey()
+    private TranspositionTable surrenders;          //1.0 if surrender, else 0.0, by decisionKey()
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor
+     * @param settings the settings to evaluate against. Read, never modified.
+     * @param fullShoe a full shoe. Only its card type counts are read.
+     */
+    public FullShoeDecisionPolicy(Settings settings, Shoe fullShoe)
+    {
+        this.settings = settings;
+        fullCounts13 = fullShoe.cardTypeCounts();
+        fullShoeSize = fullShoe.size();
+        evaluators = PlayerAdvantage.createEvaluators(settings);
+        actions = new TranspositionTable();
+        surrenders = new TranspositionTable();
+    }
+
+    /**
+     * Accepts even money if its ROI (1.0) exceeds that of playing on with BlackJack
+     */
+    @Override
+    public boolean acceptEvenMoney(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        return 1.0 > (1.0 - probability10Value(dH, pH)) * settings.blackJackROI();
+    }
+
+    /**
+     * Takes insurance if its ROI is positive
+     */
+    @Override
+    public boolean takeInsurance(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        return probability10Value(dH, pH) * 3.0 - 1.0 > 0.0;
+    }
+
+    /**
+     * Surrenders if its ROI exceeds that of the best non-surrender Option
+     */
+    @Override
+    public boolean surrender(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        long key = decisionKey(dH, pH);
+        double surrender = surrenders.get(key);
+        if(Double.isNaN(surrender))
+        {
+            ROIEvaluator evaluator = evaluator(dH, pH);
+            surrender = evaluator.evaluateSurrenderROI() > evaluator.evaluateNonSurrenderROI() ?
+                    1.0 : 0.0;
+            surrenders.put(key, surrender);
+        }
+        return surrender == 1.0;
+    }
+
+    /**
+     * Chooses the Option with the best ROI against the full shoe less the cards in dH and pH
+     */
+    @Override
+    public String action(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        long key = decisionKey(dH, pH);
+        double action = actions.get(key);
+        if(Double.isNaN(action))
+        {
+            String bestAction = OptimalDecisionPolicy.bestAction(evaluator(dH, pH), pH);
+            for(action = 0; !ACTIONS[(int)action].equals(bestAction); action++)
+                ;
+            actions.put(key, action);
+        }
+        return ACTIONS[(int)action];
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Gets the key a decision is cached by. Includes split level, as pH's key does.
+     * @return the key a decision for dH and pH is cached by
+     */
+    private long decisionKey(DealerHand dH, PlayerHand pH)
+    {
+        return pH.key() * PLAYER_HAND_WEIGHT + dH.key() * DEALER_HAND_WEIGHT + 
+                (dH.confirmedNotBlackJack() ? PEEKED_WEIGHT : 0L);
+    }
+
+    /**
+     * Gets the evaluator for the dealer's face card, set to the full shoe less the cards in 
+     * dH and pH
+     * @return the evaluator for the dealer's face card
+     */
+    private ROIEvaluator evaluator(DealerHand dH, PlayerHand pH)
+    {
+        int[] counts13 = fullCounts13.clone();
+        int shoeSize = fullShoeSize - dH.countCards() - pH.countCards();
+        for(int cIdx = 0; cIdx < dH.countCards(); cIdx++)
+            counts13[dH.cardAt(cIdx).playerType()]--;
+        for(int cIdx = 0; cIdx < pH.countCards(); cIdx++)
+            counts13[pH.cardAt(cIdx).playerType()]--;
+
+        ROIEvaluator evaluator = evaluators[dH.cardAt(0).playerType()];
+        evaluator.setState(counts13, shoeSize);
+        evaluator.setHands(pH, dH);
+        return evaluator;
+    }
+
+    /**
+     * Gets the probability the next card is 10-valued, from the full shoe less the cards in 
+     * dH and pH
+     * @return the probability the next card is 10-valued
+     */
+    private double probability10Value(DealerHand dH, PlayerHand pH)
+    {
+        int count10s = fullCounts13[Card.TEN] + fullCounts13[Card.JACK] + 
+                fullCounts13[Card.QUEEN] + fullCounts13[Card.KING];
+        for(int cIdx = 0; cIdx < dH.countCards(); cIdx++)
+            if(dH.cardAt(cIdx).value() == 10)
+                count10s--;
+        for(int cIdx = 0; cIdx < pH.countCards(); cIdx++)
+            if(pH.cardAt(cIdx).value() == 10)
+                count10s--;
+        return (double)count10s / (fullShoeSize - dH.countCards() - pH.countCards());
+    }
+}
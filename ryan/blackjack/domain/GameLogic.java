@@ -9,7 +9,6 @@ import ryan.blackjack.view.UserInterface;
 import ryan.blackjack.dataAccess.SettingsDA;
 import java.util.ArrayList;
 import java.util.ListIterator;
-import java.util.HashMap;
 import java.util.TreeSet;
 import java.util.Collections;
 import java.util.Random;
@@ -46,17 +45,17 @@ public final class GameLogic
     private UserInterface           ui;                     //a UserInterface 
     private Settings                settings;               //current System settings
     private Shoe                    shoe;                   //not changed during probability evaluation
+    private long                    seed;                   //seeds the shoe's and peek's streams
+    private RandomStream            random;                 //decides the dealer's peek
     private int                     gameType;               //current Game Type
     private DealerHand              dH;                     //the dealer's Hand
     private ArrayList<Player>       players;                //array of Players at table
     private Player                  player;                 //the current Player
     private PlayerHand              pH;                     //the current PlayerHand
-    private int[]                   cardTypeCounts10;       //get from shoe to evaluate probability
-    private int[]                   cardTypeCounts13;       //get from shoe to evaluate probability
-    private int                     shoeSize;               //get from shoe to evaluate probability
-    private HashMap<Integer,Double> playerHandROIs;         //ROIs for each sub-hand of pH
-    private HashMap<Integer,Double> playerStandHandROIs;    //ROIs for each stand sub-hand of pH
-    private HashMap<Integer,Double> dealerHandROIs;         //ROIs for each sub-Hand of dh
+    private EvaluationSession       session;                //owns the evaluators' tables
+    private ROIEvaluator[]          evaluators;             //one per dealer face card type
+    private ROIEvaluator            evaluator;              //evaluates in-game Option ROIs
+    private InfiniteDeckEvaluator   infiniteDeckEvaluator;  //rebuilds its tables if rules change
     private boolean                 playNextRound;          //whether to continue game
     private boolean                 gamePaused;             //if set, user asked to quit or continue
     private int                     countRounds;            //count of game rounds
@@ -71,11 +70,10 @@ public final class GameLogic
     {
         this.ui = ui;                                       //so can message
         settings = SettingsDA.getInstance().loadSettings(); //current settings
-        shoe = new Shoe(settings);                          //the game's shoe
-        cardTypeCounts10 = new int[10];                     //values updated start dealerTurn
-        playerHandROIs = new HashMap<Integer,Double>();     //cleared after state changed
-        playerStandHandROIs = new HashMap<Integer,Double>();//cleared after state changed
-        dealerHandROIs = new HashMap<Integer,Double>();     //cleared after state changed
+        seed = new Random().nextLong();                     //recorded, so a game can be replayed
+        createShoe();                                       //the game's shoe
+        createEvaluators();                                 //cleared if rules change
+        infiniteDeckEvaluator = new InfiniteDeckEvaluator(settings);
     }
 
     /**
@@ -84,6 +82,9 @@ public final class GameLogic
     public void applyDefaultSettings()
     {
         settings = SettingsDA.getInstance().defaultSettings();
+        shoe.setRules(settings.ruleSet());
+        createEvaluators();
+        infiniteDeckEvaluator = new InfiniteDeckEvaluator(settings);
     }
 
 
@@ -92,101 +93,39 @@ public final class GameLogic
      * 
      * Using a separate transposition table for each dealer face card, then printing all at once
      * rather than 1 at a time reduces running time from 84s to 27s.
+     * As each dealer face card has its own tables, they are evaluated in parallel if enabled.
+     * If infinite-deck evaluation is enabled, the shoe state is ignored and the precomputed
+     * infinite-deck advantage for the current rules is displayed instead.
+     * If total-dependent evaluation is enabled, the composition-dependent advantage is also
+     * evaluated, with new evaluators, to display what total-dependent play gives up.
+     * The transposition table hit, miss and eviction counts of the evaluators are then displayed,
+     * to show whether the memory budget is large enough.
      */
     public void evaluatePlayerAdvantage()
     {
-        boolean           insrChc;                  //whether player should taken insurance
-        double            insuranceROI;             //either 0.0 or positive if available and worth it
-        double            probDenominator;          //always same value, so just calculate and store
-        ArrayList<ROI>    rois;                     //ROI for each initial deal.
-        ArrayList<Option> options;                  //Available Options for a initial deal
-        Recommendations   recommendations;          //stores bestOption and insuranceChoice
-        double            countD1, countP1, prob;   //used in probability evaluation
-
-        refreshState();
-        probDenominator = (double)shoeSize * (shoeSize - 1) * (shoeSize - 2);
-        shoeSize -= 3;
-        rois = new ArrayList<ROI>(14 * 13 / 2 * 13);
-        options = new ArrayList<Option>();
-        recommendations = new Recommendations();
-        dH = new DealerHand();
-        pH = new PlayerHand(0.0);
-
-        for(int dC1Type = Card.TWO; dC1Type <= Card.PLAYER_ACE; dC1Type++)
+        PlayerAdvantage advantage = settings.evaluateInfiniteDeck() ? 
+                infiniteDeckEvaluator.evaluate() : 
+                PlayerAdvantage.evaluate(settings, shoe, evaluators);
+        ui.displayPlayerAdvantage(settings, shoe, advantage.recommendations(), 
+                advantage.totalPlayerROI());
+        if(settings.evaluateTotalDependent() && !settings.evaluateInfiniteDeck())
         {
-            clearPlayerHandROIs();                           //different tables for each dealer card
-            countD1 = (double) cardTypeCounts13[dC1Type];
-            cardTypeCounts13[dC1Type]--;
-            dH.insert(Card.dealerType(dC1Type));
-
-            for(int pC1Type = Card.TWO; pC1Type <= Card.PLAYER_ACE; pC1Type++)
+            Settings exact = settings.copy();
+            exact.setEvaluateTotalDependent(false);
+            ui.displayTotalDependentCost(advantage.totalPlayerROI(), 
+                    PlayerAdvantage.evaluate(exact, shoe).totalPlayerROI());
+        }
+        if(!settings.evaluateInfiniteDeck())
+        {
+            long hits = 0, misses = 0, evictions = 0;
+            for(ROIEvaluator e : evaluators)
             {
-                countP1 = (double) cardTypeCounts13[pC1Type];
-                cardTypeCounts13[pC1Type]--;
-                pH.insert(pC1Type);
-
-                for(int pC2Type = pC1Type; pC2Type <= Card.PLAYER_ACE; pC2Type++)
-                {
-                    if(countD1 > 0 && countP1 > 0 && cardTypeCounts13[pC2Type] > 0)
-                    {
-                        prob = countD1 * countP1 * cardTypeCounts13[pC2Type] / probDenominator;
-                        cardTypeCounts13[pC2Type]--;
-                        if(pC1Type != pC2Type)
-                            prob *= 2.0;
-                        pH.insert(pC2Type);
-
-                        //Determine if taking insurance is a positive ROI
-                        insuranceROI = settings.dealerOffersInsurance() ? 
-                                Math.max(evaluateAcceptInsuranceROI(), 0.0) : 0.0;
-
-                        //Take insurance if available and gives a positive ROI
-                        insrChc = dH.isSingleAce() && insuranceROI > 0.0;
-                
-                        options.clear();
-
-                        //if no insurance taken and surrender available, add Surrender Option
-                        if(!insrChc && 
-                                settings.surrenderType() == SURRENDER_TYPE_EARLY || 
-                                (settings.surrenderType() == SURRENDER_TYPE_LATE && 
-                                !settings.dealerDealtHoleCard()))
-                            options.add(new Option(Option.SURRENDER, evaluateSurrenderROI()));
-
-                        //if player is BJ, stand is BJ ROI, else stand is stand ROI
-                        if(pH.isBlackJack())
-                            options.add(new Option(Option.STAND, 
-                                    evaluateBlackJackROI() + insuranceROI));
-                        else
-                            options.add(new Option(Option.STAND, evaluateStandROI() + insuranceROI));
-
-                        options.add(new Option(Option.HIT, evaluateHitROI() + insuranceROI));
-
-                        if(pH.isSplittable())
-                            options.add(new Option(Option.SPLIT, 
-                                    evaluateSplitROI() + insuranceROI));
-
-                        if(pH.isDoublable())
-                            options.add(new Option(Option.DOUBLE_DOWN, 
-                                    evaluateDoubleROI() + insuranceROI));
-
-                        Collections.sort(options);
-
-                        rois.add(new ROI(prob, options.get(0).roi()));
-                        recommendations.insert(dC1Type, pC1Type, pC2Type, insrChc, options.get(0));
-                    
-                        pH.removeLast();
-                        cardTypeCounts13[pC2Type]++;
-                    }
-                }
-                pH.removeLast();
-                cardTypeCounts13[pC1Type]++;
+                hits += e.tableHits();
+                misses += e.tableMisses();
+                evictions += e.tableEvictions();
             }
-            dH.removeLast();
-            cardTypeCounts13[dC1Type]++;
+            ui.displayTableStats(hits, misses, evictions, settings.tableMemoryMegabytes());
         }
-
-        double totalPlayerROI = ROI.merge(rois.toArray(new ROI[rois.size()]));
-        ui.displayPlayerAdvantage(settings, shoe, recommendations, totalPlayerROI);
-        shoeSize += 3;                                             //leave state consistent
        
 
 
@@ -332,6 +271,16 @@ System.out.println("end: " + System.nanoTime());
         return shoe;
     }
 
+    /**
+     * Returns the master seed of the shoe's and the dealer's peek RandomStreams
+     * 
+     * @return the seed, to replay this game with setSeed()
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
     /**
      * Returns the game's settings
      * 
@@ -413,24 +362,28 @@ System.out.println("end: " + System.nanoTime());
 
 
     /**
-     * Gets cardTypeCounts13 and shoeSize from shoe, and copies them to static variables.
+     * Gets cardTypeCounts13 and shoeSize from shoe, and copies them to the evaluator.
      * These are then used for all probability calculations. This must be called whenever
      * a card is given to a player (hence cardTypeCounts and shoeSize has changed)
+     * The evaluator is the one evaluatePlayerAdvantage() used for the dealer's face card, so
+     * the initial deal, and each card hit after it, is usually already in its tables.
      */
     private void refreshState()
     {
-        cardTypeCounts13 = shoe.cardTypeCounts();
-        shoeSize = shoe.size();
+        if(dH != null && dH.countCards() > 0)
+            evaluator = evaluators[dH.cardAt(0).playerType()];
+        evaluator.setState(shoe.cardTypeCounts(), shoe.size());
     }
 
     /**
-     * Clears PlayerHandROIs transposition tables. This must be called after any
-     * card is given to a player or dealer, or after dealer peeks
+     * Clears PlayerHandROIs transposition tables. This must be called whenever a rule that
+     * affects an Option's ROI changes. Entries are keyed by shoe composition, so survive cards 
+     * being dealt, rounds, and evaluatePlayerAdvantage().
      */
     private void clearPlayerHandROIs()
     {
-        playerHandROIs.clear();
-        playerStandHandROIs.clear();
+        for(ROIEvaluator e : evaluators)
+            e.clearPlayerHandROIs();
     }
 
     /**
@@ -476,6 +429,7 @@ System.out.println("end: " + System.nanoTime());
     public void setBlackJackROI(double bjRate)
     {
         settings.setBlackJackROI(bjRate);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -485,6 +439,7 @@ System.out.println("end: " + System.nanoTime());
     public void setCustomCountStrategyAdjustments(double[] adjustments)
     {
         settings.setCustomCountAdjustments(adjustments); //settings updates CountStrategy class var
+        shoe.setRules(settings.ruleSet());               //shoe counts by the new adjustments
     }
 
     /**
@@ -505,6 +460,7 @@ System.out.println("end: " + System.nanoTime());
     public void setDoublableCardCounts(TreeSet<Integer> doublableCardCounts)
     {
         settings.setDoublableCardCounts(doublableCardCounts); //callee will update BetStrategy
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -514,6 +470,7 @@ System.out.println("end: " + System.nanoTime());
     public void setDoublableScores(TreeSet<Integer> doublableScores)
     {
         settings.setDoublableScores(doublableScores); //callee will update BetStrategy
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -523,6 +480,7 @@ System.out.println("end: " + System.nanoTime());
     public void setFiveCard21Amount(double fiveCard21Amount)
     {
         settings.setFiveCard21Amount(fiveCard21Amount); //callee will update ROI
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -532,6 +490,7 @@ System.out.println("end: " + System.nanoTime());
     public void setMaxBet(double maxBet)
     {
         settings.setMaxBet(Math.max(maxBet,settings.minBet())); //callee will update BetStrategy
+        clearPlayerHandROIs();                //evaluators take the new RuleSet
     }
 
     /**
@@ -541,6 +500,18 @@ System.out.println("end: " + System.nanoTime());
     public void setMinBet(double minBet)
     {
         settings.setMinBet(Math.min(minBet,settings.maxBet())); //callee will update BetStrategy
+        clearPlayerHandROIs();                //evaluators take the new RuleSet
+    }
+
+    /**
+     * Sets the master seed of the shoe's and the dealer's peek RandomStreams, replacing the shoe 
+     * with a new one drawing from them, so that a game recorded with getSeed() is replayed
+     * @param seed any value
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+        createShoe();
     }
 
     /**
@@ -580,7 +551,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setShoeCountShuffleCuts(countCuts);
             settings.setShoeCountShuffleLoops(countLoops);
         }
-        shoe = new Shoe(settings);
+        createShoe();
     }
 
 
@@ -591,6 +562,7 @@ System.out.println("end: " + System.nanoTime());
     public void setSplitBlackJackROI(double sbjRate)
     {
         settings.setSplitBlackJackROI(sbjRate);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -600,6 +572,7 @@ System.out.println("end: " + System.nanoTime());
     public void setSplitCardEqualityType(int splitType)
     {
         settings.setSplitCardEqualityType(splitType); //callee will update static var
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -617,6 +590,17 @@ System.out.println("end: " + System.nanoTime());
     }
 
 
+    /**
+     * Sets the memory budget of the transposition tables of all ROIEvaluators, and replaces the
+     * evaluators with empty ones within the new budget
+     * @param megabytes memory budget. Raised to 1 if less
+     */
+    public void setTableMemoryMegabytes(int megabytes)
+    {
+        settings.setTableMemoryMegabytes(Math.max(megabytes, 1));
+        createEvaluators();
+    }
+
     /**
      * Sets the number of times we can split a pairs of 2s to Kings can be split
      * @param timesSplittable times a pair of 2s to Kings can be split
@@ -624,6 +608,7 @@ System.out.println("end: " + System.nanoTime());
     public void setTimes2toK_Splittable(int timesSplittable)
     {
         settings.setTimes2toK_Splittable(timesSplittable); //callee will update static var
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -633,6 +618,7 @@ System.out.println("end: " + System.nanoTime());
     public void setTimesAcesSplittable(int timesSplittable)
     {
         settings.setTimesAcesSplittable(timesSplittable); //callee will update static var
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -655,6 +641,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setCanDoubleAfter2toK_Split(false);
         else
             settings.setCanDoubleAfter2toK_Split(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -667,6 +654,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setCanDoubleAfterAcesSplit(false);
         else
             settings.setCanDoubleAfterAcesSplit(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
     /**
@@ -678,6 +666,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setCanHitAfterAcesSplit(false);
         else
             settings.setCanHitAfterAcesSplit(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -690,6 +679,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setDealerHitsSoft17(false);
         else
             settings.setDealerHitsSoft17(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -738,6 +728,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setDealerWinsTies(false);
         else
             settings.setDealerWinsTies(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -788,6 +779,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setFiveCard21Wins(false);
         else
             settings.setFiveCard21Wins(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
     
     /**
@@ -805,6 +797,54 @@ System.out.println("end: " + System.nanoTime());
     
 
 
+    /**
+     * Toggles whether the player advantage is evaluated for each dealer face card in parallel
+     */
+    public void toggleEvaluateAdvantageInParallel()
+    {
+        if(settings.evaluateAdvantageInParallel())
+            settings.setEvaluateAdvantageInParallel(false);
+        else
+            settings.setEvaluateAdvantageInParallel(true);
+    }
+
+    /**
+     * Toggles whether the player advantage is evaluated as if dealt from an infinite shoe
+     */
+    public void toggleEvaluateInfiniteDeck()
+    {
+        if(settings.evaluateInfiniteDeck())
+            settings.setEvaluateInfiniteDeck(false);
+        else
+            settings.setEvaluateInfiniteDeck(true);
+    }
+
+
+    /**
+     * Toggles whether player hands of 3+ cards are evaluated by total rather than composition
+     */
+    public void toggleEvaluateTotalDependent()
+    {
+        if(settings.evaluateTotalDependent())
+            settings.setEvaluateTotalDependent(false);
+        else
+            settings.setEvaluateTotalDependent(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this mode
+    }
+
+    /**
+     * Toggles whether transposition tables are allocated off the Java heap, and replaces the
+     * evaluators with empty ones allocated accordingly
+     */
+    public void toggleEvaluateOffHeap()
+    {
+        if(settings.evaluateOffHeap())
+            settings.setEvaluateOffHeap(false);
+        else
+            settings.setEvaluateOffHeap(true);
+        createEvaluators();
+    }
+
     /**
      * Toggles whether a non-bust five-card Player Hand is an automatic win
      */
@@ -814,6 +854,7 @@ System.out.println("end: " + System.nanoTime());
             settings.setFiveCardCharlieWins(false);
         else
             settings.setFiveCardCharlieWins(true);
+        clearPlayerHandROIs();                //cached ROIs depend on this rule
     }
 
 
@@ -844,6 +885,30 @@ System.out.println("end: " + System.nanoTime());
 
     //--------------------------------- Private Instance Behaviour ---------------------------------
 
+    /**
+     * Replaces the evaluators with empty ones, in a new session on or off the Java heap as set in
+     * settings. The previous session is closed, so its tables are freed at once if off-heap.
+     */
+    private void createEvaluators()
+    {
+        if(session != null)
+            session.close();
+        session = new EvaluationSession(settings.evaluateOffHeap());
+        evaluators = PlayerAdvantage.createEvaluators(settings, session);
+        evaluator = evaluators[Card.TWO];
+    }
+
+    /**
+     * Replaces the shoe with a new one, and restarts the dealer's peek stream. Both streams are
+     * jumped ahead from seed, as in ShardedSimulation, so they never overlap.
+     */
+    private void createShoe()
+    {
+        RandomStream master = new RandomStream(seed);
+        shoe = new Shoe(settings, master.nextStream());
+        random = master.nextStream();
+    }
+
     /**
      * Gets number of players, and a start bank, CountStrategy, and BetStrategy for each.
      */
@@ -932,11 +997,9 @@ System.out.println("end: " + System.nanoTime());
             //ensure next card from shoe doesn't violate dealer's peek and confirmed not BJ
             if(dH.confirmedNotBlackJack())
                 if(dH.isSingle10())
-                    while(shoe.next().value() == 11)
-                        shoe.shuffle();
+                    shoe.nextExcluding(Shoe.EXCLUDE_ACE);
                 else if(dH.isSingleAce())
-                    while(shoe.next().value() == 10)
-                        shoe.shuffle();
+                    shoe.nextExcluding(Shoe.EXCLUDE_10_VALUE);
 
             Card card = ui.getCard(dH.countCards(), shoe); //try to get a valid Card
 
@@ -951,98 +1014,11 @@ System.out.println("end: " + System.nanoTime());
             shoe.remove(card);                               //remove Card from shoe
             dH.insertCard(card);                             //insert Card into Player's Hand
             refreshState();                                  //refresh countCards13 and shoeSize
-            clearPlayerHandROIs();                           //becuase shoe has changed
         }
 
     }
 
 
-    /**
-     * Evluates static PlayerHand against recrusive DealerHand
-     * Never called when playerHand is BlackJack, becuase if it was, it would call 
-     * evaluateBlackJacKROI() or evaluateSplitBlackJackROI(), respectively.
-     */
-    private double dealerTurnROI()
-    {
-        //Base Cases                                         //TODO, try switching ordering
-        if(dH.isBust())
-            return ROI.win();
-        else if(dH.isBlackJack())
-            if(pH.isBlackJack() && !settings.dealerWinsTies())
-                return ROI.draw();
-            else
-                return ROI.loss();
-        else if(dH.score > 17 || dH.score() == 17 && (!settings.dealerHitsSoft17() || !dH.isSoft()))
-            if(pH.score() > dH.score())
-                return ROI.win();
-            else if(pH.score() < dH.score() || settings.dealerWinsTies())
-                return ROI.loss();
-            else
-                return ROI.draw();
-        else if(dealerHandROIs.containsKey(dH.hashCode()))
-            return dealerHandROIs.get(dH.hashCode());
-
-
-        //Recursive Cases
-        if(shoeSize == 0)
-        {
-            throw new IllegalStateException("Shoe empty (dealerTurn)");
-        	
-        }
-        double prob;
-        int hashCode = dH.hashCode();
-        ROI[] rois = new ROI[Card.COUNT_DEALER_CARD_TYPES];
-
-        //if dealer has peeked at A or 10-value, and continued, we know dealer doesn't have BJ
-        if(dH.confirmedNotBlackJack() && dH.countCards() == 1)   
-        {
-            for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
-            {
-                //only process possible next Card. We know dealer's hand is single A or 10
-                if(cardTypeCounts10[cardType] > 0 &&
-                        (dH.score() == 10 && cardType != Card.DEALER_ACE ||     //can have [X][!A]
-                        dH.score() == 11 && cardType != Card.TEN))              //can have [A][!X]
-                {
-                    if(dH.score() == 10)
-                        prob = (double)cardTypeCounts10[cardType] / 
-                                (shoeSize - cardTypeCounts10[Card.DEALER_ACE]);
-                    else
-                        prob = (double)cardTypeCounts10[cardType] / 
-                                (shoeSize - cardTypeCounts10[Card.TEN]);
-                    cardTypeCounts10[cardType]--;
-                    shoeSize--;
-                    dH.insert(cardType);
-                    rois[cardType] = new ROI(prob, dealerTurnROI());
-                    dH.removeLast();
-                    shoeSize++;
-                    cardTypeCounts10[cardType]++;
-                }
-            }
-        }
-        else    
-        {
-
-            for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
-            {
-                if(cardTypeCounts10[cardType] > 0)
-                {
-                    prob = (double)cardTypeCounts10[cardType] / shoeSize;
-//System.out.println(cardType + " " + cardTypeCounts10[cardType] + " " + shoeSize);
-                    cardTypeCounts10[cardType]--;
-                    shoeSize--;
-                    dH.insert(cardType);
-                    rois[cardType] = new ROI(prob, dealerTurnROI());
-                    dH.removeLast();
-                    cardTypeCounts10[cardType]++;
-                    shoeSize++;
-                }
-            }
-        }
-
-        double totalROI = ROI.merge(rois);
-        dealerHandROIs.put(hashCode, totalROI);
-        return totalROI;        
-    }
 
 
 
@@ -1161,7 +1137,6 @@ System.out.println("end: " + System.nanoTime());
         shoe.remove(card);                               //remove Card from shoe
         hand.insertCard(card);                           //insert Card into Player's Hand
         refreshState();                                  //refresh countCards13 and shoeSize
-        clearPlayerHandROIs();                           //becuase shoe has changed
     }
 
 
@@ -1183,96 +1158,8 @@ System.out.println("end: " + System.nanoTime());
         return shoe.probability10Value() * 3.0 - 1.0;
     }
 
-    /**
-     * Evaluates the ROI given that a player has BlackJack.
-     * This is necessary because the dealerTurn does not account for the ROI difference
-     * between a win and a BlackjackWin. Better for playerTurnROI() to check this, as it 
-     * iterates less times than dealerTurn().  
-     */
-    private double evaluateBlackJackROI()
-    {
-        if(dH.confirmedNotBlackJack() || dH.score != 10 || dH.score != 11 || dH.countCards != 1)
-            return ROI.blackJack();
-
-        ROI[] rois = new ROI[2];      //ROIs for dealer being BJ and !BJ
-        if(dH.score() == 10)          //dealer has [X]
-        {
-            double aceChance = (double) cardTypeCounts13[Card.PLAYER_ACE] / shoeSize;
-            rois[0] = new ROI(aceChance, settings.dealerWinsTies() ? ROI.loss() : ROI.draw());
-            rois[1] = new ROI(1 - aceChance, ROI.blackJack());
-        }
-        else                          //dealer has [A]
-        {
-            double tenChance = (double)(cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] + 
-                    cardTypeCounts13[Card.QUEEN] +  cardTypeCounts13[Card.KING]) / shoeSize;
-            rois[0] = new ROI(tenChance, settings.dealerWinsTies() ? ROI.loss() : ROI.draw());
-            rois[1] = new ROI(1 - tenChance, ROI.blackJack());
-        }
-        return ROI.merge(rois);
-    }
 
 
-    /**
-     * Evaluates the ROI if player hits current hand
-     * Non-recursive driver.
-     * More complex version if dH isConfirmedNotBlackJack
-     */
-    private double evaluateHitROI()
-    {
-        double prob;
-        ROI[] rois = new ROI[Card.COUNT_PLAYER_CARD_TYPES];
-
-        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ    
-        {
-            double countNonTens = shoeSize - cardTypeCounts13[Card.TEN] - 
-                    cardTypeCounts13[Card.JACK] - cardTypeCounts13[Card.QUEEN] - 
-                    cardTypeCounts13[Card.KING];
-            double countNonAces = shoeSize - cardTypeCounts13[Card.PLAYER_ACE];
-            shoeSize--;                                         // Avoids ss++/ss-- and ?/(ss - 1)
-            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
-            {
-                if(cardTypeCounts13[cardType] > 0)
-                {
-                    if(dH.score() == 10)                    //if dH is [A][?]!BJ
-                        if(cardType != Card.PLAYER_ACE)     //if adding [2]-[K] to pH
-                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] / 
-                                    countNonAces) / shoeSize;
-                        else                                //if adding [A] to pH
-                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    else                                    //if dH is [10][?]!BJ
-                        if(Card.PLAYER_VALUES[cardType] != 10) //if adding [2]-[9],[A] to pH
-                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] /
-                                    countNonTens) / shoeSize;
-                        else                                //if adding [X],[J],[Q],[K] to pH
-                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    cardTypeCounts13[cardType]--;
-                    pH.insert(cardType);
-                    rois[cardType] = new ROI(prob, playerTurnROI());
-                    pH.removeLast();
-                    cardTypeCounts13[cardType]++;
-                }
-            }
-            shoeSize++;
-        }
-        else                       // else dH does not have hole-card or face-card != {A,10}
-        {
-            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
-            {
-                if(cardTypeCounts13[cardType] > 0)
-                {
-                    prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    cardTypeCounts13[cardType]--;
-                    shoeSize--;
-                    pH.insert(cardType);
-                    rois[cardType] = new ROI(prob, playerTurnROI());
-                    pH.removeLast();
-                    shoeSize++;
-                    cardTypeCounts13[cardType]++;
-                }
-            }
-        }
-        return ROI.merge(rois);
-    }
 
 
     /**
@@ -1296,174 +1183,14 @@ System.out.println("end: " + System.nanoTime());
     }
 
 
-    /**
-     * Evaluates the ROI if player stands with current hand.
-     * Non-recursive driver.
-     * If this PlayerHand has been evaluated before, its ROI is retrieved from the transosition
-     * table. Else the PlayerHand is compared against the set of possible non-bust DealerHands.
-     */
-    private double evaluateStandROI()
-    {
-        //base case. It may be already evaluated if we calculated nonSurrender options
-        if(playerStandHandROIs.containsKey(pH.hashCode()))
-            return playerStandHandROIs.get(pH.hashCode());
-
-        dealerHandROIs.clear();                             //new transposition table for each PH
-        updateDealerShoe();                                 //so that cardTypeCounts10 is accurate
-        double roi = dealerTurnROI();
-
-        playerStandHandROIs.put(pH.hashCode(), roi);
-        return roi;
-    }
-
-    /**
-     * Evaluates the ROI if player splits current hand
-     * Non-recursive driver.
-     */
-    private double evaluateSplitROI()
-    {
-        pH.split();                           //ignore returned clone, not needed for calculation
-        double splitROI = playerTurnROI();
-        pH.unsplit();                         //decrements splitLevel, copies single Card
-        return 2.0 * splitROI;
-    }
 
 
-    /**
-     * Evaluates the ROI if player doubles current hand
-     * Non-recursive driver.
-     * This method's call to evaluateStandROI() will duplicate an equivalent call
-     * from playerTurnROI(). Therefore both use the playerStandHandROIs<hashCode,ROI> table.
-     */
-    private double evaluateDoubleROI()
-    {
-        ROI[] rois = new ROI[Card.COUNT_PLAYER_CARD_TYPES];
-        double prob;
 
-        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ    
-        {
-            double countNonTens = shoeSize - cardTypeCounts13[Card.TEN] - 
-                    cardTypeCounts13[Card.JACK] - cardTypeCounts13[Card.QUEEN] - 
-                    cardTypeCounts13[Card.KING];
-            double countNonAces = shoeSize - cardTypeCounts13[Card.PLAYER_ACE];
-            shoeSize--;                                         // Avoids ss++/ss-- and ?/(ss - 1)
-            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
-            {
-                if(cardTypeCounts13[cardType] > 0)
-                {
-                    if(dH.score() == 10)                    //if dH is [A][?]!BJ
-                        if(cardType != Card.PLAYER_ACE)     //if adding [2]-[K] to pH
-                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] / 
-                                    countNonAces) / shoeSize;
-                        else                                //if adding [A] to pH
-                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    else                                    //if dH is [10][?]!BJ
-                        if(Card.PLAYER_VALUES[cardType] != 10) //if adding [2]-[9],[A] to pH
-                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] /
-                                    countNonTens) / shoeSize;
-                        else                                //if adding [X],[J],[Q],[K] to pH
-                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    cardTypeCounts13[cardType]--;
-                    pH.insert(cardType);
-                    if(pH.isBust())
-                        rois[cardType] = new ROI(prob, ROI.loss());
-                    else if(pH.countCards() == 5 && pH.score() == 21 && settings.fiveCard21Wins())
-                        rois[cardType] = new ROI(prob, ROI.fiveCard21(pH.bet()));
-                    else if(pH.countCards() == 5 && settings.fiveCardCharlieWins())
-                        rois[cardType] = new ROI(prob, ROI.win());
-                    else
-                        rois[cardType] = new ROI(prob, evaluateStandROI()); //will query/update table
-                    pH.removeLast();
-                    cardTypeCounts13[cardType]++;
-                }
-            }
-            shoeSize++;
-        }
-        else                       //else dH does not have hole-card or face-card != {A,10}
-        {
-            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
-            {
-                if(cardTypeCounts13[cardType] > 0)
-                {
-                    prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    cardTypeCounts13[cardType]--;
-                    shoeSize--;
-                    pH.insert(cardType);
-                    if(pH.isBust())
-                        rois[cardType] = new ROI(prob, ROI.loss());
-                    else if(pH.countCards() == 5 && pH.score() == 21 && settings.fiveCard21Wins())
-                        rois[cardType] = new ROI(prob, ROI.fiveCard21(pH.bet()));
-                    else if(pH.countCards() == 5 && settings.fiveCardCharlieWins())
-                        rois[cardType] = new ROI(prob, ROI.win());
-                    else
-                        rois[cardType] = new ROI(prob, evaluateStandROI());
-                    pH.removeLast();
-                    shoeSize++;
-                    cardTypeCounts13[cardType]++;
-                }
-            }
-        }
-        //no need to query/update transposition table of stood hands as evaluateStandROI() 
-        // will do that for us.
-        return 2.0 * ROI.merge(rois);
-    }
     
-    /**
-     * Returns the ROI if player surrenders current hand
-     * Non-recursive driver.
-     */
-    private double evaluateSurrenderROI()
-    {
-        return ROI.surrender();
-    }
 
 
-    /**
-     * Evaluates the ROI if player does not surrender current hand
-     * Non-recursive driver.
-     * Gets the best available non-surrender option.
-     * TODO. this should leave our trans. tables already complete!!
-     */
-    private double evaluateNonSurrenderROI()
-    {
-        ROI[] rois = new ROI[4];
-        rois[0] = new ROI(1.0, evaluateStandROI());
-        rois[1] = new ROI(1.0, evaluateHitROI());
-        if(pH.isSplittable())
-            rois[2] = new ROI(1.0, evaluateSplitROI());
-        if(pH.isDoublable())
-            rois[3] = new ROI(1.0, evaluateDoubleROI());
-        return ROI.max(rois);
-    }
 
 
-    /**
-     * Evaluates the ROI given that a player has splitBlackJack.
-     * This is necessary because the dealerTurn does not account for the ROI difference
-     * between a win and a splitBlackjackWin. Better for playerTurnROI() to check this, as it 
-     * iterates less times than dealerTurn().  
-     */
-    private double evaluateSplitBlackJackROI()
-    {
-        if(dH.confirmedNotBlackJack() || dH.score != 10 || dH.score != 11 || dH.countCards != 1)
-            return ROI.splitBlackJack();
-
-        ROI[] rois = new ROI[2];      //ROIs for dealer being BJ and !BJ
-        if(dH.score() == 10)          //dealer has [X]
-        {
-            double aceChance = (double) cardTypeCounts13[Card.PLAYER_ACE] / shoeSize;
-            rois[0] = new ROI(aceChance, settings.dealerWinsTies() ? ROI.loss() : ROI.draw());
-            rois[1] = new ROI(1 - aceChance, ROI.splitBlackJack());
-        }
-        else                          //dealer has [A]
-        {
-            double tenChance = (double)(cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] + 
-                    cardTypeCounts13[Card.QUEEN] +  cardTypeCounts13[Card.KING]) / shoeSize;
-            rois[0] = new ROI(tenChance, settings.dealerWinsTies() ? ROI.loss() : ROI.draw());
-            rois[1] = new ROI(1 - tenChance, ROI.splitBlackJack());
-        }
-        return ROI.merge(rois);
-    }
 
 
     /**
@@ -1574,8 +1301,10 @@ System.out.println("end: " + System.nanoTime());
             if(player.insurance() == 0.0 && !pH.isRedeemed() && !pH.isBlackJack())
             {
                 options.clear();
-                options.add(new Option(Option.SURRENDER, evaluateSurrenderROI()));
-                options.add(new Option(Option.DONT_SURRENDER, evaluateNonSurrenderROI()));
+                evaluator.setHands(pH, dH);
+                options.add(new Option(Option.SURRENDER, evaluator.evaluateSurrenderROI()));
+                options.add(new Option(Option.DONT_SURRENDER, 
+                        evaluator.evaluateNonSurrenderROI()));
                 Collections.sort(options);
                 ui.setFocusPlayer(pIdx);
                 ui.displayHand(dH);
@@ -1593,26 +1322,26 @@ System.out.println("end: " + System.nanoTime());
      * Dealer Peek at Hole Card. If peek reveals BJ, 2nd card automatically given to dealer
      * Pre: dealerActionRequired && dealerDealtHoleCard() && dealer score = 10,11
      *      && dealer count cards = 1
-     * Also clears PlayerHandROIs transposition tables as probabilities have changed
+     * Whether it reveals BJ is drawn from the game's peek stream, so auto-play can be replayed.
+     * Transposition tables are keyed by shoe composition, so they remain valid and are kept.
      */
     private void peekAtDealerHoleCard()
     {
         ui.setFocusDealer();
         boolean dealerIsBlackJack = false; //will be reset, just to placate compiler
-        Random rand = new Random();
         if(dH.score() == 10)
-            dealerIsBlackJack = rand.nextDouble() < shoe.probabilityAce();
+            dealerIsBlackJack = random.nextDouble() < shoe.probabilityAce();
         else if(dH.score() == 11)
-            dealerIsBlackJack = rand.nextDouble() < shoe.probability10Value();
+            dealerIsBlackJack = random.nextDouble() < shoe.probability10Value();
 
         dealerIsBlackJack = ui.getDealerPeekRevealsBlackJack(dealerIsBlackJack);
         if(dealerIsBlackJack)
         {
             Card c = null;
             if(dH.score() == 10)
-                c = new Card(Card.PLAYER_ACE, shoe.probableSuit(Card.PLAYER_ACE, Shoe.REMOVE));
+                c = Card.of(Card.PLAYER_ACE, shoe.probableSuit(Card.PLAYER_ACE, Shoe.REMOVE));
             else if(dH.score() == 11)
-                c = new Card(Card.TEN, shoe.probableSuit(Card.TEN, Shoe.REMOVE));
+                c = Card.of(Card.TEN, shoe.probableSuit(Card.TEN, Shoe.REMOVE));
             shoe.remove(c);
             dH.insertCard(c);
             ui.displayHand(dH);
@@ -1620,7 +1349,6 @@ System.out.println("end: " + System.nanoTime());
         else
             dH.confirmNotBlackJack();
 
-        clearPlayerHandROIs();               //becuase probabilities have changed
     }
 
 
@@ -1670,12 +1398,13 @@ System.out.println("end: " + System.nanoTime());
                     ui.displayHand(dH);
                     ui.displayHand(pH);
                     options = new ArrayList<Option>();
-                    options.add(new Option(Option.STAND, evaluateStandROI()));
-                    options.add(new Option(Option.HIT, evaluateHitROI()));
+                    evaluator.setHands(pH, dH);
+                    options.add(new Option(Option.STAND, evaluator.evaluateStandROI()));
+                    options.add(new Option(Option.HIT, evaluator.evaluateHitROI()));
                     if(pH.isSplittable())
-                        options.add(new Option(Option.SPLIT, evaluateSplitROI()));
+                        options.add(new Option(Option.SPLIT, evaluator.evaluateSplitROI()));
                     if(pH.isDoublable())
-                        options.add(new Option(Option.DOUBLE_DOWN, evaluateDoubleROI()));
+                        options.add(new Option(Option.DOUBLE_DOWN, evaluator.evaluateDoubleROI()));
                     Collections.sort(options);
                     ui.displayOptions(options);
                     choice = ui.getChoice(0, options.size() - 1);
@@ -1702,7 +1431,6 @@ System.out.println("end: " + System.nanoTime());
                                 ui.displayFiveCardCharlieWin(player.redeemHand(pH));
                         }
                         refreshState();  
-                        clearPlayerHandROIs();
                     }
                     else if(options.get(choice).name().equals(Option.SPLIT)) 
                     {
@@ -1719,7 +1447,6 @@ System.out.println("end: " + System.nanoTime());
                         shoe.remove(finalCard);
                         player.doubleDownHand(pH, additionalBet, finalCard);
                         refreshState();  
-                        clearPlayerHandROIs();
                         ui.displayHand(pH);
                     }  
                 }  //end while this hand is hittable
@@ -1733,116 +1460,6 @@ System.out.println("end: " + System.nanoTime());
         } //end of each player
     }
 
-    /**
-     * Recursive algorithm. Returns the best available ROI for current state.
-     * Called by non-recursive evaulateHitROI() and non-recursive evaluateSplitROI()
-     * @return the compound ROI for current PlayerHand state
-     */
-    private double playerTurnROI()
-    {
-        //Base Cases
-        if(pH.isBust())                                     //most likely
-            return ROI.loss();
-        if(playerHandROIs.containsKey(pH.hashCode()))       //2nd most likely
-            return playerHandROIs.get(pH.hashCode());       //3rd most likely
-        if(pH.score == 21)
-        {
-            if(pH.countCards() == 2)                        //if pH is splitBlackJack. Rare.
-            {
-                return evaluateSplitBlackJackROI();
-            }
-            else if(pH.countCards() == 5 && settings.fiveCard21Wins())
-                return ROI.fiveCard21(pH.bet());            //if 5 card 21
-            else                                            //if 3+ card 21
-            {
-                Double standROI = playerStandHandROIs.get(pH.hashCode);
-                if(standROI != null)
-                    return standROI;
-                else
-                    standROI = evaluateStandROI();
-                playerStandHandROIs.put(pH.hashCode(), standROI);
-                return standROI;
-            }
-        }
-        if(pH.countCards() == 5 && settings.fiveCardCharlieWins())  //5 card Charlie
-            return ROI.win();
-
-        //Recursive case (ie. score < 21)
-        if(shoeSize == 0)
-            throw new IllegalStateException("Shoe empty (playerTurn)");
-        int hashCode = pH.hashCode();
-        Double standROI = playerStandHandROIs.get(pH.hashCode());
-        Double hitROI = -10.0;           //will be reset to higher value
-        Double splitROI = -10.0;         //may be reset to higher value
-        Double doubleROI = -10.0;        //may be reset to higher value
-        if(standROI == null)
-        {   
-            standROI = evaluateStandROI();
-            playerStandHandROIs.put(pH.hashCode(), standROI);
-        }
-      
-        double prob;
-        ROI[] rois = new ROI[13];
-        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ    
-        {
-            double countNonTens = shoeSize - cardTypeCounts13[Card.TEN] - 
-                    cardTypeCounts13[Card.JACK] - cardTypeCounts13[Card.QUEEN] - 
-                    cardTypeCounts13[Card.KING];
-            double countNonAces = shoeSize - cardTypeCounts13[Card.PLAYER_ACE];
-            shoeSize--;                                         // Avoids ss++/ss-- and ?/(ss - 1)
-            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
-            {
-                if(cardTypeCounts13[cardType] > 0)
-                {
-                    if(dH.score() == 10)                    //if dH is [A][?]!BJ
-                        if(cardType != Card.PLAYER_ACE)     //if adding [2]-[K] to pH
-                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] / 
-                                    countNonAces) / shoeSize;
-                        else                                //if adding [A] to pH
-                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    else                                    //if dH is [10][?]!BJ
-                        if(Card.PLAYER_VALUES[cardType] != 10) //if adding [2]-[9],[A] to pH
-                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] /
-                                    countNonTens) / shoeSize;
-                        else                                //if adding [X],[J],[Q],[K] to pH
-                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    cardTypeCounts13[cardType]--;
-                    pH.insert(cardType);
-                    rois[cardType] = new ROI(prob, playerTurnROI());
-                    pH.removeLast();
-                    cardTypeCounts13[cardType]++;
-                }
-            }
-            shoeSize++;
-        }
-        else                       //else dH does not have hole-card or face-card != {A,10}
-        {
-            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
-            {
-                if(cardTypeCounts13[cardType] > 0)
-                {
-                    prob = (double)cardTypeCounts13[cardType] / shoeSize;
-                    cardTypeCounts13[cardType]--;
-                    shoeSize--;
-                    pH.insert(cardType);
-                    rois[cardType] = new ROI(prob, playerTurnROI());
-                    pH.removeLast();
-                    shoeSize++;
-                    cardTypeCounts13[cardType]++;
-                }
-            }
-        }
-        hitROI = ROI.merge(rois);
-
-        if(pH.isSplittable())
-            splitROI = evaluateSplitROI();
-        if(pH.isDoublable())
-            doubleROI = evaluateDoubleROI();
-
-        double maxROI = ROI.max(standROI, hitROI, splitROI, doubleROI);
-        playerHandROIs.put(hashCode, maxROI);
-        return maxROI;
-    }
 
 
 
@@ -1878,9 +1495,9 @@ System.out.println("end: " + System.nanoTime());
             Player player = players.get(pIdx);
             ui.displayBank(pIdx, player.bank());
             if(player.betStrategy() instanceof BetStrategyUserSpecified)
-                player.placeInitialBet(shoe);
+                player.placeInitialBet(shoe, settings.ruleSet());
             else
-                ui.displayInitialBet(pIdx, player.placeInitialBet(shoe));
+                ui.displayInitialBet(pIdx, player.placeInitialBet(shoe, settings.ruleSet()));
         }
         
         //Deal 2 cards to each player, 1 or 2 cards to dealer, offer insurance, even money, surrendr
@@ -2014,9 +1631,11 @@ System.out.println("end: " + System.nanoTime());
                         else  //player is blackJack and dealer is not BlackJack
                         {
                             if(pH.splitLevel() == 0)    // player is non-split BlackJack
-                                ui.displayPlayerBlackJack(pIdx, hIdx, pH.bet() * ROI.blackJack());
+                                ui.displayPlayerBlackJack(pIdx, hIdx, 
+                                        pH.bet() * settings.blackJackROI());
                             else // player has split BlackJack and dealer is not BlackJack
-                                ui.displayPlayerBlackJack(pIdx, hIdx, pH.bet() * ROI.splitBlackJack());
+                                ui.displayPlayerBlackJack(pIdx, hIdx, 
+                                        pH.bet() * settings.splitBlackJackROI());
                             player.winHand(pH, settings);
                         }
                     else if(dH.isBust())   //dealer is bust and player isn't
@@ -2049,23 +1668,6 @@ System.out.println("end: " + System.nanoTime());
 
 
 
-    /**
-     * Updates the dealer shoe (10cardTypes) from the cardTypeCounts(13cardTypes)
-     * This is because cards {X,J,Q,K} are all the same as far as dealer is concerned.
-     * Must be called prior to each evaluating dealerTurn
-     */
-    private void updateDealerShoe()
-    {
-
-        for(int cardType = Card.TWO; cardType <= Card.NINE; cardType++)
-            cardTypeCounts10[cardType] = cardTypeCounts13[cardType];
-
-        cardTypeCounts10[Card.TEN] = cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] +
-                cardTypeCounts13[Card.QUEEN] + cardTypeCounts13[Card.KING];
-
-        cardTypeCounts10[Card.DEALER_ACE] = cardTypeCounts13[Card.PLAYER_ACE];
-
-    }
 
 
 }
\ No newline at end of file
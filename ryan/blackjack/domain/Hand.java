@@ -16,18 +16,27 @@ package ryan.blackjack.domain;
 public abstract class Hand
 {
     //----------------------------------------- Constants ------------------------------------------
-    public static final int     INVALID = -1;               //used for hashCode 
+    //Each card type is a base-23 digit of key. A hand never holds 23 cards of one type, so digits
+    // never carry and key is unique for each combination of cards
+    protected static final int    KEY_BASE = 23;
+    protected static final long[] KEY_WEIGHTS = new long[Card.COUNT_PLAYER_CARD_TYPES + 1];
+    static
+    {
+        KEY_WEIGHTS[Card.COUNT_PLAYER_CARD_TYPES] = 1;                   //spare digit, eg splitLevel
+        for(int i = Card.COUNT_PLAYER_CARD_TYPES - 1; i >= 0; i--)
+            KEY_WEIGHTS[i] = KEY_WEIGHTS[i + 1] * KEY_BASE;
+    }
 
 
     //------------------------------------ Instance Attributes -------------------------------------
-    protected Card[] cards;          //this hand's Cards. Presentation only. Not modified during probability evaluation.
+    protected int[]  cards;          //this hand's card codes. Presentation only. Not modified during probability evaluation.
     protected int[]  cardTypes;      //this hand's card types, used in probability calculations
     protected int    countCards;     //how many cards are in this hand
     protected int    countAces;      //how many Aces are in this hand
     protected int    countSoftAces;  //how many Aces valued @11 are in the hand
     protected int    score;          //hand's current score
-    protected int    hashCode;       //unique for each unique (D|P) Hand
-                                     // Note that D.hashCode() == P.hashCode()
+    protected long   key;            //unique for each unique (D|P) Hand. Updated by insert()
+                                     // and removeLast(). Note that D.key() == P.key()
                                      // does not imply that D == P
 
     /**
@@ -35,13 +44,13 @@ public abstract class Hand
      */
     protected Hand(int maxCountCards)
     {
-        cards = new Card[maxCountCards];
+        cards = new int[maxCountCards];
         cardTypes = new int[maxCountCards];
         countCards = 0;
         countAces = 0;
         countSoftAces = 0;
         score = 0;
-        hashCode = INVALID;
+        key = 0;
     }
 
     /**
@@ -53,10 +62,11 @@ public abstract class Hand
      * @param countAces          number of Aces in new hand
      * @param countSoftAces number of non-reduced Aces in new hand
      * @param score              score of new hand
+     * @param key                key of new hand
      * @return new Hand with specified attributes
      */
-    protected Hand(Card[] cards, int[] cardTypes, int countCards, int countAces, 
-            int countSoftAces, int score, int hashCode)
+    protected Hand(int[] cards, int[] cardTypes, int countCards, int countAces, 
+            int countSoftAces, int score, long key)
     {
         this.cards = cards;
         this.cardTypes = cardTypes;
@@ -64,7 +74,7 @@ public abstract class Hand
         this.countAces = countAces;
         this.countSoftAces = countSoftAces;
         this.score = score;
-        this.hashCode = hashCode;
+        this.key = key;
     }
 
     /**
@@ -77,13 +87,12 @@ public abstract class Hand
     {
         if(cIdx >= countCards)
             throw new IllegalArgumentException("countCards: " + countCards + ", cIdx: " + cIdx);
-        return cards[cIdx];
+        return Card.of(cards[cIdx]);
     }
 
 
     /**
      * Returns the number of cards of the specified type currently in this hand
-     * Used by both DealerHand and PlayerHand to compute hashCode()
      * @param cardType cardType to count. Works for both DealerHand and PlayerHand types
      * @return number of cards of specified card type currently in this hand
      */
@@ -109,7 +118,7 @@ public abstract class Hand
     /**
      * Tests if two Hands contains same combination of cards [& same splitLevels (0-4)]
      * For (maxSplitLevels = 4)
-     * As hashCode() produces a unique value for each unique hand, use hashCode() to equals().
+     * As key() produces a unique value for each unique hand, use key() to equals().
      * Empirically tested, this is 3x faster.
      * Caller should never try to compare a DealerHand to a PlayerHand
      * @param o other Hand to compare this Hand to
@@ -118,7 +127,17 @@ public abstract class Hand
     @Override
     public final boolean equals(Object o)
     {
-        return hashCode() == o.hashCode();
+        return o instanceof Hand && key == ((Hand)o).key;
+    }
+
+    /**
+     * Returns a hashCode consistent with equals(). Derived from key()
+     * @return hashCode of this hand
+     */
+    @Override
+    public final int hashCode()
+    {
+        return (int)(key ^ (key >>> 32));
     }
 
 
@@ -204,6 +223,16 @@ public abstract class Hand
     public abstract void removeLast();
 
 
+    /**
+     * Returns the key of this hand, used for transposition tables. O(1), as it is maintained
+     * incrementally by insert() and removeLast() rather than recomputed from the cards.
+     * @return key of this hand, unique for each unique hand
+     */
+    public long key()
+    {
+        return key;
+    }
+
     /**
      * Returns the score of this hand
      * @return the score of this hand
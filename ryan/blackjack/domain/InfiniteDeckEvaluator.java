@@ -0,0 +1,428 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// PlayerAdvantage evaluate()           --> infinite-deck advantage, recomputed only if rules change
+// static double probability(int dealerCardType) --> probability of drawing a dealer card type
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Evaluates the player advantage as if dealt from an infinite shoe.
+ * Every card type is drawn with a fixed probability (4/13 for a 10-value, else 1/13), so the
+ * ROI of a hand depends only on its total and softness, plus the counts the rules look at (card
+ * count for doubling and five-card rules, split level and first card for doubling after splits).
+ * These tables are small, so are precomputed once per set of rules and answered in microseconds.
+ *
+ * Rules are applied exactly as ROIEvaluator applies them to the initial deals, so the two differ
+ * only by the effect of removing cards from a finite shoe. Use PlayerAdvantage.evaluate() for
+ * the exact advantage of a particular shoe.
+ * Not thread safe. Each thread must use its own evaluator.
+ */
+public final class InfiniteDeckEvaluator
+{
+    //----------------------------------------- Constants ------------------------------------------
+    public static final double PROB_PLAYER_CARD_TYPE = 1.0 / Card.COUNT_PLAYER_CARD_TYPES;
+
+    private static final int   COUNT_SCORES       = 21 + 1;
+    private static final int   COUNT_FIRST_CARDS  = 2;      //as PlayerHand.isDoublable() indexes
+    private static final int   MAX_COUNT_CARDS    = PlayerHand.MAX_COUNT_CARDS;
+
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final boolean DEFAULT_EVALUATE_INFINITE_DECK = false;
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Returns the probability of drawing the specified dealer card type from an infinite shoe
+     * @param dealerCardType a dealer card type. {X,J,Q,K} are all Card.TEN
+     * @return the probability of drawing the specified dealer card type
+     */
+    public static double probability(int dealerCardType)
+    {
+        return dealerCardType == Card.TEN ? 4 * PROB_PLAYER_CARD_TYPE : PROB_PLAYER_CARD_TYPE;
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings        settings;               //current System settings
+    private RuleSet         rules;                  //settings' table rules
+    private String          fingerprint;            //rules the tables were built for, else null
+    private PlayerAdvantage advantage;              //the advantage for fingerprint
+    private double[][]      dealerOutcomes;         //[dC1Type][outcome], dealer has not peeked
+    private double[][]      dealerDrawOutcomes;     //[score * 2 + soft][outcome], null if unknown
+    private double[]        standROIs;              //[dC1Type * COUNT_SCORES + score]
+    private double[]        playerHandROIs;         //by playerHandIndex(), NaN if unknown
+    private double[]        splitHandROIs;          //by [dC1Type][pairType][splitLevel], NaN if unknown
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor
+     * @param settings the settings to evaluate against. Read, never modified.
+     */
+    public InfiniteDeckEvaluator(Settings settings)
+    {
+        this.settings = settings;
+        dealerOutcomes = new double[Card.COUNT_DEALER_CARD_TYPES]
+                [DealerOutcomeDistribution.COUNT_OUTCOMES];
+        dealerDrawOutcomes = new double[COUNT_SCORES * 2][];
+        standROIs = new double[Card.COUNT_DEALER_CARD_TYPES * COUNT_SCORES];
+        playerHandROIs = new double[Card.COUNT_DEALER_CARD_TYPES * COUNT_SCORES * 2 *
+                (MAX_COUNT_CARDS + 1) * (PlayerHand.MAX_SPLIT_LEVELS + 1) * COUNT_FIRST_CARDS];
+        splitHandROIs = new double[Card.COUNT_DEALER_CARD_TYPES * Card.COUNT_PLAYER_CARD_TYPES *
+                (PlayerHand.MAX_SPLIT_LEVELS + 1)];
+    }
+
+    /**
+     * Evaluates the infinite-deck player advantage and the Recommendations for every initial
+     * deal. The tables are rebuilt only if a rule has changed since the last call, so repeated
+     * calls with the same rules return the same result at once.
+     * @return the player advantage and the Recommendations for every initial deal
+     */
+    public PlayerAdvantage evaluate()
+    {
+        String current = settings.ruleFingerprint();
+        if(!current.equals(fingerprint))
+        {
+            rules = settings.ruleSet();
+            dealerTable();
+            Arrays.fill(playerHandROIs, Double.NaN);
+            Arrays.fill(splitHandROIs, Double.NaN);
+            advantage = evaluateInitialDeals();
+            fingerprint = current;
+        }
+        return advantage;
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Adds prob * the distribution of final outcomes of a dealer hand of 2+ cards to the
+     * specified distribution. Hands that must draw are evaluated once each per set of rules.
+     * @param score the dealer's score
+     * @param soft whether the dealer's hand is soft
+     * @param prob probability of the hand occurring
+     * @param distribution distribution to add to
+     */
+    private void addDealerOutcomes(int score, boolean soft, double prob, double[] distribution)
+    {
+        //Base Cases
+        if(score > 21)
+        {
+            distribution[DealerOutcomeDistribution.BUST] += prob;
+            return;
+        }
+        if(score > 17 || score == 17 && (!settings.dealerHitsSoft17() || !soft))
+        {
+            distribution[score - DealerOutcomeDistribution.LOWEST_STAND_SCORE] += prob;
+            return;
+        }
+
+        //Recursive Case
+        int index = score * 2 + (soft ? 1 : 0);
+        double[] drawOutcomes = dealerDrawOutcomes[index];
+        if(drawOutcomes == null)
+        {
+            drawOutcomes = new double[DealerOutcomeDistribution.COUNT_OUTCOMES];
+            for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
+            {
+                int value = Card.DEALER_VALUES[cardType];
+                int nextScore = score + value;
+                boolean nextSoft = soft || cardType == Card.DEALER_ACE;
+                if(nextScore > 21 && nextSoft)
+                {
+                    nextScore -= 10;
+                    nextSoft = soft && cardType == Card.DEALER_ACE;
+                }
+                addDealerOutcomes(nextScore, nextSoft, probability(cardType), drawOutcomes);
+            }
+            dealerDrawOutcomes[index] = drawOutcomes;
+        }
+        for(int outcome = 0; outcome < DealerOutcomeDistribution.COUNT_OUTCOMES; outcome++)
+            distribution[outcome] += prob * drawOutcomes[outcome];
+    }
+
+    /**
+     * Builds the distribution of the dealer's final outcomes for each face card, before the
+     * dealer peeks, as ROIEvaluator.evaluateInitialDeals() does. Then the ROI of standing on
+     * each score against each face card.
+     */
+    private void dealerTable()
+    {
+        Arrays.fill(dealerDrawOutcomes, null);
+        for(int dC1Type = Card.TWO; dC1Type <= Card.DEALER_ACE; dC1Type++)
+        {
+            double[] distribution = dealerOutcomes[dC1Type];
+            Arrays.fill(distribution, 0.0);
+            for(int dC2Type = Card.TWO; dC2Type <= Card.DEALER_ACE; dC2Type++)
+            {
+                int score = Card.DEALER_VALUES[dC1Type] + Card.DEALER_VALUES[dC2Type];
+                boolean soft = dC1Type == Card.DEALER_ACE || dC2Type == Card.DEALER_ACE;
+                if(score == 21)
+                    distribution[DealerOutcomeDistribution.BLACKJACK] += probability(dC2Type);
+                else if(score > 21)                         //[A][A]
+                    addDealerOutcomes(score - 10, soft, probability(dC2Type), distribution);
+                else
+                    addDealerOutcomes(score, soft, probability(dC2Type), distribution);
+            }
+
+            double tieROI = settings.dealerWinsTies() ? ROI.loss() : ROI.draw();
+            for(int score = 0; score <= 21; score++)
+            {
+                double roi = distribution[DealerOutcomeDistribution.BUST] * ROI.win() +
+                        distribution[DealerOutcomeDistribution.BLACKJACK] * ROI.loss();
+                for(int outcome = 0; outcome < DealerOutcomeDistribution.BUST; outcome++)
+                {
+                    int dealerScore = outcome + DealerOutcomeDistribution.LOWEST_STAND_SCORE;
+                    if(score > dealerScore)
+                        roi += distribution[outcome] * ROI.win();
+                    else if(score < dealerScore)
+                        roi += distribution[outcome] * ROI.loss();
+                    else
+                        roi += distribution[outcome] * tieROI;
+                }
+                standROIs[dC1Type * COUNT_SCORES + score] = roi;
+            }
+        }
+    }
+
+    /**
+     * Evaluates the ROI of doubling a hand: a single card, then stand
+     * @param dC1Type dealer's face card, as a dealer card type
+     * @param score the hand's score
+     * @param soft whether the hand is soft
+     * @param countCards count of cards in the hand
+     * @return the ROI of doubling, relative to the original bet
+     */
+    private double doubleROI(int dC1Type, int score, boolean soft, int countCards)
+    {
+        double doubleROI = 0.0;
+        for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
+        {
+            int nextScore = score + Card.DEALER_VALUES[cardType];
+            if(nextScore > 21 && (soft || cardType == Card.DEALER_ACE))
+                nextScore -= 10;
+
+            double cardROI;
+            if(nextScore > 21)
+                cardROI = ROI.loss();
+            else if(countCards + 1 == 5 && nextScore == 21 && settings.fiveCard21Wins())
+                cardROI = rules.fiveCard21ROI(rules.minBet());
+            else if(countCards + 1 == 5 && settings.fiveCardCharlieWins())
+                cardROI = ROI.win();
+            else
+                cardROI = standROIs[dC1Type * COUNT_SCORES + nextScore];
+            doubleROI += probability(cardType) * cardROI;
+        }
+        return 2.0 * doubleROI;
+    }
+
+    /**
+     * Evaluates the best Option for every initial deal against every dealer face card, in the
+     * same order as PlayerAdvantage.evaluate(), with probabilities from an infinite shoe
+     * @return the player advantage and the Recommendations for every initial deal
+     */
+    private PlayerAdvantage evaluateInitialDeals()
+    {
+        ArrayList<ROI>    rois = new ArrayList<ROI>(14 * 13 / 2 * 13);
+        ArrayList<Option> options = new ArrayList<Option>();
+        Recommendations   recommendations = new Recommendations();
+        double            insuranceROI;
+        boolean           insrChc;
+
+        //Determine if taking insurance is a positive ROI. Never, unless 3:1 is paid on worse odds
+        insuranceROI = settings.dealerOffersInsurance() ?
+                Math.max(probability(Card.TEN) * 3.0 - 1.0, 0.0) : 0.0;
+
+        for(int dC1PlayerType = Card.TWO; dC1PlayerType <= Card.PLAYER_ACE; dC1PlayerType++)
+        {
+            int dC1Type = Card.dealerType(dC1PlayerType);
+            for(int pC1Type = Card.TWO; pC1Type <= Card.PLAYER_ACE; pC1Type++)
+            {
+                for(int pC2Type = pC1Type; pC2Type <= Card.PLAYER_ACE; pC2Type++)
+                {
+                    double prob = PROB_PLAYER_CARD_TYPE * PROB_PLAYER_CARD_TYPE *
+                            PROB_PLAYER_CARD_TYPE;
+                    if(pC1Type != pC2Type)
+                        prob *= 2.0;
+                    int score = Card.PLAYER_VALUES[pC1Type] + Card.PLAYER_VALUES[pC2Type];
+                    boolean soft = pC1Type == Card.PLAYER_ACE || pC2Type == Card.PLAYER_ACE;
+                    if(score > 21)                          //[A][A]
+                        score -= 10;
+                    int firstCard = pC1Type == Card.PLAYER_ACE ? 0 : 1;
+
+                    insrChc = dC1Type == Card.DEALER_ACE && insuranceROI > 0.0;
+
+                    options.clear();
+
+                    //if no insurance taken and surrender available, add Surrender Option
+                    if(!insrChc &&
+                            settings.surrenderType() == GameLogic.SURRENDER_TYPE_EARLY ||
+                            (settings.surrenderType() == GameLogic.SURRENDER_TYPE_LATE &&
+                            !settings.dealerDealtHoleCard()))
+                        options.add(new Option(Option.SURRENDER, ROI.surrender()));
+
+                    //if player is BJ, stand is BJ ROI, else stand is stand ROI
+                    if(score == 21)
+                        options.add(new Option(Option.STAND, rules.blackJackROI() + insuranceROI));
+                    else
+                        options.add(new Option(Option.STAND,
+                                standROIs[dC1Type * COUNT_SCORES + score] + insuranceROI));
+
+                    options.add(new Option(Option.HIT,
+                            hitROI(dC1Type, score, soft, 2, 0, firstCard) + insuranceROI));
+
+                    if(rules.isSplitPair(pC1Type, pC2Type) && rules.timesSplittable(pC1Type) > 0)
+                        options.add(new Option(Option.SPLIT,
+                                2.0 * splitHandROI(dC1Type, pC1Type, 1) + insuranceROI));
+
+                    if(rules.isDoublable(2, score, firstCard, 0))
+                        options.add(new Option(Option.DOUBLE_DOWN,
+                                doubleROI(dC1Type, score, soft, 2) + insuranceROI));
+
+                    Collections.sort(options);
+
+                    rois.add(new ROI(prob, options.get(0).roi()));
+                    recommendations.insert(dC1PlayerType, pC1Type, pC2Type, insrChc,
+                            options.get(0));
+                }
+            }
+        }
+        return new PlayerAdvantage(recommendations,
+                ROI.merge(rois.toArray(new ROI[rois.size()])));
+    }
+
+    /**
+     * Evaluates the ROI of hitting a hand once, then playing on optimally
+     * @param dC1Type dealer's face card, as a dealer card type
+     * @param score the hand's score
+     * @param soft whether the hand is soft
+     * @param countCards count of cards in the hand
+     * @param splitLevel count of times the hand has been split
+     * @param firstCard 0 if the hand's first card is an Ace, else 1
+     * @return the ROI of hitting
+     */
+    private double hitROI(int dC1Type, int score, boolean soft, int countCards, int splitLevel,
+            int firstCard)
+    {
+        double hitROI = 0.0;
+        for(int cardType = Card.TWO; cardType <= Card.DEALER_ACE; cardType++)
+        {
+            int nextScore = score + Card.DEALER_VALUES[cardType];
+            boolean nextSoft = soft || cardType == Card.DEALER_ACE;
+            if(nextScore > 21 && nextSoft)
+            {
+                nextScore -= 10;
+                nextSoft = soft && cardType == Card.DEALER_ACE;
+            }
+            hitROI += probability(cardType) * playerTurnROI(dC1Type, nextScore, nextSoft,
+                    countCards + 1, splitLevel, firstCard);
+        }
+        return hitROI;
+    }
+
+    /**
+     * Returns the index into playerHandROIs of the specified state
+     */
+    private static int playerHandIndex(int dC1Type, int score, boolean soft, int countCards,
+            int splitLevel, int firstCard)
+    {
+        int index = (dC1Type * COUNT_SCORES + score) * 2 + (soft ? 1 : 0);
+        index = index * (MAX_COUNT_CARDS + 1) + countCards;
+        index = index * (PlayerHand.MAX_SPLIT_LEVELS + 1) + splitLevel;
+        return index * COUNT_FIRST_CARDS + firstCard;
+    }
+
+    /**
+     * Recursive algorithm. Returns the best available ROI of a hand that is not a pair, as
+     * ROIEvaluator.playerTurnROI() does. Each state is evaluated once per set of rules.
+     * @param dC1Type dealer's face card, as a dealer card type
+     * @param score the hand's score
+     * @param soft whether the hand is soft
+     * @param countCards count of cards in the hand
+     * @param splitLevel count of times the hand has been split
+     * @param firstCard 0 if the hand's first card is an Ace, else 1
+     * @return the compound ROI of the hand
+     */
+    private double playerTurnROI(int dC1Type, int score, boolean soft, int countCards,
+            int splitLevel, int firstCard)
+    {
+        //Base Cases
+        if(score > 21)
+            return ROI.loss();
+        if(score == 21)
+        {
+            if(countCards == 2)                             //only a split hand gets here
+                return rules.splitBlackJackROI();
+            else if(countCards == 5 && settings.fiveCard21Wins())
+                return rules.fiveCard21ROI(rules.minBet());
+            else
+                return standROIs[dC1Type * COUNT_SCORES + score];
+        }
+        if(countCards == 5 && settings.fiveCardCharlieWins())
+            return ROI.win();
+
+        int index = playerHandIndex(dC1Type, score, soft, countCards, splitLevel, firstCard);
+        double maxROI = playerHandROIs[index];
+        if(!Double.isNaN(maxROI))
+            return maxROI;
+
+        //Recursive Case
+        maxROI = standROIs[dC1Type * COUNT_SCORES + score];
+        if(countCards < MAX_COUNT_CARDS)                    //a finite shoe never gets this far
+        {
+            maxROI = ROI.max(maxROI, hitROI(dC1Type, score, soft, countCards, splitLevel,
+                    firstCard));
+            if(rules.isDoublable(countCards, score, firstCard, splitLevel))
+                maxROI = ROI.max(maxROI, doubleROI(dC1Type, score, soft, countCards));
+        }
+        playerHandROIs[index] = maxROI;
+        return maxROI;
+    }
+
+    /**
+     * Recursive algorithm. Returns the best available ROI of one hand of a split pair, holding
+     * a single card of pairType. Its second card may make a pair again, which may be resplit.
+     * @param dC1Type dealer's face card, as a dealer card type
+     * @param pairType the player card type of the split pair
+     * @param splitLevel count of times the hand has been split
+     * @return the compound ROI of a single hand of the split
+     */
+    private double splitHandROI(int dC1Type, int pairType, int splitLevel)
+    {
+        int index = (dC1Type * Card.COUNT_PLAYER_CARD_TYPES + pairType) *
+                (PlayerHand.MAX_SPLIT_LEVELS + 1) + splitLevel;
+        double maxROI = splitHandROIs[index];
+        if(!Double.isNaN(maxROI))
+            return maxROI;
+
+        int score = Card.PLAYER_VALUES[pairType];
+        boolean soft = pairType == Card.PLAYER_ACE;
+        int firstCard = soft ? 0 : 1;
+        double hitROI = 0.0;
+        for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+        {
+            int nextScore = score + Card.PLAYER_VALUES[cardType];
+            boolean nextSoft = soft || cardType == Card.PLAYER_ACE;
+            if(nextScore > 21)                              //[A][A]
+                nextScore -= 10;
+            double cardROI = playerTurnROI(dC1Type, nextScore, nextSoft, 2, splitLevel,
+                    firstCard);
+            if(rules.isSplitPair(pairType, cardType) &&
+                    splitLevel < rules.timesSplittable(pairType))
+                cardROI = ROI.max(cardROI, 2.0 * splitHandROI(dC1Type, pairType, splitLevel + 1));
+            hitROI += PROB_PLAYER_CARD_TYPE * cardROI;
+        }
+
+        maxROI = ROI.max(standROIs[dC1Type * COUNT_SCORES + score], hitROI);
+        if(rules.isDoublable(1, score, firstCard, splitLevel))
+            maxROI = ROI.max(maxROI, doubleROI(dC1Type, score, soft, 1));
+        splitHandROIs[index] = maxROI;
+        return maxROI;
+    }
+}
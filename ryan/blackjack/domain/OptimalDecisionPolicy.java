@@ -0,0 +1,115 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.domain;
+
+/**
+ * OptimalDecisionPolicy class.
+ * Always chooses the Option with the best ROI, exactly as Auto Play does in GameLogic.
+ * Holds an ROIEvaluator per dealer face card, whose tables persist across decisions and rounds.
+ */
+public final class OptimalDecisionPolicy implements DecisionPolicy
+{
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Gets the Option with the best ROI for the hands the evaluator is set to. Ties are resolved 
+     * in the order Stand, Hit, Split, Double Down, as Collections.sort() is stable in GameLogic.
+     * @param evaluator an evaluator, already set to the shoe state and hands
+     * @param pH the hand to act on
+     * @return Option.STAND, Option.HIT, Option.SPLIT or Option.DOUBLE_DOWN
+     */
+    static String bestAction(ROIEvaluator evaluator, PlayerHand pH)
+    {
+        String action = Option.STAND;
+        double maxROI = evaluator.evaluateStandROI();
+        double roi = evaluator.evaluateHitROI();
+        if(roi > maxROI)
+        {
+            action = Option.HIT;
+            maxROI = roi;
+        }
+        if(pH.isSplittable())
+        {
+            roi = evaluator.evaluateSplitROI();
+            if(roi > maxROI)
+            {
+                action = Option.SPLIT;
+                maxROI = roi;
+            }
+        }
+        if(pH.isDoublable() && evaluator.evaluateDoubleROI() > maxROI)
+            action = Option.DOUBLE_DOWN;
+        return action;
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings        settings;               //current System settings
+    private ROIEvaluator[]  evaluators;             //one per dealer face card type
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor
+     * @param settings the settings to evaluate against. Read, never modified.
+     */
+    public OptimalDecisionPolicy(Settings settings)
+    {
+        this.settings = settings;
+        evaluators = PlayerAdvantage.createEvaluators(settings);
+    }
+
+    /**
+     * Accepts even money if its ROI (1.0) exceeds that of playing on with BlackJack
+     */
+    @Override
+    public boolean acceptEvenMoney(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        return 1.0 > (1.0 - shoe.probability10Value()) * settings.blackJackROI();
+    }
+
+    /**
+     * Takes insurance if its ROI is positive
+     */
+    @Override
+    public boolean takeInsurance(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        return shoe.probability10Value() * 3.0 - 1.0 > 0.0;
+    }
+
+    /**
+     * Surrenders if its ROI exceeds that of the best non-surrender Option
+     */
+    @Override
+    public boolean surrender(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        ROIEvaluator evaluator = evaluator(shoe, dH, pH);
+        return evaluator.evaluateSurrenderROI() > evaluator.evaluateNonSurrenderROI();
+    }
+
+    /**
+     * Chooses the Option with the best ROI for the current shoe state
+     */
+    @Override
+    public String action(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        return bestAction(evaluator(shoe, dH, pH), pH);
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Gets the evaluator for the dealer's face card, set to the current shoe and hands
+     * @return the evaluator for the dealer's face card
+     */
+    private ROIEvaluator evaluator(Shoe shoe, DealerHand dH, PlayerHand pH)
+    {
+        ROIEvaluator evaluator = evaluators[dH.cardAt(0).playerType()];
+        evaluator.setState(shoe.cardTypeCounts(), shoe.size());
+        evaluator.setHands(pH, dH);
+        return evaluator;
+    }
+}
@@ -193,6 +193,24 @@ public final class Player
         return bank.maxBank();
     }
 
+    /**
+     * Merges another Player's results into this Player, as if other's rounds were played after
+     * this Player's. Totals and counts are summed, and other's bank history is appended.
+     * Used to combine the same Player's results from independent tables.
+     * @param other a Player with no hand in play
+     */    
+    public void merge(Player other)
+    {
+        bank.merge(other.bank);
+        totalBetsLaid += other.totalBetsLaid;
+        totalBetsWinnings += other.totalBetsWinnings;
+        totalInsuranceLaid += other.totalInsuranceLaid;
+        totalInsuranceWinnings += other.totalInsuranceWinnings;
+        countHandsSplit += other.countHandsSplit;
+        countHandsSurrendered += other.countHandsSurrendered;
+        countHandsDoubleDowned += other.countHandsDoubleDowned;
+    }
+
     /**
      * Returns this Player's minimum bank level during game
      * @return this Player's minimum bank level during game
@@ -206,15 +224,17 @@ public final class Player
     /**
      * Clears Player's old Hands. Creates a new PlayerHand with initial bet.
      * Updates Player's bank and betting history
+     * @param shoe the shoe, whose true count the bet may depend on
+     * @param rules the table rules the round is played by
      */    
-    public double placeInitialBet(Shoe shoe)
+    public double placeInitialBet(Shoe shoe, RuleSet rules)
     {
-        double initialBet = betStrategy.getBet(shoe.trueCount(countStrategy));
+        double initialBet = betStrategy.getBet(shoe.trueCount(countStrategy), rules);
         bank.adjustBank(-initialBet, true);                     //reduce player's chips
         totalBetsLaid += initialBet;                   //register bet
 
         hands.clear();
-        hands.add(new PlayerHand(initialBet));         //place chips on new PlayerHand
+        hands.add(new PlayerHand(initialBet, rules));       //place chips on new PlayerHand
         return initialBet;
     }
 
@@ -379,7 +399,7 @@ public final class Player
      * Returns a copy of this player's bank history
      * @return
      */
-    public TreeMap<Integer,Double> bankHistory()
+    public TreeMap<Long,Double> bankHistory()
     {
     	return bank.bankHistory();
     }
@@ -0,0 +1,211 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.domain;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PlayerAdvantage class.
+ * Encapsulates the player advantage and the Recommendations for every initial deal from a shoe.
+ */
+public final class PlayerAdvantage
+{
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final boolean DEFAULT_EVALUATE_IN_PARALLEL = true;
+    public static final boolean DEFAULT_EVALUATE_TOTAL_DEPENDENT = false;
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Creates an ROIEvaluator for each dealer face card, for use with evaluate(), with tables on
+     * the Java heap
+     * @param settings the settings to evaluate against
+     * @return an ROIEvaluator for each dealer face card, indexed by player card type
+     */
+    public static ROIEvaluator[] createEvaluators(Settings settings)
+    {
+        return createEvaluators(settings, new EvaluationSession(false));
+    }
+
+    /**
+     * Creates an ROIEvaluator for each dealer face card, for use with evaluate().
+     * The evaluators share a single lock-free table of dealer distributions, so that evaluators
+     * for 10, J, Q and K face cards reuse each other's, even on different threads. It takes a
+     * quarter of the table memory budget, and the evaluators' tables share the rest, so that
+     * together they never exceed it. The budget is for this set of evaluators alone: callers
+     * keeping several sets at once give each a share, as from Settings.copyWithTableMemoryShare()
+     * @param settings the settings to evaluate against
+     * @param session session owning the storage of every evaluator's tables. The evaluators
+     *                must not be used once it is closed.
+     * @return an ROIEvaluator for each dealer face card, indexed by player card type
+     */
+    public static ROIEvaluator[] createEvaluators(Settings settings, EvaluationSession session)
+    {
+        SharedTranspositionTable dealerOutcomes = 
+                DealerOutcomeDistribution.createSharedDistributions(
+                ((long)settings.tableMemoryMegabytes() << 20) / 
+                ROIEvaluator.SHARED_DEALER_MEMORY_SHARE, session);
+        ROIEvaluator[] evaluators = new ROIEvaluator[Card.COUNT_PLAYER_CARD_TYPES];
+        for(int dC1Type = Card.TWO; dC1Type <= Card.PLAYER_ACE; dC1Type++)
+            evaluators[dC1Type] = new ROIEvaluator(settings, dealerOutcomes, session);
+        return evaluators;
+    }
+
+    /**
+     * Evaluates the player advantage for the specified settings and shoe state, with new 
+     * ROIEvaluators that are discarded afterwards. If settings evaluate off-heap, their tables are
+     * allocated off the Java heap, and freed as soon as evaluation completes.
+     * @param settings the settings to evaluate against. Must not be modified during evaluation.
+     * @param shoe the shoe prior to any cards being dealt. Must not be modified during evaluation.
+     * @return the player advantage and the Recommendations for every initial deal
+     */
+    public static PlayerAdvantage evaluate(Settings settings, Shoe shoe)
+    {
+        try(EvaluationSession session = new EvaluationSession(settings.evaluateOffHeap()))
+        {
+            return evaluate(settings, shoe, createEvaluators(settings, session));
+        }
+    }
+
+    /**
+     * Evaluates the player advantage for the specified settings as if dealt from an infinite
+     * shoe, with a new InfiniteDeckEvaluator that is discarded afterwards. Far faster than
+     * evaluate(), but ignores the composition of any particular shoe.
+     * @param settings the settings to evaluate against. Must not be modified during evaluation.
+     * @return the player advantage and the Recommendations for every initial deal
+     */
+    public static PlayerAdvantage evaluateInfiniteDeck(Settings settings)
+    {
+        return new InfiniteDeckEvaluator(settings).evaluate();
+    }
+
+    /**
+     * Evaluates the player advantage for the specified settings and shoe state.
+     *
+     * Each dealer face card is evaluated by its own UpcardTask, with its own ROIEvaluator and
+     * transposition tables. If enabled in settings, tasks are run on the common fork-join pool.
+     * Results are always merged in face card order, so the total is identical bit-for-bit
+     * whether evaluated serially or in parallel.
+     * The evaluators keep their tables, so that a caller that goes on to play the initial deal
+     * with the same evaluator finds every subtree of that deal already evaluated.
+     * @param settings the settings to evaluate against. Must not be modified during evaluation.
+     * @param shoe the shoe prior to any cards being dealt. Must not be modified during evaluation.
+     * @param evaluators an ROIEvaluator for each dealer face card, as from createEvaluators().
+     *                   Must not be used by any other thread during evaluation.
+     * @return the player advantage and the Recommendations for every initial deal
+     */
+    public static PlayerAdvantage evaluate(Settings settings, Shoe shoe, 
+            ROIEvaluator[] evaluators)
+    {
+        int[]           cardTypeCounts13 = shoe.cardTypeCounts();
+        int             shoeSize = shoe.size();
+        double          insuranceROI;             //either 0.0 or positive if available and worth it
+        ArrayList<ROI>  rois;                     //ROI for each initial deal.
+        Recommendations recommendations;          //stores bestOption and insuranceChoice
+        UpcardTask[]    tasks = new UpcardTask[Card.COUNT_PLAYER_CARD_TYPES];
+
+        //Determine if taking insurance is a positive ROI. Same for every initial deal.
+        insuranceROI = settings.dealerOffersInsurance() ?
+                Math.max(shoe.probability10Value() * 3.0 - 1.0, 0.0) : 0.0;
+
+        for(int dC1Type = Card.TWO; dC1Type <= Card.PLAYER_ACE; dC1Type++)
+            tasks[dC1Type] = new UpcardTask(evaluators[dC1Type], cardTypeCounts13, shoeSize, 
+                    dC1Type, insuranceROI);
+
+        if(settings.evaluateAdvantageInParallel())
+            ForkJoinTask.invokeAll(tasks);
+        else
+            for(UpcardTask task : tasks)
+                task.invoke();
+
+        //merge in face card order, regardless of order in which tasks completed
+        rois = new ArrayList<ROI>(14 * 13 / 2 * 13);
+        recommendations = new Recommendations();
+        for(int dC1Type = Card.TWO; dC1Type <= Card.PLAYER_ACE; dC1Type++)
+        {
+            rois.addAll(tasks[dC1Type].rois);
+            recommendations.merge(tasks[dC1Type].recommendations, dC1Type);
+        }
+
+        return new PlayerAdvantage(recommendations,
+                ROI.merge(rois.toArray(new ROI[rois.size()])));
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Recommendations recommendations;       //insurance choice & best Option for each deal
+    private double          totalPlayerROI;        //-ve value indicates dealer advantage
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor
+     * @param recommendations insurance choice and best Option for each initial deal
+     * @param totalPlayerROI player advantage. -ve value indicates dealer advantage
+     */
+    public PlayerAdvantage(Recommendations recommendations, double totalPlayerROI)
+    {
+        this.recommendations = recommendations;
+        this.totalPlayerROI = totalPlayerROI;
+    }
+
+    /**
+     * Returns the insurance choice and best Option for each initial deal
+     * @return the insurance choice and best Option for each initial deal
+     */
+    public Recommendations recommendations()
+    {
+        return recommendations;
+    }
+
+    /**
+     * Returns the player advantage. -ve value indicates dealer advantage
+     * @return the player advantage
+     */
+    public double totalPlayerROI()
+    {
+        return totalPlayerROI;
+    }
+
+    //---------------------------------------- INNER CLASSES ---------------------------------------
+    /**
+     * Evaluates every initial deal for a single dealer face card
+     */
+    @SuppressWarnings("serial")
+    private static final class UpcardTask extends RecursiveAction
+    {
+        private ROIEvaluator    evaluator;
+        private int[]           cardTypeCounts13;      //private copy, modified during evaluation
+        private int             shoeSize;              //before initial deal
+        private int             dC1Type;               //Dealer's Face Card
+        private double          insuranceROI;
+        private ArrayList<ROI>  rois;                  //ROI for each initial deal, in deal order
+        private Recommendations recommendations;       //only [dC1Type] cells are used
+
+        private UpcardTask(ROIEvaluator evaluator, int[] cardTypeCounts13, int shoeSize, 
+                int dC1Type, double insuranceROI)
+        {
+            this.evaluator = evaluator;
+            this.cardTypeCounts13 = cardTypeCounts13.clone();
+            this.shoeSize = shoeSize;
+            this.dC1Type = dC1Type;
+            this.insuranceROI = insuranceROI;
+            rois = new ArrayList<ROI>(14 * 13 / 2);
+            recommendations = new Recommendations();
+        }
+
+        @Override
+        protected void compute()
+        {
+            double probDenominator = (double)shoeSize * (shoeSize - 1) * (shoeSize - 2);
+            evaluator.setState(cardTypeCounts13, shoeSize - 3);
+            evaluator.evaluateInitialDeals(dC1Type, probDenominator, insuranceROI, rois,
+                    recommendations);
+        }
+    }
+}
@@ -23,6 +23,9 @@ public final class PlayerHand extends Hand
     public static final int     SPLIT_BY_VALUE   =  0;
     public static final int     SPLIT_BY_RANK    =  1;
 
+    //splitLevel is held in the spare digit of key, below the digits of each card type
+    private static final long   SPLIT_LEVEL_KEY_WEIGHT = KEY_WEIGHTS[Card.COUNT_PLAYER_CARD_TYPES];
+
     //------------------------------------------ Defaults ------------------------------------------
     public static final boolean DEFAULT_DEALT_FACE_UP               = false;
     public static final boolean DEFAULT_CAN_HIT_AFTER_ACES_SPLIT    = true;
@@ -46,96 +49,8 @@ public final class PlayerHand extends Hand
         DEFAULT_DOUBLABLE_SCORES.add(11);
     }
 
-    //-------------------------------------- Class Attributes --------------------------------------
-    private static boolean      canHitAfterAcesSplit = DEFAULT_CAN_HIT_AFTER_ACES_SPLIT;
-    private static boolean[][]  splitCardEqualities  = new boolean[13][13];
-    static
-    {
-        setSplitCardEqualityType(DEFAULT_SPLIT_CARD_EQUALITY_TYPE);
-    }
-
-    private static int          times2toK_Splittable  = DEFAULT_TIMES_2_K_SPLITTABLE;
-    private static int          timesAcesSplittable   = DEFAULT_TIMES_ACE_SPLITTABLE;
-
-    //an array of states where for each state, we can either double down or not double down.
-    //every Player Hand will be mapped to one of these states
-    private static boolean[][][][] doublableStates = 
-            new boolean[MAX_COUNT_CARDS + 1][21 + 1][2][MAX_SPLIT_LEVELS + 1];
-    static
-    {
-        setDoublableStates(DEFAULT_DOUBLABLE_CARD_COUNTS, DEFAULT_DOUBLABLE_SCORES,
-                DEFAULT_CAN_DOUBLE_AFTER_2toK_SPLIT, DEFAULT_CAN_DOUBLE_AFTER_ACE_SPLIT);
-    }
-
-    //-------------------------------------- Class Behaviour ---------------------------------------
-    /**
-     * Sets whether player can hit again after Aces split. Used by isHittable()
-     * @parm canHitAfterAcesSplit whether we can hit a hand after splitting Aces
-     */
-    public static void setCanHitAfterAcesSplit(boolean canHitAfterAcesSplit)
-    {
-        PlayerHand.canHitAfterAcesSplit = canHitAfterAcesSplit;
-    }
-
-    /**
-     * Configures whether cards are equal by value or rank
-     * Eg, whether [X][J] can be split
-     * @param equalityType whether 10-value cards are splittable by value or rank
-     */
-    public static void setSplitCardEqualityType(int equalityType)
-    {
-        for(int card1 = Card.TWO; card1 <= Card.PLAYER_ACE; card1++)
-            for(int card2 = Card.TWO; card2 <= Card.PLAYER_ACE; card2++)
-                splitCardEqualities[card1][card2] = equalityType == SPLIT_BY_VALUE ?
-                        Card.PLAYER_VALUES[card1] == Card.PLAYER_VALUES[card2] :
-                        card1 == card2;
-    }
-
-    /**
-     * Sets number of times cards {2,3,4,5,6,7,8,9,X,J,Q,K} can be split
-     * @param times2toK_Splittable number of times {2,3,4,5,6,7,8,9,X,J,Q,K} can be split
-     */
-    public static void setTimes2toK_Splittable(int times2toK_Splittable)
-    {
-        PlayerHand.times2toK_Splittable = times2toK_Splittable;
-    }
-
-    /**
-     * Sets number of times cards {A} can be split
-     * @param timesAcesSplittable number of times {A} can be split
-     */
-    public static void setTimesAcesSplittable(int timesAcesSplittable)
-    {
-    	PlayerHand.timesAcesSplittable = timesAcesSplittable;
-    }
-
-    /**
-     * Configures the states that can be double downed
-     * @param doublableCardCounts list of card counts that can be double downed
-     * @param doublableScores list of scores that can be double downed
-     * @param canDoubleAfter2toK_Split whether can double after {2,3,4,5,6,7,8,9,X,J,Q,K} split
-     * @param canDoubleAfterAcesSplit whether can double after {A} split
-     */
-    public static void setDoublableStates(TreeSet<Integer> doublableCardCounts,
-            TreeSet<Integer> doublableScores, boolean canDoubleAfter2toK_Split, 
-            boolean canDoubleAfterAcesSplit)
-    {
-        int PRIOR_SPLIT_WAS_2toK = 0, PRIOR_SPLIT_WAS_A = 1;  //only relevant when splitLevel >= 1
-
-        for(int _countCards = 0; _countCards <= MAX_COUNT_CARDS; _countCards++)
-            for(int _score = 0; _score <= 21; _score++)
-                for(int priorSplitType = PRIOR_SPLIT_WAS_2toK; 
-                        priorSplitType <= PRIOR_SPLIT_WAS_A; priorSplitType++)
-                    for(int _splitLevel = 0; _splitLevel <= MAX_SPLIT_LEVELS; _splitLevel++)
-                        doublableStates[_countCards][_score][priorSplitType][_splitLevel] =
-                                doublableCardCounts.contains(_countCards) &&
-                                doublableScores.contains(_score) &&
-                                (_splitLevel == 0 ||
-                                priorSplitType == PRIOR_SPLIT_WAS_2toK && canDoubleAfter2toK_Split || 
-                                priorSplitType == PRIOR_SPLIT_WAS_A && canDoubleAfterAcesSplit);
-    }
-
     //------------------------------------ Instance Attributes -------------------------------------
+    private RuleSet rules;                         //table rules for splitting, hitting & doubling
     private double  bet;
     private boolean isRedeemed;                    //set by take evenMoney, 5CardCharlie, or 5Card21
     private boolean isDoubleDowned;
@@ -144,12 +59,14 @@ public final class PlayerHand extends Hand
 
     //------------------------------------- Instance Behaviour -------------------------------------
     /**
-     * Constructor. Zero parameters. Creates an new empty PlayerHand
-     * @return new empty PlayerHand
+     * Constructor. Creates an new empty PlayerHand
+     * @param bet the hand's initial bet
+     * @param rules the table rules the hand is played by
      */
-    public PlayerHand(double bet)
+    public PlayerHand(double bet, RuleSet rules)
     {
         super(MAX_COUNT_CARDS);
+        this.rules = rules;
         this.bet = bet;
         isRedeemed = false;
         isDoubleDowned = false;
@@ -162,11 +79,12 @@ public final class PlayerHand extends Hand
      * Constructor. Fully specified. Used by clone()
      * @return new empty PlayerHand
      */
-    protected PlayerHand(Card[] cards, int[] cardTypes, int countCards, int countAces, 
-            int countSoftAces, int score, int hashCode, double bet, boolean isRedeemed, 
+    protected PlayerHand(int[] cards, int[] cardTypes, int countCards, int countAces, 
+            int countSoftAces, int score, long key, RuleSet rules, double bet, boolean isRedeemed, 
             boolean isDoubleDowned, boolean isSurrendered, int splitLevel)
     {
-        super(cards, cardTypes, countCards, countAces, countSoftAces, score, hashCode);
+        super(cards, cardTypes, countCards, countAces, countSoftAces, score, key);
+        this.rules = rules;
         this.bet = bet;
         this.isRedeemed = isRedeemed;
         this.isDoubleDowned = isDoubleDowned;
@@ -192,7 +110,7 @@ public final class PlayerHand extends Hand
     {
         return new PlayerHand(
                 cards.clone(), cardTypes.clone(), countCards, countAces, countSoftAces, score, 
-                hashCode, bet, isRedeemed, isDoubleDowned, isSurrendered, splitLevel);
+                key, rules, bet, isRedeemed, isDoubleDowned, isSurrendered, splitLevel);
     }
 
     /**
@@ -216,30 +134,9 @@ public final class PlayerHand extends Hand
     }
 
 
-    /**
-     * Produces a unique hashCode for the 89,010 unqiue bust/!bust (card combo / splitLevel) combos
-     * @return hashcode of this hand
-     */
-    @Override
-    public int hashCode()
-    {
-        if(hashCode != Hand.INVALID)
-            return hashCode;
-        hashCode = cardTypeCount(0) + 1;
-        for(int i = 1; i < 13; i++)
-        {
-            hashCode = hashCode * 23;
-            hashCode += cardTypeCount(i) + 1;
-        }
-        hashCode *= (splitLevel + 1);
-        if(hashCode == Hand.INVALID)
-            hashCode--;
-        return hashCode;
-    }
-
     /**
      * Temporarily inserts the specified cardType in this hand. 
-     * Does not modify Card[].
+     * Does not modify cards[].
      * (Must be fast as this method is called many times during prob. evaluation)
      * @param cardType the card type to insert
      */
@@ -258,7 +155,7 @@ public final class PlayerHand extends Hand
             score -= 10;
             countSoftAces--;
         }
-        hashCode = Hand.INVALID;                                //to reflect that hand has changed
+        key += KEY_WEIGHTS[cardType];  //unique for 89,010 bust/!bust (card combo/splitLevel) combos
     }
 
     /**
@@ -269,20 +166,21 @@ public final class PlayerHand extends Hand
     @Override
     public void insertCard(Card card)
     {
-        cards[countCards] = card;
+        cards[countCards] = card.code();
         insert(card.playerType());
     }
 
 
     /**
      * Determines if this Hand Can be Double Downed. This method must be fast.
-     * static boolean array already pre-configured. Lookup requires 1 Comparison, 1 conditional
+     * RuleSet's boolean array already pre-configured. Lookup requires 1 Comparison, 1 conditional
      * and 4 array lookups. This is assumed to be faster that multiple comparisons and conditionals
      * @return whether this hand can be double downed
      */
     public boolean isDoublable()
     {
-        return doublableStates[countCards][score][cardTypes[0]== Card.PLAYER_ACE ? 0:1][splitLevel];
+        return rules.isDoublable(countCards, score, cardTypes[0]== Card.PLAYER_ACE ? 0:1, 
+                splitLevel);
     }
 
 
@@ -294,7 +192,8 @@ public final class PlayerHand extends Hand
     public boolean isHittable()
     {
         return score < 21 && !isRedeemed && !isDoubleDowned && !isSurrendered &&
-                (splitLevel == 0 || cardTypes[0] != Card.PLAYER_ACE || canHitAfterAcesSplit);
+                (splitLevel == 0 || cardTypes[0] != Card.PLAYER_ACE || 
+                rules.canHitAfterAcesSplit());
     }
 
     /**
@@ -304,7 +203,7 @@ public final class PlayerHand extends Hand
      */
     public boolean isPairTensOrAces()
     {
-        return countCards == 2 && cardTypes[0] == cardTypes[1] && cards[0].value() >= 10;
+        return countCards == 2 && cardTypes[0] == cardTypes[1] && Card.PLAYER_VALUES[cardTypes[0]] >= 10;
     }
 
 
@@ -325,9 +224,8 @@ public final class PlayerHand extends Hand
     public boolean isSplittable()
     {
         return (countCards == 2) &&                                //most likely short-circuit first
-                splitCardEqualities[cardTypes[0]][cardTypes[1]] && 
-                (splitLevel < 
-                (cardTypes[0] == Card.PLAYER_ACE ? timesAcesSplittable : times2toK_Splittable));
+                rules.isSplitPair(cardTypes[0], cardTypes[1]) && 
+                splitLevel < rules.timesSplittable(cardTypes[0]);
     }
 
 
@@ -360,13 +258,14 @@ public final class PlayerHand extends Hand
 
     /**
      * Removes the most recently inserted cardType from this hand
-     * Reverses a temporary change to the hand. Does not modify Card[].
+     * Reverses a temporary change to the hand. Does not modify cards[].
      * (Must be fast as this method is called many times during prob. evaluation)
      */
     @Override
     public void removeLast()
     {
         score -= Card.PLAYER_VALUES[cardTypes[--countCards]];
+        key -= KEY_WEIGHTS[cardTypes[countCards]];
         if(cardTypes[countCards] == Card.PLAYER_ACE)
         {
             countAces--;
@@ -377,7 +276,6 @@ public final class PlayerHand extends Hand
             score += 10;
             countSoftAces++;
         }
-        hashCode = -1;
     }
 
 
@@ -394,6 +292,7 @@ public final class PlayerHand extends Hand
     {
         removeLast();
         splitLevel++;
+        key += SPLIT_LEVEL_KEY_WEIGHT;
         return (PlayerHand)clone();
     }
 
@@ -421,6 +320,20 @@ public final class PlayerHand extends Hand
         return bet / 2;
     }
 
+    /**
+     * Returns the key of this hand's total-dependent state: its score, softness, count of cards,
+     * split level, and whether its first card is an Ace, as the rules look at each of these.
+     * Hands that differ only in the order or composition of their cards share this key.
+     * @return key of this hand's total-dependent state, unique for each state
+     */
+    public long totalDependentKey()
+    {
+        long key = score * 2 + (countSoftAces > 0 ? 1 : 0);
+        key = key * (MAX_COUNT_CARDS + 1) + countCards;
+        key = key * (MAX_SPLIT_LEVELS + 1) + splitLevel;
+        return key * 2 + (countCards > 0 && cardTypes[0] == Card.PLAYER_ACE ? 1 : 0);
+    }
+
     /**
      * Unsplits this Hand. Called after evaluating a splitROI
      */
@@ -428,6 +341,7 @@ public final class PlayerHand extends Hand
     {
         insert(cardTypes[0]);
         splitLevel--;
+        key -= SPLIT_LEVEL_KEY_WEIGHT;
     }
 
 
@@ -18,29 +18,20 @@ public final class ROI
     public static final double DRAW      =  0.0;
     public static final double SURRENDER = -0.5;
     public static final double LOSS      = -1.0;
+    public static final double PROBABILITY_TOLERANCE = 0.000001;
 
 
     //------------------------------------------ Defaults ------------------------------------------
     public static final double DEFAULT_BLACKJACK_ROI       =   1.5;
     public static final double DEFAULT_SPLIT_BLACKJACK_ROI =   1.0;
     public static final double DEFAULT_FIVE_CARD_21_AMOUNT = 100.0;
+    public static final boolean DEFAULT_VALIDATE_PROBABILITIES = false;
 
 
     //-------------------------------------- Class Attributes --------------------------------------
-    private static double blackJackROI      = DEFAULT_BLACKJACK_ROI;
-    private static double splitBlackJackROI = DEFAULT_SPLIT_BLACKJACK_ROI;
-    private static double fiveCard21Amount  = DEFAULT_FIVE_CARD_21_AMOUNT;
+    private static boolean validateProbabilities = DEFAULT_VALIDATE_PROBABILITIES;  //debug only
 
     //-------------------------------------- Class Behaviour ---------------------------------------
-    /**
-     * Returns the ROI for a player BlackJack win
-     * @return the ROI for a player BlackJack win
-     */
-    public static double blackJack()
-    {
-        return blackJackROI;
-    }
-
     /**
      * Returns the ROI for a draw
      * @return the ROI for a draw
@@ -50,16 +41,6 @@ public final class ROI
         return DRAW;
     }
 
-    /**
-     * Returns the ROI for a player Five Card 21 Win. 
-     * Assumes Five-Card-21 Amount is fixed, bet size variables, therefore ROI will vary with bet
-     * @return the ROI for a player Five Card 21 Win. 
-     */
-    public static double fiveCard21(double bet)
-    {
-        return WIN + fiveCard21Amount / bet;
-    }
-
     /**
      * Returns the ROI for a player loss
      * @return the ROI for a player loss
@@ -79,31 +60,27 @@ public final class ROI
     }
 
     /**
-     * Gets the best ROI from a series or array of ROIs
-     * @param rois a varialbe length series or array or ROIs
+     * Gets the better of two ROIs. Unlike Math.max(), the first ROI is kept when they are equal.
+     * Used in place of a varargs max so that evaluation never boxes or allocates.
+     * @param roi the current best ROI, eg. standROI
+     * @param other the ROI to compare against
      * @return maximum ROI
      */
-    public static double max(ROI... rois)
+    public static double max(double roi, double other)
     {
-        double max = rois[0].roi();                //first is standROI so never null
-        for(int i = 1; i < rois.length; i++)
-            if(rois[i] != null && rois[i].roi() > max)
-                max = rois[i].roi();
-        return max;      
+        return other > roi ? other : roi;
     }
 
     /**
-     * Gets the best ROI from a series or array of ROIs
-     * @param rois a varialbe length series or array or ROIs
-     * @return maximum ROI
+     * Checks that the probabilities of a set of merged outcomes sum to 1.0.
+     * Does nothing unless validating probabilities has been enabled, as it is a debug check.
+     * @param probabilitySum the sum of the probabilities of every outcome
+     * @throws IllegalStateException if validating and probabilities do not sum to 1.0
      */
-    public static double max(Double... rois)
+    public static void checkProbabilities(double probabilitySum)
     {
-        double max = rois[0];                      //first is standROI, always valid
-        for(int i = 1; i < rois.length; i++)
-            if(rois[i] > max)
-                max = rois[i];
-        return max;      
+        if(validateProbabilities && Math.abs(1.0 - probabilitySum) > PROBABILITY_TOLERANCE)
+            throw new IllegalStateException("Probabilties must sum to 1.0: " + probabilitySum);
     }
 
     /**
@@ -113,23 +90,15 @@ public final class ROI
      */
     public static double merge(ROI[] rois)
     {
+        if(validateProbabilities)
+        {
+            double probabilitySum = 0.0;
+            for(ROI roi : rois)
+                if(roi != null)
+                    probabilitySum += roi.probability();
+            checkProbabilities(probabilitySum);
+        }
 
-//TODO, remove this check after testing. Just slows things down and shouldn't be necessary
-double probCheck = 0.0;
-for(ROI roi : rois)
-    if(roi != null)
-        probCheck += roi.probability();
-if(Math.abs(1.0 - probCheck) > 0.000001)
-{
-System.out.println("Individual probabilities:");
-    for(ROI roi : rois)
-        if(roi != null)
-            System.out.println(roi.probability());
-        else
-            System.out.println(roi);
-System.out.println();
-    throw new IllegalArgumentException("\nProbabilties must sum to 1.0: " + probCheck);
-}
         double aggregateROI = 0.0;        
         {
             for(int i = 0; i < rois.length; i++)
@@ -144,41 +113,22 @@ System.out.println();
     }
 
     /**
-     * Sets the table's BlackJack ROI
-     * @param newBlackJackROI the new BlackJack ROI to apply to the table
+     * Sets whether the probabilities of merged outcomes are checked to sum to 1.0.
+     * Debug only. Slows evaluation, so is disabled by default.
+     * @param validate whether to check that probabilities sum to 1.0
      */
-    public static void setBlackJackROI(double newBlackJackROI)
+    public static void setValidateProbabilities(boolean validate)
     {
-        blackJackROI = newBlackJackROI;
+        validateProbabilities = validate;
     }
 
     /**
-     * Sets the table's Five Card 21 Amount
-     * @param newBlackJackROI the new Five Card 21 Amount to apply to the table
-     */
-    public static void setFiveCard21Amount(double newFiveCard21Amount)
-    {
-        fiveCard21Amount = newFiveCard21Amount;
-    }
-
-
-    /**
-     * Sets the table's Split BlackJack ROI
-     * @param newSplitBlackJackROI the new Split BlackJack ROI to apply to the table
-     */
-    public static void setSplitBlackJackROI(double newSplitBlackJackROI)
-    {
-        splitBlackJackROI = newSplitBlackJackROI;
-    }
-
-
-    /**
-     * Gets the table's Split BlackJack ROI
-     * @return the table's Split BlackJack ROI
+     * Returns whether the probabilities of merged outcomes are checked to sum to 1.0
+     * @return whether the probabilities of merged outcomes are checked to sum to 1.0
      */
-    public static double splitBlackJack()
+    public static boolean validatingProbabilities()
     {
-        return splitBlackJackROI;
+        return validateProbabilities;
     }
 
     /**
@@ -0,0 +1,1038 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************  
+
+// *********************************************ERRORS**********************************************
+package ryan.blackjack.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Evaluates the ROI of each Option available to a PlayerHand against a DealerHand.
+ * Owns all mutable search state (card counts, shoe size and transposition tables), so that
+ * separate instances can evaluate different states on different threads at the same time.
+ * The only exception is an optional table of dealer distributions, shared without locks.
+ * Table entries are keyed by the remaining shoe composition as well as the hands, so they stay
+ * valid as cards are dealt, and are shared by consecutive decisions and rounds.
+ *
+ * If total-dependent evaluation is enabled in settings, every hand of 3+ cards with the same
+ * total-dependent state (PlayerHand.totalDependentKey()) is played alike. The decision for each
+ * state is chosen once, by evaluating the state as if every card were drawn from the composition
+ * set by setState(), so it does not depend on the order hands are evaluated in. Each hand's ROI
+ * is then evaluated for that fixed decision against the real shoe, and keyed by the remaining
+ * composition as usual, so the cost reported against composition-dependent play is only the
+ * strategy given up.
+ *
+ * The tables are bounded by the memory budget in settings, shared by the evaluators of every
+ * dealer face card, including any table of dealer distributions they share. A full table evicts
+ * the entries cheapest to re-evaluate, so the budget bounds the heap at the cost of some
+ * re-evaluation, without changing any ROI. Their storage is owned by
+ * an EvaluationSession, which may allocate it off the Java heap.
+ */
+public final class ROIEvaluator
+{
+    //----------------------------------------- Constants ------------------------------------------
+    private static final long  FINGERPRINT_SEED = 0x2545F4914F6CDD1DL;
+    private static final int   DECISION_STAND  = 0;     //total-dependent decisions, as stored
+    private static final int   DECISION_HIT    = 1;
+    private static final int   DECISION_DOUBLE = 2;
+    static final int           SHARED_DEALER_MEMORY_SHARE = 4;  //1/4 of budget, to shared dealer's
+    private static final int   COUNT_TABLE_SHARES = 5;  //4 player tables, then the dealer's
+
+    //------------------------------------------ Defaults ------------------------------------------
+    //all face cards' tables on the heap hold at most a quarter of it, so small containers still fit
+    public static final int    MAX_HEAP_TABLE_MEMORY_MEGABYTES = 
+            (int)Math.min(Integer.MAX_VALUE, 
+                    Math.max(1, Runtime.getRuntime().maxMemory() / 4 >> 20));
+    public static final int    DEFAULT_TABLE_MEMORY_MEGABYTES = MAX_HEAP_TABLE_MEMORY_MEGABYTES;
+
+    //-------------------------------------- Class Attributes --------------------------------------
+    //random weights for fingerprinting a state. A table key is the sum of the weights of each card
+    // remaining, plus the weighted keys of both hands, the dealer's peek state and the bet.
+    // A total-dependent key weighs the player's total-dependent state in place of its hand.
+    private static final long[] CARD_TYPE_WEIGHTS = new long[Card.COUNT_PLAYER_CARD_TYPES];
+    private static final long   PLAYER_HAND_WEIGHT;
+    private static final long   DEALER_HAND_WEIGHT;
+    private static final long   PEEKED_WEIGHT;
+    private static final long   BET_WEIGHT;
+    private static final long   TOTAL_DEPENDENT_WEIGHT;
+    static
+    {
+        Random random = new Random(FINGERPRINT_SEED);
+        for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+            CARD_TYPE_WEIGHTS[cardType] = random.nextLong() | 1;
+        PLAYER_HAND_WEIGHT = random.nextLong() | 1;
+        DEALER_HAND_WEIGHT = random.nextLong() | 1;
+        PEEKED_WEIGHT = random.nextLong();
+        BET_WEIGHT = random.nextLong() | 1;
+        TOTAL_DEPENDENT_WEIGHT = random.nextLong() | 1;
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings                settings;               //current System settings
+    private RuleSet                 rules;                  //settings' table rules
+    private DealerHand              dH;                     //the dealer's Hand
+    private PlayerHand              pH;                     //the PlayerHand being evaluated
+    private int[]                   cardTypeCounts10;       //get from shoe to evaluate probability
+    private int[]                   cardTypeCounts13;       //get from shoe to evaluate probability
+    private int                     shoeSize;               //get from shoe to evaluate probability
+    private long                    composition;            //fingerprint of cardTypeCounts13
+    private long                    rootComposition;        //composition when setState() called
+    private boolean                 totalDependent;         //whether 3+ card hands play by total
+    private TranspositionTable      playerHandROIs;         //ROIs for each sub-hand of pH
+    private TranspositionTable      playerStandHandROIs;    //ROIs for each stand sub-hand of pH
+    private TranspositionTable      totalDependentROIs;     //root ROI of each total-dependent state
+    private TranspositionTable      totalDependentDecisions;//decision of each total-dependent state
+    private int[]                   rootCounts13;           //player card types when setState()
+    private int[]                   rootCounts10;           //dealer card types when setState()
+    private int                     rootShoeSize;           //shoeSize when setState() called
+    private double[]                rootProbs;              //of hitting each card type from root
+    private double                  decidedROI;             //set by decide()
+    private DealerOutcomeDistribution dealerOutcomes;       //dealer's final outcomes per shoe
+    private PlayerTurnStack         stack;                  //frames of playerTurnROI()
+    private int                     countFramesPushed;      //cost of a frame is the count above it
+    private double                  leafROI;                //set if pushPlayerTurn() did not push
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Tables are private, on the Java heap.
+     * @param settings the settings to evaluate against. Read, never modified.
+     */
+    public ROIEvaluator(Settings settings)
+    {
+        this(settings, null, new EvaluationSession(false));
+    }
+
+    /**
+     * Constructor
+     * @param settings the settings to evaluate against. Read, never modified.
+     * @param sharedDealerOutcomes dealer distributions shared with evaluators on other threads, 
+     *        as from DealerOutcomeDistribution.createSharedDistributions(), or null if private
+     * @param session session owning the storage of this evaluator's tables. This evaluator must
+     *        not be used once it is closed.
+     */
+    public ROIEvaluator(Settings settings, SharedTranspositionTable sharedDealerOutcomes, 
+            EvaluationSession session)
+    {
+        this.settings = settings;
+        rules = settings.ruleSet();
+        totalDependent = settings.evaluateTotalDependent();
+        cardTypeCounts10 = new int[10];                     //values updated start dealerTurn
+
+        //an equal share per face card of the budget left by the shared dealer distributions,
+        // split equally between the 4 player tables and the dealer's caches, so that all the
+        // tables of every face card sum to at most the budget
+        long budget = (long)settings.tableMemoryMegabytes() << 20;
+        long memoryBytes = (budget - budget / SHARED_DEALER_MEMORY_SHARE) / 
+                Card.COUNT_PLAYER_CARD_TYPES / COUNT_TABLE_SHARES;
+        int maxCapacity = TranspositionTable.capacityFor(memoryBytes);
+        int capacity = Math.min(TranspositionTable.DEFAULT_CAPACITY, maxCapacity);
+        playerHandROIs = new TranspositionTable(capacity, maxCapacity, session);
+        playerStandHandROIs = new TranspositionTable(capacity, maxCapacity, session);
+        totalDependentROIs = new TranspositionTable(capacity, maxCapacity, session);
+        totalDependentDecisions = new TranspositionTable(capacity, maxCapacity, session);
+        rootCounts13 = new int[Card.COUNT_PLAYER_CARD_TYPES];
+        rootCounts10 = new int[10];
+        rootProbs = new double[Card.COUNT_PLAYER_CARD_TYPES];
+        dealerOutcomes = new DealerOutcomeDistribution(settings, memoryBytes, 
+                sharedDealerOutcomes);
+        //all cleared if settings changed
+        stack = new PlayerTurnStack();
+    }
+
+    /**
+     * Clears all transposition tables, and takes the current table rules and evaluation mode from
+     * settings. This must be called if settings may have changed.
+     * Need not be called when cards are dealt or dealer peeks, as every entry is keyed by the
+     * remaining composition, both hands and the dealer's peek state.
+     */
+    public void clearPlayerHandROIs()
+    {
+        rules = settings.ruleSet();
+        totalDependent = settings.evaluateTotalDependent();
+        playerHandROIs.clear();
+        playerStandHandROIs.clear();
+        totalDependentROIs.clear();
+        totalDependentDecisions.clear();
+        dealerOutcomes.clear();
+    }
+
+    /**
+     * Evaluates the ROI given that a player has BlackJack.
+     * This is necessary because the dealerTurn does not account for the ROI difference
+     * between a win and a BlackjackWin. Better for playerTurnROI() to check this, as it 
+     * iterates less times than dealerTurn().  
+     */
+    public double evaluateBlackJackROI()
+    {
+        if(dH.confirmedNotBlackJack() || dH.score != 10 || dH.score != 11 || dH.countCards != 1)
+            return rules.blackJackROI();
+
+        double tieROI = settings.dealerWinsTies() ? ROI.loss() : ROI.draw();  //dealer is BJ
+        if(dH.score() == 10)          //dealer has [X]
+        {
+            double aceChance = (double) cardTypeCounts13[Card.PLAYER_ACE] / shoeSize;
+            return aceChance * tieROI + (1 - aceChance) * rules.blackJackROI();
+        }
+        else                          //dealer has [A]
+        {
+            double tenChance = (double)(cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] + 
+                    cardTypeCounts13[Card.QUEEN] +  cardTypeCounts13[Card.KING]) / shoeSize;
+            return tenChance * tieROI + (1 - tenChance) * rules.blackJackROI();
+        }
+    }
+
+    /**
+     * Evaluates the ROI if player doubles current hand
+     * Non-recursive driver.
+     * This method's call to evaluateStandROI() will duplicate an equivalent call
+     * from playerTurnROI(). Therefore both use the playerStandHandROIs transposition table.
+     */
+    public double evaluateDoubleROI()
+    {
+        double doubleROI = 0.0;              //sum of prob * ROI of each possible card
+        double probabilitySum = 0.0;
+        double prob, cardROI;
+
+        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ    
+        {
+            double countNonTens = shoeSize - cardTypeCounts13[Card.TEN] - 
+                    cardTypeCounts13[Card.JACK] - cardTypeCounts13[Card.QUEEN] - 
+                    cardTypeCounts13[Card.KING];
+            double countNonAces = shoeSize - cardTypeCounts13[Card.PLAYER_ACE];
+            shoeSize--;                                         // Avoids ss++/ss-- and ?/(ss - 1)
+            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+            {
+                if(cardTypeCounts13[cardType] > 0)
+                {
+                    if(dH.score() == 10)                    //if dH is [A][?]!BJ
+                        if(cardType != Card.PLAYER_ACE)     //if adding [2]-[K] to pH
+                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] / 
+                                    countNonAces) / shoeSize;
+                        else                                //if adding [A] to pH
+                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
+                    else                                    //if dH is [10][?]!BJ
+                        if(Card.PLAYER_VALUES[cardType] != 10) //if adding [2]-[9],[A] to pH
+                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] /
+                                    countNonTens) / shoeSize;
+                        else                                //if adding [X],[J],[Q],[K] to pH
+                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
+                    removeCard(cardType);
+                    pH.insert(cardType);
+                    if(pH.isBust())
+                        cardROI = ROI.loss();
+                    else if(pH.countCards() == 5 && pH.score() == 21 && settings.fiveCard21Wins())
+                        cardROI = rules.fiveCard21ROI(pH.bet());
+                    else if(pH.countCards() == 5 && settings.fiveCardCharlieWins())
+                        cardROI = ROI.win();
+                    else
+                        cardROI = evaluateStandROI(); //will query/update table
+                    doubleROI += prob * cardROI;
+                    probabilitySum += prob;
+                    pH.removeLast();
+                    returnCard(cardType);
+                }
+            }
+            shoeSize++;
+        }
+        else                       //else dH does not have hole-card or face-card != {A,10}
+        {
+            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+            {
+                if(cardTypeCounts13[cardType] > 0)
+                {
+                    prob = (double)cardTypeCounts13[cardType] / shoeSize;
+                    removeCard(cardType);
+                    shoeSize--;
+                    pH.insert(cardType);
+                    if(pH.isBust())
+                        cardROI = ROI.loss();
+                    else if(pH.countCards() == 5 && pH.score() == 21 && settings.fiveCard21Wins())
+                        cardROI = rules.fiveCard21ROI(pH.bet());
+                    else if(pH.countCards() == 5 && settings.fiveCardCharlieWins())
+                        cardROI = ROI.win();
+                    else
+                        cardROI = evaluateStandROI();
+                    doubleROI += prob * cardROI;
+                    probabilitySum += prob;
+                    pH.removeLast();
+                    shoeSize++;
+                    returnCard(cardType);
+                }
+            }
+        }
+        //no need to query/update transposition table of stood hands as evaluateStandROI() 
+        // will do that for us.
+        ROI.checkProbabilities(probabilitySum);
+        return 2.0 * doubleROI;
+    }
+
+    /**
+     * Evaluates the ROI if player hits current hand
+     * Non-recursive driver.
+     * More complex version if dH isConfirmedNotBlackJack
+     */
+    public double evaluateHitROI()
+    {
+        double prob;
+        double hitROI = 0.0;                 //sum of prob * ROI of each possible card
+        double probabilitySum = 0.0;
+
+        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ    
+        {
+            double countNonTens = shoeSize - cardTypeCounts13[Card.TEN] - 
+                    cardTypeCounts13[Card.JACK] - cardTypeCounts13[Card.QUEEN] - 
+                    cardTypeCounts13[Card.KING];
+            double countNonAces = shoeSize - cardTypeCounts13[Card.PLAYER_ACE];
+            shoeSize--;                                         // Avoids ss++/ss-- and ?/(ss - 1)
+            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+            {
+                if(cardTypeCounts13[cardType] > 0)
+                {
+                    if(dH.score() == 10)                    //if dH is [A][?]!BJ
+                        if(cardType != Card.PLAYER_ACE)     //if adding [2]-[K] to pH
+                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] / 
+                                    countNonAces) / shoeSize;
+                        else                                //if adding [A] to pH
+                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
+                    else                                    //if dH is [10][?]!BJ
+                        if(Card.PLAYER_VALUES[cardType] != 10) //if adding [2]-[9],[A] to pH
+                            prob = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] /
+                                    countNonTens) / shoeSize;
+                        else                                //if adding [X],[J],[Q],[K] to pH
+                            prob = (double)cardTypeCounts13[cardType] / shoeSize;
+                    removeCard(cardType);
+                    pH.insert(cardType);
+                    hitROI += prob * playerTurnROI();
+                    probabilitySum += prob;
+                    pH.removeLast();
+                    returnCard(cardType);
+                }
+            }
+            shoeSize++;
+        }
+        else                       // else dH does not have hole-card or face-card != {A,10}
+        {
+            for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+            {
+                if(cardTypeCounts13[cardType] > 0)
+                {
+                    prob = (double)cardTypeCounts13[cardType] / shoeSize;
+                    removeCard(cardType);
+                    shoeSize--;
+                    pH.insert(cardType);
+                    hitROI += prob * playerTurnROI();
+                    probabilitySum += prob;
+                    pH.removeLast();
+                    shoeSize++;
+                    returnCard(cardType);
+                }
+            }
+        }
+        ROI.checkProbabilities(probabilitySum);
+        return hitROI;
+    }
+
+    /**
+     * Evaluates the ROI if player does not surrender current hand
+     * Non-recursive driver.
+     * Gets the best available non-surrender option. The subtrees it evaluates stay in the
+     * transposition tables, so later decisions from the same composition reuse them.
+     */
+    public double evaluateNonSurrenderROI()
+    {
+        double maxROI = ROI.max(evaluateStandROI(), evaluateHitROI());
+        if(pH.isSplittable())
+            maxROI = ROI.max(maxROI, evaluateSplitROI());
+        if(pH.isDoublable())
+            maxROI = ROI.max(maxROI, evaluateDoubleROI());
+        return maxROI;
+    }
+
+    /**
+     * Evaluates the ROI if player splits current hand
+     * Non-recursive driver.
+     */
+    public double evaluateSplitROI()
+    {
+        pH.split();                           //ignore returned clone, not needed for calculation
+        double splitROI = playerTurnROI();
+        pH.unsplit();                         //decrements splitLevel, copies single Card
+        return 2.0 * splitROI;
+    }
+
+    /**
+     * Evaluates the ROI if player stands with current hand.
+     * Non-recursive driver.
+     * If this PlayerHand has been evaluated before, its ROI is retrieved from the transosition
+     * table. Else the PlayerHand is compared against the distribution of the dealer's final 
+     * outcomes, which is shared by every PlayerHand that leaves the same cards in the shoe.
+     */
+    public double evaluateStandROI()
+    {
+        //base case. It may be already evaluated if we calculated nonSurrender options
+        long key = tableKey();
+        double roi = playerStandHandROIs.get(key);
+        if(!Double.isNaN(roi))
+            return roi;
+
+        updateDealerShoe();                                 //so that cardTypeCounts10 is accurate
+        dealerOutcomes.evaluate(dH, cardTypeCounts10, shoeSize);
+        roi = dealerOutcomes.standROI(pH);
+
+        playerStandHandROIs.put(key, roi);
+        return roi;
+    }
+
+    /**
+     * Returns the ROI if player surrenders current hand
+     * Non-recursive driver.
+     */
+    public double evaluateSurrenderROI()
+    {
+        return ROI.surrender();
+    }
+
+
+    /**
+     * Evaluates the best Option for every initial deal against a single dealer face card.
+     * Each ROI is appended to rois in (pC1Type, pC2Type) order, so callers merging several
+     * face cards in a fixed order always sum the same terms in the same order.
+     * Pre: state set with the 3 initial cards already deducted from shoeSize
+     * @param dC1Type Dealer's Face Card
+     * @param probDenominator shoeSize * (shoeSize - 1) * (shoeSize - 2) before the initial deal
+     * @param insuranceROI ROI of insurance for this shoe, or 0.0 if not offered or not worth it
+     * @param rois receives the ROI and probability of each possible initial deal
+     * @param recommendations receives the insurance choice and best Option of each initial deal
+     */
+    public void evaluateInitialDeals(int dC1Type, double probDenominator, double insuranceROI,
+            ArrayList<ROI> rois, Recommendations recommendations)
+    {
+        boolean           insrChc;                  //whether player should taken insurance
+        ArrayList<Option> options;                  //Available Options for a initial deal
+        double            countD1, countP1, prob;   //used in probability evaluation
+
+        options = new ArrayList<Option>();
+        dH = new DealerHand();
+        pH = new PlayerHand(0.0, rules);
+
+        countD1 = (double) cardTypeCounts13[dC1Type];
+        removeCard(dC1Type);
+        dH.insert(Card.dealerType(dC1Type));
+
+        for(int pC1Type = Card.TWO; pC1Type <= Card.PLAYER_ACE; pC1Type++)
+        {
+            countP1 = (double) cardTypeCounts13[pC1Type];
+            removeCard(pC1Type);
+            pH.insert(pC1Type);
+
+            for(int pC2Type = pC1Type; pC2Type <= Card.PLAYER_ACE; pC2Type++)
+            {
+                if(countD1 > 0 && countP1 > 0 && cardTypeCounts13[pC2Type] > 0)
+                {
+                    prob = countD1 * countP1 * cardTypeCounts13[pC2Type] / probDenominator;
+                    removeCard(pC2Type);
+                    if(pC1Type != pC2Type)
+                        prob *= 2.0;
+                    pH.insert(pC2Type);
+
+                    //Take insurance if available and gives a positive ROI
+                    insrChc = dH.isSingleAce() && insuranceROI > 0.0;
+            
+                    options.clear();
+
+                    //if no insurance taken and surrender available, add Surrender Option
+                    if(!insrChc && 
+                            settings.surrenderType() == GameLogic.SURRENDER_TYPE_EARLY || 
+                            (settings.surrenderType() == GameLogic.SURRENDER_TYPE_LATE && 
+                            !settings.dealerDealtHoleCard()))
+                        options.add(new Option(Option.SURRENDER, evaluateSurrenderROI()));
+
+                    //if player is BJ, stand is BJ ROI, else stand is stand ROI
+                    if(pH.isBlackJack())
+                        options.add(new Option(Option.STAND, 
+                                evaluateBlackJackROI() + insuranceROI));
+                    else
+                        options.add(new Option(Option.STAND, evaluateStandROI() + insuranceROI));
+
+                    options.add(new Option(Option.HIT, evaluateHitROI() + insuranceROI));
+
+                    if(pH.isSplittable())
+                        options.add(new Option(Option.SPLIT, 
+                                evaluateSplitROI() + insuranceROI));
+
+                    if(pH.isDoublable())
+                        options.add(new Option(Option.DOUBLE_DOWN, 
+                                evaluateDoubleROI() + insuranceROI));
+
+                    Collections.sort(options);
+
+                    rois.add(new ROI(prob, options.get(0).roi()));
+                    recommendations.insert(dC1Type, pC1Type, pC2Type, insrChc, options.get(0));
+                
+                    pH.removeLast();
+                    returnCard(pC2Type);
+                }
+            }
+            pH.removeLast();
+            returnCard(pC1Type);
+        }
+        dH.removeLast();
+        returnCard(dC1Type);
+    }
+
+    /**
+     * Sets the hands that subsequent evaluations are performed against.
+     * The hands are modified temporarily during evaluation, but are always restored.
+     * @param pH the PlayerHand to evaluate
+     * @param dH the DealerHand to evaluate against
+     */
+    public void setHands(PlayerHand pH, DealerHand dH)
+    {
+        this.pH = pH;
+        this.dH = dH;
+    }
+
+    /**
+     * Returns the count of entries evicted from both player tables to stay within budget
+     * @return the count of evictions since this evaluator was created
+     */
+    public long tableEvictions()
+    {
+        return playerHandROIs.evictions() + playerStandHandROIs.evictions();
+    }
+
+    /**
+     * Returns the count of lookups in both player tables that found their state
+     * @return the count of hits since this evaluator was created
+     */
+    public long tableHits()
+    {
+        return playerHandROIs.hits() + playerStandHandROIs.hits();
+    }
+
+    /**
+     * Returns the count of lookups in both player tables that did not find their state
+     * @return the count of misses since this evaluator was created
+     */
+    public long tableMisses()
+    {
+        return playerHandROIs.misses() + playerStandHandROIs.misses();
+    }
+
+    /**
+     * Sets cardTypeCounts13 and shoeSize used for all probability calculations. This must be 
+     * called whenever a card is given to a player (hence cardTypeCounts and shoeSize has changed)
+     * @param cardTypeCounts13 count of each player card type remaining. Owned by this evaluator.
+     * @param shoeSize count of cards remaining
+     */
+    public void setState(int[] cardTypeCounts13, int shoeSize)
+    {
+        this.cardTypeCounts13 = cardTypeCounts13;
+        this.shoeSize = shoeSize;
+        composition = 0;
+        for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+            composition += cardTypeCounts13[cardType] * CARD_TYPE_WEIGHTS[cardType];
+        rootComposition = composition;
+        System.arraycopy(cardTypeCounts13, 0, rootCounts13, 0, rootCounts13.length);
+        updateDealerShoe();
+        System.arraycopy(cardTypeCounts10, 0, rootCounts10, 0, rootCounts10.length);
+        rootShoeSize = shoeSize;
+    }
+
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Evaluates the ROI given that a player has splitBlackJack.
+     * This is necessary because the dealerTurn does not account for the ROI difference
+     * between a win and a splitBlackjackWin. Better for playerTurnROI() to check this, as it 
+     * iterates less times than dealerTurn().  
+     */
+    private double evaluateSplitBlackJackROI()
+    {
+        if(dH.confirmedNotBlackJack() || dH.score != 10 || dH.score != 11 || dH.countCards != 1)
+            return rules.splitBlackJackROI();
+
+        double tieROI = settings.dealerWinsTies() ? ROI.loss() : ROI.draw();  //dealer is BJ
+        if(dH.score() == 10)          //dealer has [X]
+        {
+            double aceChance = (double) cardTypeCounts13[Card.PLAYER_ACE] / shoeSize;
+            return aceChance * tieROI + (1 - aceChance) * rules.splitBlackJackROI();
+        }
+        else                          //dealer has [A]
+        {
+            double tenChance = (double)(cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] + 
+                    cardTypeCounts13[Card.QUEEN] +  cardTypeCounts13[Card.KING]) / shoeSize;
+            return tenChance * tieROI + (1 - tenChance) * rules.splitBlackJackROI();
+        }
+    }
+
+    /**
+     * Iterative algorithm. Returns the best available ROI for current state.
+     * Called by non-recursive evaulateHitROI() and non-recursive evaluateSplitROI()
+     *
+     * Each state that is not a base case is a frame on an explicit stack, rather than a call.
+     * A frame first hits with each possible card in turn, then splits, then doubles. When a frame
+     * completes, its ROI is delivered to the frame below. Sums and maximums are taken in exactly
+     * the same order as a recursive evaluation, so ROIs are identical to the last bit.
+     * @return the compound ROI for current PlayerHand state
+     */
+    private double playerTurnROI()
+    {
+        PlayerTurnStack stack = this.stack;
+        int bottom = stack.depth;                           //frames below belong to a caller
+        if(!pushPlayerTurn())
+            return leafROI;
+
+        while(true)
+        {
+            int d = stack.depth - 1;
+            if(stack.phases[d] == PlayerTurnStack.HIT)
+            {
+                if(drawNextHitCard(d))
+                {
+                    if(!pushPlayerTurn())
+                        deliverROI(d, leafROI);
+                    continue;
+                }
+
+                //every card has been hit
+                if(dH.confirmedNotBlackJack())
+                    shoeSize++;
+                ROI.checkProbabilities(stack.probabilitySums[d]);
+                stack.maxROIs[d] = stack.hitOnly[d] ? stack.hitROIs[d] : 
+                        ROI.max(stack.standROIs[d], stack.hitROIs[d]);
+                stack.phases[d] = PlayerTurnStack.SPLIT;
+                if(!stack.hitOnly[d] && pH.isSplittable())
+                {
+                    pH.split();                 //ignore returned clone, not needed for calculation
+                    if(!pushPlayerTurn())
+                        deliverROI(d, leafROI);
+                    continue;
+                }
+                stack.phases[d] = PlayerTurnStack.DOUBLE;
+            }
+
+            //stack.phases[d] == DOUBLE, as a SPLIT frame is only on top before it splits
+            double maxROI = stack.maxROIs[d];
+            if(!stack.hitOnly[d] && pH.isDoublable())
+                maxROI = ROI.max(maxROI, evaluateDoubleROI());
+            playerHandROIs.put(stack.keys[d], maxROI, 
+                    countFramesPushed - stack.framesPushed[d]);     //cost is its subtree size
+            stack.depth--;
+            if(stack.depth == bottom)
+                return maxROI;
+            deliverROI(d - 1, maxROI);
+        }
+    }
+
+    /**
+     * Delivers the ROI of a completed state to the frame that reached it, and restores that
+     * frame's hand and shoe. Either the hand it hit, or one hand of the pair it split.
+     * @param d index of the frame the completed state was reached from
+     * @param roi the ROI of the completed state
+     */
+    private void deliverROI(int d, double roi)
+    {
+        PlayerTurnStack stack = this.stack;
+        if(stack.phases[d] == PlayerTurnStack.HIT)
+        {
+            stack.hitROIs[d] += stack.probs[d] * roi;
+            stack.probabilitySums[d] += stack.probs[d];
+            pH.removeLast();
+            if(!dH.confirmedNotBlackJack())
+                shoeSize++;
+            returnCard(stack.cardTypes[d]);
+        }
+        else                                                //SPLIT
+        {
+            pH.unsplit();                         //decrements splitLevel, copies single Card
+            stack.maxROIs[d] = ROI.max(stack.maxROIs[d], 2.0 * roi);
+            stack.phases[d] = PlayerTurnStack.DOUBLE;
+        }
+    }
+
+    /**
+     * Draws the next possible card type to hit the hand of a frame with, if any remain.
+     * The card is removed from the shoe and inserted in pH, and its probability recorded.
+     * @param d index of the frame to hit
+     * @return whether a card was drawn. If not, every card type has been hit.
+     */
+    private boolean drawNextHitCard(int d)
+    {
+        PlayerTurnStack stack = this.stack;
+        int cardType = stack.cardTypes[d] + 1;
+        while(cardType <= Card.PLAYER_ACE && cardTypeCounts13[cardType] == 0)
+            cardType++;
+        stack.cardTypes[d] = cardType;
+        if(cardType > Card.PLAYER_ACE)
+            return false;
+
+        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ
+        {
+            //shoeSize was decremented once, when the frame was pushed
+            if(dH.score() == 10)                            //if dH is [A][?]!BJ
+                if(cardType != Card.PLAYER_ACE)             //if adding [2]-[K] to pH
+                    stack.probs[d] = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] / 
+                            stack.countNonAces[d]) / shoeSize;
+                else                                        //if adding [A] to pH
+                    stack.probs[d] = (double)cardTypeCounts13[cardType] / shoeSize;
+            else                                            //if dH is [10][?]!BJ
+                if(Card.PLAYER_VALUES[cardType] != 10)      //if adding [2]-[9],[A] to pH
+                    stack.probs[d] = (cardTypeCounts13[cardType] - cardTypeCounts13[cardType] /
+                            stack.countNonTens[d]) / shoeSize;
+                else                                        //if adding [X],[J],[Q],[K] to pH
+                    stack.probs[d] = (double)cardTypeCounts13[cardType] / shoeSize;
+        }
+        else                       //else dH does not have hole-card or face-card != {A,10}
+        {
+            stack.probs[d] = (double)cardTypeCounts13[cardType] / shoeSize;
+            shoeSize--;
+        }
+        removeCard(cardType);
+        pH.insert(cardType);
+        return true;
+    }
+
+    /**
+     * Starts evaluating the current state. Base cases and states already in the table are 
+     * evaluated at once, into leafROI. Otherwise a frame is pushed, ready to hit.
+     * @return whether a frame was pushed. If not, the state's ROI is in leafROI.
+     */
+    private boolean pushPlayerTurn()
+    {
+        //Base Cases
+        if(pH.isBust())                                     //most likely
+        {
+            leafROI = ROI.loss();
+            return false;
+        }
+        long key = tableKey();
+        leafROI = playerHandROIs.get(key);                  //2nd most likely
+        if(!Double.isNaN(leafROI))
+            return false;                                   //3rd most likely
+        if(pH.score == 21)
+        {
+            if(pH.countCards() == 2)                        //if pH is splitBlackJack. Rare.
+                leafROI = evaluateSplitBlackJackROI();
+            else if(pH.countCards() == 5 && settings.fiveCard21Wins())
+                leafROI = rules.fiveCard21ROI(pH.bet());    //if 5 card 21
+            else                                            //if 3+ card 21
+                leafROI = evaluateStandROI();               //will query/update table
+            return false;
+        }
+        if(pH.countCards() == 5 && settings.fiveCardCharlieWins())  //5 card Charlie
+        {
+            leafROI = ROI.win();
+            return false;
+        }
+        boolean hitOnly = false;
+        if(totalDependent && pH.countCards() > 2)           //play the state's fixed decision
+        {
+            int decision = totalDependentDecision();
+            if(decision != DECISION_HIT)
+            {
+                leafROI = decision == DECISION_STAND ? evaluateStandROI() : evaluateDoubleROI();
+                playerHandROIs.put(key, leafROI, 1);
+                return false;
+            }
+            hitOnly = true;
+        }
+
+        //Frame case (ie. score < 21)
+        if(shoeSize == 0)
+            throw new IllegalStateException("Shoe empty (playerTurn)");
+        PlayerTurnStack stack = this.stack;
+        int d = stack.push();
+        stack.keys[d] = key;
+        stack.framesPushed[d] = countFramesPushed++;
+        stack.hitOnly[d] = hitOnly;
+        stack.standROIs[d] = hitOnly ? ROI.loss() : evaluateStandROI();    //query/update table
+        stack.hitROIs[d] = 0.0;
+        stack.probabilitySums[d] = 0.0;
+        stack.cardTypes[d] = Card.TWO - 1;
+        stack.phases[d] = PlayerTurnStack.HIT;
+        if(dH.confirmedNotBlackJack())                      //if dH is [A][?]!BJ or [X][?]!BJ
+        {
+            stack.countNonTens[d] = shoeSize - cardTypeCounts13[Card.TEN] - 
+                    cardTypeCounts13[Card.JACK] - cardTypeCounts13[Card.QUEEN] - 
+                    cardTypeCounts13[Card.KING];
+            stack.countNonAces[d] = shoeSize - cardTypeCounts13[Card.PLAYER_ACE];
+            shoeSize--;                                     // Avoids ss++/ss-- and ?/(ss - 1)
+        }
+        return true;
+    }
+
+    /**
+     * Removes a card of the specified type from cardTypeCounts13, updating its fingerprint
+     * @param cardType player card type to remove
+     */
+    private void removeCard(int cardType)
+    {
+        cardTypeCounts13[cardType]--;
+        composition -= CARD_TYPE_WEIGHTS[cardType];
+    }
+
+    /**
+     * Returns a card of the specified type to cardTypeCounts13, updating its fingerprint
+     * @param cardType player card type to return
+     */
+    private void returnCard(int cardType)
+    {
+        cardTypeCounts13[cardType]++;
+        composition += CARD_TYPE_WEIGHTS[cardType];
+    }
+
+    /**
+     * Returns the transposition table key of the current state: the remaining composition, 
+     * both hands and the dealer's peek state. Plus the bet if Five Card 21 wins, as the bet then
+     * determines its ROI. Otherwise bets are excluded, so that states evaluated with a $0.00 bet
+     * by evaluateInitialDeals() are shared with in-game PlayerHands.
+     * @return the transposition table key of the current state
+     */
+    private long tableKey()
+    {
+        return withDealerKey(composition + pH.key() * PLAYER_HAND_WEIGHT);
+    }
+
+    /**
+     * Returns the key of the current total-dependent state, for the decision tables: as 
+     * tableKey(), but keyed by the hand's total-dependent state and the composition at 
+     * setState(), rather than by its cards and the remaining composition.
+     * @return the total-dependent key of the current state
+     */
+    private long totalDependentKey()
+    {
+        return withDealerKey(rootComposition + pH.totalDependentKey() * TOTAL_DEPENDENT_WEIGHT);
+    }
+
+    /**
+     * Adds the dealer's hand and peek state, and the bet if it determines an ROI, to a key
+     * @param key key of the player's hand and a composition
+     * @return key of the whole state
+     */
+    private long withDealerKey(long key)
+    {
+        key += dH.key() * DEALER_HAND_WEIGHT;
+        if(settings.fiveCard21Wins())
+            key += Double.doubleToLongBits(pH.bet()) * BET_WEIGHT;
+        return dH.confirmedNotBlackJack() ? key + PEEKED_WEIGHT : key;
+    }
+
+    /**
+     * Returns the fixed decision for the total-dependent state of pH, a hand of 3+ cards that
+     * is not yet 21. Chosen once per state, from the composition at setState().
+     * @return DECISION_STAND, DECISION_HIT or DECISION_DOUBLE
+     */
+    private int totalDependentDecision()
+    {
+        double decision = totalDependentDecisions.get(totalDependentKey());
+        if(Double.isNaN(decision))
+        {
+            updateRootProbs();
+            decision = decide();
+        }
+        return (int)decision;
+    }
+
+    /**
+     * Chooses the best decision for the total-dependent state of pH, drawing every card from the
+     * composition at setState() with rootProbs, and stores it with its ROI.
+     * Recurses once per card hit, so at most 21 deep.
+     * @return the decision. Its ROI is left in decidedROI.
+     */
+    private double decide()
+    {
+        double standROI = rootStandROI();
+        double hitROI = 0.0;
+        double doubleROI = 0.0;
+        boolean isDoublable = pH.isDoublable();
+        for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+        {
+            if(rootProbs[cardType] == 0.0)
+                continue;
+            pH.insert(cardType);
+            hitROI += rootProbs[cardType] * rootROI();
+            if(isDoublable)
+                doubleROI += rootProbs[cardType] * (pH.isBust() ? ROI.loss() : 
+                        pH.countCards() == 5 && pH.score() == 21 && settings.fiveCard21Wins() ? 
+                        rules.fiveCard21ROI(pH.bet()) : 
+                        pH.countCards() == 5 && settings.fiveCardCharlieWins() ? ROI.win() : 
+                        rootStandROI());
+            pH.removeLast();
+        }
+
+        double decision = DECISION_STAND;
+        decidedROI = standROI;
+        if(hitROI > decidedROI)
+        {
+            decision = DECISION_HIT;
+            decidedROI = hitROI;
+        }
+        if(isDoublable && 2.0 * doubleROI > decidedROI)
+        {
+            decision = DECISION_DOUBLE;
+            decidedROI = 2.0 * doubleROI;
+        }
+        long key = totalDependentKey();
+        totalDependentROIs.put(key, decidedROI, 1);
+        totalDependentDecisions.put(key, decision, 1);
+        return decision;
+    }
+
+    /**
+     * Returns the best ROI of pH, a hand of 3+ cards, drawing every card from the composition at
+     * setState(). Base cases as pushPlayerTurn().
+     * @return the best ROI of pH
+     */
+    private double rootROI()
+    {
+        if(pH.isBust())
+            return ROI.loss();
+        if(pH.score() == 21)
+            return pH.countCards() == 5 && settings.fiveCard21Wins() ? 
+                    rules.fiveCard21ROI(pH.bet()) : rootStandROI();
+        if(pH.countCards() == 5 && settings.fiveCardCharlieWins())
+            return ROI.win();
+        double roi = totalDependentROIs.get(totalDependentKey());
+        if(Double.isNaN(roi))
+        {
+            decide();
+            roi = decidedROI;
+        }
+        return roi;
+    }
+
+    /**
+     * Returns the ROI of pH standing against the dealer's outcomes from the composition at 
+     * setState()
+     * @return the ROI of pH standing
+     */
+    private double rootStandROI()
+    {
+        dealerOutcomes.evaluate(dH, rootCounts10, rootShoeSize);
+        return dealerOutcomes.standROI(pH);
+    }
+
+    /**
+     * Sets rootProbs to the probability of hitting each card type from the composition at 
+     * setState(), given the dealer's hand and peek state. As drawNextHitCard(), but the
+     * composition is not depleted by the cards hit.
+     */
+    private void updateRootProbs()
+    {
+        double size = rootShoeSize;
+        double countNonTens = size - rootCounts13[Card.TEN] - rootCounts13[Card.JACK] - 
+                rootCounts13[Card.QUEEN] - rootCounts13[Card.KING];
+        double countNonAces = size - rootCounts13[Card.PLAYER_ACE];
+        for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE; cardType++)
+        {
+            double count = rootCounts13[cardType];
+            if(!dH.confirmedNotBlackJack())
+                rootProbs[cardType] = count / size;
+            else if(dH.score() == 10)                       //hole card is not an [A]
+                rootProbs[cardType] = (cardType != Card.PLAYER_ACE ? 
+                        count - count / countNonAces : count) / (size - 1);
+            else                                            //hole card is not a 10-value
+                rootProbs[cardType] = (Card.PLAYER_VALUES[cardType] != 10 ? 
+                        count - count / countNonTens : count) / (size - 1);
+        }
+    }
+
+    /**
+     * Updates the dealer shoe (10cardTypes) from the cardTypeCounts(13cardTypes)
+     * This is because cards {X,J,Q,K} are all the same as far as dealer is concerned.
+     * Must be called prior to each evaluating dealerTurn
+     */
+    private void updateDealerShoe()
+    {
+
+        for(int cardType = Card.TWO; cardType <= Card.NINE; cardType++)
+            cardTypeCounts10[cardType] = cardTypeCounts13[cardType];
+
+        cardTypeCounts10[Card.TEN] = cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] +
+                cardTypeCounts13[Card.QUEEN] + cardTypeCounts13[Card.KING];
+
+        cardTypeCounts10[Card.DEALER_ACE] = cardTypeCounts13[Card.PLAYER_ACE];
+
+    }
+
+    //---------------------------------------- INNER CLASSES ---------------------------------------
+    /**
+     * The frames of playerTurnROI(), as parallel arrays indexed by depth rather than as objects,
+     * so that pushing a frame never allocates. The hands and shoe are not held here, as they are
+     * modified in place and restored, exactly as a recursive evaluation would.
+     */
+    private static final class PlayerTurnStack
+    {
+        private static final int HIT    = 0;             //hitting with cardTypes[d] next
+        private static final int SPLIT  = 1;             //evaluating one hand of the split pair
+        private static final int DOUBLE = 2;             //hit and split done, double then store
+        //a frame per card of each hand, and each split adds a hand
+        private static final int DEFAULT_CAPACITY = 
+                (PlayerHand.MAX_COUNT_CARDS + 1) * (PlayerHand.MAX_SPLIT_LEVELS + 1);
+
+        private long[]   keys;              //table key of the frame's state
+        private int[]    framesPushed;      //count of frames pushed before this one
+        private int[]    phases;            //HIT, SPLIT or DOUBLE
+        private int[]    cardTypes;         //card type being hit, while HIT
+        private double[] probs;             //probability of cardTypes[d]
+        private double[] standROIs;
+        private double[] hitROIs;           //sum of prob * ROI of each card hit so far
+        private double[] probabilitySums;
+        private double[] maxROIs;           //best of stand, hit and split, once hit is done
+        private double[] countNonTens;      //only used if dealer has peeked
+        private double[] countNonAces;      //only used if dealer has peeked
+        private boolean[] hitOnly;          //total-dependent state whose fixed decision is hit
+        private int      depth;             //count of frames
+
+        private PlayerTurnStack()
+        {
+            allocate(DEFAULT_CAPACITY);
+        }
+
+        /**
+         * Pushes a frame, growing if full
+         * @return index of the new frame
+         */
+        private int push()
+        {
+            if(depth == keys.length)
+                allocate(keys.length * 2);
+            return depth++;
+        }
+
+        private void allocate(int capacity)
+        {
+            keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+            framesPushed = copyOf(framesPushed, capacity);
+            phases = copyOf(phases, capacity);
+            cardTypes = copyOf(cardTypes, capacity);
+            probs = copyOf(probs, capacity);
+            standROIs = copyOf(standROIs, capacity);
+            hitROIs = copyOf(hitROIs, capacity);
+            probabilitySums = copyOf(probabilitySums, capacity);
+            maxROIs = copyOf(maxROIs, capacity);
+            countNonTens = copyOf(countNonTens, capacity);
+            countNonAces = copyOf(countNonAces, capacity);
+            hitOnly = hitOnly == null ? new boolean[capacity] : Arrays.copyOf(hitOnly, capacity);
+        }
+
+        private static int[] copyOf(int[] values, int capacity)
+        {
+            return values == null ? new int[capacity] : Arrays.copyOf(values, capacity);
+        }
+
+        private static double[] copyOf(double[] values, int capacity)
+        {
+            return values == null ? new double[capacity] : Arrays.copyOf(values, capacity);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// long nextLong()                   --> next 64 random bits
+// RandomStream nextStream()         --> independent stream 2^128 draws ahead. Jumps this stream
+// long[] state()                    --> current state, to record and later replay this stream
+// RandomStream copy()               --> identical, independent stream
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if a state is not 4 longs, or is all zero
+package ryan.blackjack.domain;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * RandomStream class.
+ * A xoshiro256++ generator, owned by a single Shoe or simulation so that no generator is shared
+ * between threads. Its state can be recorded and restored, so a stream can be replayed exactly.
+ * Independent streams are derived from a single master seed by jumping ahead 2^128 draws at a
+ * time, so they never overlap in practice.
+ * Not thread-safe.
+ */
+public final class RandomStream implements RandomGenerator
+{
+    //----------------------------------------- Constants ------------------------------------------
+    public static final int     STATE_LENGTH = 4;                   //count of longs of state
+    private static final long[] JUMP = {0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 
+            0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};              //jumps 2^128 draws ahead
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private long s0, s1, s2, s3;                                    //xoshiro256 state
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Expands seed into a full state with SplitMix64, as recommended for xoshiro.
+     * @param seed any value
+     */
+    public RandomStream(long seed)
+    {
+        s0 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+        s1 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+        s2 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+        s3 = splitMix64(seed +  0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Constructor. Restores a recorded state
+     * @param state a state, as from state()
+     */
+    public RandomStream(long[] state)
+    {
+        if(state == null || state.length != STATE_LENGTH)
+            throw new IllegalArgumentException("State must be " + STATE_LENGTH + " longs");
+        if((state[0] | state[1] | state[2] | state[3]) == 0)
+            throw new IllegalArgumentException("State cannot be all zero");
+        s0 = state[0];
+        s1 = state[1];
+        s2 = state[2];
+        s3 = state[3];
+    }
+
+    /**
+     * Returns an identical, independent stream. Both then produce the same sequence.
+     * @return an identical, independent stream
+     */
+    public RandomStream copy()
+    {
+        return new RandomStream(state());
+    }
+
+    /**
+     * Advances this stream 2^128 draws, as though nextLong() had been called that many times
+     */
+    public void jump()
+    {
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+        for(long jump : JUMP)
+            for(int bit = 0; bit < 64; bit++)
+            {
+                if((jump & (1L << bit)) != 0)
+                {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    /**
+     * Returns the next 64 random bits
+     * @return the next 64 random bits
+     */
+    @Override
+    public long nextLong()
+    {
+        long result = Long.rotateLeft(s0 + s3, 23) + s0;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Derives an independent stream: a copy of this stream, after which this stream jumps ahead.
+     * Successive calls on a master stream give the streams for shard 0, 1, 2...
+     * @return a new stream, 2^128 draws from any other derived from this stream
+     */
+    public RandomStream nextStream()
+    {
+        RandomStream stream = copy();
+        jump();
+        return stream;
+    }
+
+    /**
+     * Returns this stream's current state. Constructing a RandomStream from it replays this stream
+     * from this point.
+     * @return a copy of this stream's current state
+     */
+    public long[] state()
+    {
+        return new long[]{s0, s1, s2, s3};
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * SplitMix64 output function
+     * @param z an incremented seed
+     * @return a well-mixed 64 bits
+     */
+    private static long splitMix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -52,6 +52,19 @@ public final class Recommendations
     }
 
 
+    /**
+     * Copies all insurance choices and best Options for the specified dealer face card
+     * @param other Recommendations to copy from
+     * @param dC1Type Dealer's Face Card
+     */
+    public void merge(Recommendations other, int dC1Type)
+    {
+        for(int pC1Type = Card.TWO; pC1Type <= Card.PLAYER_ACE; pC1Type++)
+            for(int pC2Type = Card.TWO; pC2Type <= Card.PLAYER_ACE; pC2Type++)
+                insert(dC1Type, pC1Type, pC2Type, other.takeInsurance(dC1Type, pC1Type, pC2Type),
+                        other.bestOption(dC1Type, pC1Type, pC2Type));
+    }
+
     /**
      * Returns whether Player should take insurance on specified initial deal
      * @param dC1Type Dealer's Face Card
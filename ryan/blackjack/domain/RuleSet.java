@@ -0,0 +1,228 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// RuleSet(Settings settings)        --> snapshot of the table rules in settings
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if custom count adjustments are not COUNT_ADJUSTMENTS_TYPES long
+package ryan.blackjack.domain;
+
+import java.util.TreeSet;
+
+/**
+ * RuleSet class.
+ * An immutable snapshot of a table's rules: payouts, bet limits, split, hit and double rules,
+ * and the custom count adjustments. Built from Settings, then passed to engines, hands and
+ * strategies, so tables with different rules can be played concurrently in one JVM.
+ * Lookups are precomputed into tables, as they are made during probability evaluation.
+ */
+public final class RuleSet
+{
+    //----------------------------------------- Constants ------------------------------------------
+    private static final int PRIOR_SPLIT_WAS_2toK = 0;         //only relevant when splitLevel >= 1
+    private static final int PRIOR_SPLIT_WAS_A    = 1;
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private final double          blackJackROI;
+    private final double          splitBlackJackROI;
+    private final double          fiveCard21Amount;
+    private final double          minBet;                      //minimum bet laid at the table
+    private final double          maxBet;                      //maximum bet laid at the table
+    private final boolean         canHitAfterAcesSplit;
+    private final boolean[][]     splitCardEqualities;         //[pCard1Type][pCard2Type]
+    private final int             times2toK_Splittable;
+    private final int             timesAcesSplittable;
+    //[countCards][score][priorSplitType][splitLevel]. Every PlayerHand maps to one of these states
+    private final boolean[][][][] doublableStates;
+    private final double[]        customCountAdjustments;
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Copies the table rules from settings. Later changes to settings are not seen.
+     * @param settings the settings to copy the table rules from
+     */
+    public RuleSet(Settings settings)
+    {
+        if(settings.customCountAdjustments().length != CountStrategy.COUNT_ADJUSTMENTS_TYPES)
+            throw new IllegalArgumentException("length must be COUNT_ADJUSTMENTS_TYPES: " +
+                    settings.customCountAdjustments().length);
+
+        blackJackROI = settings.blackJackROI();
+        splitBlackJackROI = settings.splitBlackJackROI();
+        fiveCard21Amount = settings.fiveCard21Amount();
+        minBet = settings.minBet();
+        maxBet = settings.maxBet();
+        canHitAfterAcesSplit = settings.canHitAfterAcesSplit();
+        times2toK_Splittable = settings.times2toK_Splittable();
+        timesAcesSplittable = settings.timesAcesSplittable();
+        customCountAdjustments = settings.customCountAdjustments().clone();
+
+        splitCardEqualities = 
+                new boolean[Card.COUNT_PLAYER_CARD_TYPES][Card.COUNT_PLAYER_CARD_TYPES];
+        for(int card1 = Card.TWO; card1 <= Card.PLAYER_ACE; card1++)
+            for(int card2 = Card.TWO; card2 <= Card.PLAYER_ACE; card2++)
+                splitCardEqualities[card1][card2] =
+                        settings.splitCardEqualityType() == PlayerHand.SPLIT_BY_VALUE ?
+                        Card.PLAYER_VALUES[card1] == Card.PLAYER_VALUES[card2] :
+                        card1 == card2;
+
+        doublableStates = buildDoublableStates(settings.doublableCardCounts(),
+                settings.doublableScores(), settings.canDoubleAfter2toK_Split(),
+                settings.canDoubleAfterAcesSplit());
+    }
+
+    /**
+     * Returns the ROI for a player BlackJack win
+     * @return the ROI for a player BlackJack win
+     */
+    public double blackJackROI()
+    {
+        return blackJackROI;
+    }
+
+    /**
+     * Builds the delta table for counting with these rules: the running count adjustment of
+     * every CountStrategy for every card type, with this RuleSet's custom adjustments.
+     * Includes every CountStrategy registered so far.
+     * @return a new delta table, laid out as CountStrategy.buildDeltas()
+     */
+    public double[] buildCountDeltas()
+    {
+        return CountStrategy.buildDeltas(customCountAdjustments);
+    }
+
+    /**
+     * Returns whether player can hit again after Aces split
+     * @return whether player can hit again after Aces split
+     */
+    public boolean canHitAfterAcesSplit()
+    {
+        return canHitAfterAcesSplit;
+    }
+
+    /**
+     * Returns a copy of the running count adjustments for the custom CountStrategy
+     * @return a copy of the running count adjustments for the custom CountStrategy
+     */
+    public double[] customCountAdjustments()
+    {
+        return customCountAdjustments.clone();
+    }
+
+    /**
+     * Returns the fixed amount won for a player Five Card 21
+     * @return the fixed amount won for a player Five Card 21
+     */
+    public double fiveCard21Amount()
+    {
+        return fiveCard21Amount;
+    }
+
+    /**
+     * Returns the ROI for a player Five Card 21 Win.
+     * Five-Card-21 Amount is fixed, bet size varies, therefore ROI will vary with bet
+     * @param bet the hand's bet
+     * @return the ROI for a player Five Card 21 Win.
+     */
+    public double fiveCard21ROI(double bet)
+    {
+        return ROI.WIN + fiveCard21Amount / bet;
+    }
+
+    /**
+     * Returns whether a hand in the specified state can be double downed. Must be fast.
+     * @param countCards count of cards in the hand
+     * @param score the hand's score
+     * @param priorSplitType index of the type of card last split, when splitLevel >= 1
+     * @param splitLevel count of times the hand has been split
+     * @return whether a hand in the specified state can be double downed
+     */
+    public boolean isDoublable(int countCards, int score, int priorSplitType, int splitLevel)
+    {
+        return doublableStates[countCards][score][priorSplitType][splitLevel];
+    }
+
+    /**
+     * Returns whether a pair of the specified card types can be split
+     * @param pC1Type type of the hand's first card
+     * @param pC2Type type of the hand's second card
+     * @return whether the card types are equal for splitting, by value or by rank
+     */
+    public boolean isSplitPair(int pC1Type, int pC2Type)
+    {
+        return splitCardEqualities[pC1Type][pC2Type];
+    }
+
+    /**
+     * Returns the maximum bet that can be laid at the table
+     * @return the maximum bet that can be laid at the table
+     */
+    public double maxBet()
+    {
+        return maxBet;
+    }
+
+    /**
+     * Returns the minimum bet that can be laid at the table
+     * @return the minimum bet that can be laid at the table
+     */
+    public double minBet()
+    {
+        return minBet;
+    }
+
+    /**
+     * Returns the ROI for a BlackJack from a split hand
+     * @return the ROI for a BlackJack from a split hand
+     */
+    public double splitBlackJackROI()
+    {
+        return splitBlackJackROI;
+    }
+
+    /**
+     * Returns the number of times a pair of the specified card type can be split
+     * @param pCardType the type of the paired card
+     * @return the number of times {A}, or {2,3,4,5,6,7,8,9,X,J,Q,K}, can be split
+     */
+    public int timesSplittable(int pCardType)
+    {
+        return pCardType == Card.PLAYER_ACE ? timesAcesSplittable : times2toK_Splittable;
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Builds the table of states that can be double downed
+     * @param doublableCardCounts list of card counts that can be double downed
+     * @param doublableScores list of scores that can be double downed
+     * @param canDoubleAfter2toK_Split whether can double after {2,3,4,5,6,7,8,9,X,J,Q,K} split
+     * @param canDoubleAfterAcesSplit whether can double after {A} split
+     * @return [countCards][score][priorSplitType][splitLevel] whether state can be double downed
+     */
+    private static boolean[][][][] buildDoublableStates(TreeSet<Integer> doublableCardCounts,
+            TreeSet<Integer> doublableScores, boolean canDoubleAfter2toK_Split,
+            boolean canDoubleAfterAcesSplit)
+    {
+        boolean[][][][] states = new boolean[PlayerHand.MAX_COUNT_CARDS + 1][21 + 1][2]
+                [PlayerHand.MAX_SPLIT_LEVELS + 1];
+
+        for(int _countCards = 0; _countCards <= PlayerHand.MAX_COUNT_CARDS; _countCards++)
+            for(int _score = 0; _score <= 21; _score++)
+                for(int priorSplitType = PRIOR_SPLIT_WAS_2toK;
+                        priorSplitType <= PRIOR_SPLIT_WAS_A; priorSplitType++)
+                    for(int _splitLevel = 0; _splitLevel <= PlayerHand.MAX_SPLIT_LEVELS;
+                            _splitLevel++)
+                        states[_countCards][_score][priorSplitType][_splitLevel] =
+                                doublableCardCounts.contains(_countCards) &&
+                                doublableScores.contains(_score) &&
+                                (_splitLevel == 0 ||
+                                priorSplitType == PRIOR_SPLIT_WAS_2toK && 
+                                        canDoubleAfter2toK_Split || 
+                                priorSplitType == PRIOR_SPLIT_WAS_A && canDoubleAfterAcesSplit);
+        return states;
+    }
+}
@@ -0,0 +1,352 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// void setDeckCounts(int... counts)                  --> decks dimension of the grid
+// void setDealerHitsSoft17(boolean... values)        --> H17 dimension of the grid
+// void setDoubleAfterSplit(boolean... values)        --> DAS dimension of the grid
+// void setSurrenderTypes(int... types)               --> surrender dimension of the grid
+// void setTimesSplittable(int... times)              --> resplit limit dimension of the grid
+// void setBlackJackROIs(double... rois)              --> blackjack payout dimension of the grid
+// void setEvaluateInfiniteDeck(boolean infinite)     --> evaluates each combination's infinite deck
+// void cache(String fingerprint, double playerROI)   --> primes the cache, eg from a saved sweep
+// ArrayList<Cell> run()                              --> evaluates every combination, on all cores
+// ArrayList<Cell> run(int parallelism)               --> evaluates every combination
+// int countCached()                                  --> count of rule fingerprints evaluated
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if a dimension has no values, or a value is invalid
+// IllegalArgumentException if parallelism is not positive
+package ryan.blackjack.domain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RuleSweep class.
+ * Evaluates the player advantage of a full shoe for every combination of a grid of rule
+ * variants, eg "what is the house edge with H17, no DAS, late surrender and 6 decks?".
+ * Each dimension defaults to the single value in the base settings. Combinations are evaluated
+ * in parallel, one per task. Advantages are cached by rule fingerprint, so re-running a sweep
+ * with more values only evaluates the new combinations.
+ */
+public final class RuleSweep
+{
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings                base;                   //every other setting, never modified
+    private int[]                   deckCounts;
+    private boolean[]               dealerHitsSoft17;
+    private boolean[]               doubleAfterSplit;       //after both {2..K} and {A} splits
+    private int[]                   surrenderTypes;
+    private int[]                   timesSplittable;        //for {2,3,4,5,6,7,8,9,X,J,Q,K}
+    private double[]                blackJackROIs;
+    private HashMap<String, Double> playerROIs;             //by Settings.ruleFingerprint()
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Every dimension has the single value in the base settings.
+     * @param base settings for every rule not swept. Copied, so may be modified afterwards.
+     */
+    public RuleSweep(Settings base)
+    {
+        this.base = base.copy();
+        this.base.setEvaluateAdvantageInParallel(false);    //combinations are already parallel
+        deckCounts = new int[]{base.shoeCapacity() / 52};
+        dealerHitsSoft17 = new boolean[]{base.dealerHitsSoft17()};
+        doubleAfterSplit = new boolean[]{base.canDoubleAfter2toK_Split()};
+        surrenderTypes = new int[]{base.surrenderType()};
+        timesSplittable = new int[]{base.times2toK_Splittable()};
+        blackJackROIs = new double[]{base.blackJackROI()};
+        playerROIs = new HashMap<String, Double>();
+    }
+
+    /**
+     * Caches the player advantage of a rule fingerprint, eg from a saved sweep, so that it is not
+     * evaluated again
+     * @param fingerprint the fingerprint of a combination, as from Settings.ruleFingerprint()
+     * @param playerROI the player advantage for that fingerprint
+     */
+    public void cache(String fingerprint, double playerROI)
+    {
+        playerROIs.put(fingerprint, playerROI);
+    }
+
+    /**
+     * Returns the count of rule fingerprints whose advantage is cached
+     * @return the count of rule fingerprints whose advantage is cached
+     */
+    public int countCached()
+    {
+        return playerROIs.size();
+    }
+
+    /**
+     * Evaluates every combination in the grid, with a thread per core
+     * @return a Cell for every combination, in grid order
+     */
+    public ArrayList<Cell> run()
+    {
+        return run(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Evaluates every combination in the grid not already cached. The first dimension varies
+     * slowest: decks, H17, DAS, surrender, resplits, then blackjack payout.
+     * Each combination evaluated at once takes an equal share of the table memory budget.
+     * @param parallelism count of threads to evaluate combinations on
+     * @return a Cell for every combination, in grid order
+     */
+    public ArrayList<Cell> run(int parallelism)
+    {
+        if(parallelism < 1)
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+
+        ArrayList<Settings> combinations = combinations();
+        HashMap<String, CellTask> tasks = new HashMap<String, CellTask>();
+        for(Settings settings : combinations)
+        {
+            String fingerprint = settings.ruleFingerprint();
+            if(!playerROIs.containsKey(fingerprint) && !tasks.containsKey(fingerprint))
+                tasks.put(fingerprint, 
+                        new CellTask(settings.copyWithTableMemoryShare(parallelism)));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            for(CellTask task : tasks.values())
+                pool.execute(task);
+            for(CellTask task : tasks.values())
+                task.join();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        for(String fingerprint : tasks.keySet())
+            playerROIs.put(fingerprint, tasks.get(fingerprint).playerROI);
+
+        ArrayList<Cell> cells = new ArrayList<Cell>(combinations.size());
+        for(Settings settings : combinations)
+        {
+            String fingerprint = settings.ruleFingerprint();
+            cells.add(new Cell(settings, fingerprint, playerROIs.get(fingerprint),
+                    !tasks.containsKey(fingerprint)));
+        }
+        return cells;
+    }
+
+    /**
+     * Sets the blackjack payouts to sweep, eg 1.5 for 3:2 and 1.2 for 6:5
+     * @param rois blackjack ROIs
+     */
+    public void setBlackJackROIs(double... rois)
+    {
+        checkDimension(rois.length);
+        blackJackROIs = rois.clone();
+    }
+
+    /**
+     * Sets whether each combination is evaluated as if dealt from an infinite shoe. Far faster,
+     * so suits coarse what-if questions. Infinite-deck results are cached separately from exact
+     * ones, as their fingerprints differ.
+     * @param infinite whether to evaluate an infinite deck rather than a full shoe
+     */
+    public void setEvaluateInfiniteDeck(boolean infinite)
+    {
+        base.setEvaluateInfiniteDeck(infinite);
+    }
+
+    /**
+     * Sets the counts of decks to sweep
+     * @param counts counts of decks in the shoe
+     */
+    public void setDeckCounts(int... counts)
+    {
+        checkDimension(counts.length);
+        for(int count : counts)
+            if(count < 1)
+                throw new IllegalArgumentException("Invalid count of decks: " + count);
+        deckCounts = counts.clone();
+    }
+
+    /**
+     * Sets whether dealer hits soft 17, to sweep
+     * @param values eg {false, true} for S17 and H17
+     */
+    public void setDealerHitsSoft17(boolean... values)
+    {
+        checkDimension(values.length);
+        dealerHitsSoft17 = values.clone();
+    }
+
+    /**
+     * Sets whether player can double after any split, to sweep
+     * @param values eg {false, true} for no DAS and DAS
+     */
+    public void setDoubleAfterSplit(boolean... values)
+    {
+        checkDimension(values.length);
+        doubleAfterSplit = values.clone();
+    }
+
+    /**
+     * Sets the surrender types to sweep
+     * @param types eg {GameLogic.SURRENDER_TYPE_NONE, GameLogic.SURRENDER_TYPE_LATE}
+     */
+    public void setSurrenderTypes(int... types)
+    {
+        checkDimension(types.length);
+        for(int type : types)
+            if(type < GameLogic.SURRENDER_TYPE_NONE || type > GameLogic.SURRENDER_TYPE_EARLY)
+                throw new IllegalArgumentException("Invalid surrender type: " + type);
+        surrenderTypes = types.clone();
+    }
+
+    /**
+     * Sets the number of times {2,3,4,5,6,7,8,9,X,J,Q,K} can be split, to sweep
+     * @param times eg {1, 3} for no resplits and resplit to 4 hands
+     */
+    public void setTimesSplittable(int... times)
+    {
+        checkDimension(times.length);
+        for(int time : times)
+            if(time < 0 || time > PlayerHand.MAX_SPLIT_LEVELS)
+                throw new IllegalArgumentException("Invalid times splittable: " + time);
+        timesSplittable = times.clone();
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Checks that a dimension has at least one value
+     * @param countValues count of values in the dimension
+     */
+    private static void checkDimension(int countValues)
+    {
+        if(countValues < 1)
+            throw new IllegalArgumentException("A dimension must have at least one value");
+    }
+
+    /**
+     * Creates the settings of every combination in the grid, in grid order
+     * @return the settings of every combination
+     */
+    private ArrayList<Settings> combinations()
+    {
+        ArrayList<Settings> combinations = new ArrayList<Settings>();
+        for(int decks : deckCounts)
+            for(boolean h17 : dealerHitsSoft17)
+                for(boolean das : doubleAfterSplit)
+                    for(int surrenderType : surrenderTypes)
+                        for(int times : timesSplittable)
+                            for(double blackJackROI : blackJackROIs)
+                            {
+                                Settings settings = base.copy();
+                                settings.setShoeCapacity(decks * 52);
+                                settings.setDealerHitsSoft17(h17);
+                                settings.setCanDoubleAfter2toK_Split(das);
+                                settings.setCanDoubleAfterAcesSplit(das);
+                                settings.setSurrenderType(surrenderType);
+                                settings.setTimes2toK_Splittable(times);
+                                settings.setBlackJackROI(blackJackROI);
+                                combinations.add(settings);
+                            }
+        return combinations;
+    }
+
+    //---------------------------------------- INNER CLASSES ---------------------------------------
+    /**
+     * The result of a single combination in the grid
+     */
+    public static final class Cell
+    {
+        private Settings settings;
+        private String   fingerprint;
+        private double   playerROI;
+        private boolean  isCached;
+
+        private Cell(Settings settings, String fingerprint, double playerROI, boolean isCached)
+        {
+            this.settings = settings;
+            this.fingerprint = fingerprint;
+            this.playerROI = playerROI;
+            this.isCached = isCached;
+        }
+
+        /**
+         * Returns the settings of this combination. Must not be modified.
+         * @return the settings of this combination
+         */
+        public Settings settings()
+        {
+            return settings;
+        }
+
+        /**
+         * Returns the rule fingerprint of this combination
+         * @return the rule fingerprint of this combination
+         */
+        public String fingerprint()
+        {
+            return fingerprint;
+        }
+
+        /**
+         * Returns the house edge. -ve value indicates player advantage
+         * @return the house edge
+         */
+        public double houseEdge()
+        {
+            return -playerROI;
+        }
+
+        /**
+         * Returns whether this combination's advantage was cached rather than evaluated
+         * @return whether this combination's advantage was cached rather than evaluated
+         */
+        public boolean isCached()
+        {
+            return isCached;
+        }
+
+        /**
+         * Returns the player advantage. -ve value indicates dealer advantage
+         * @return the player advantage
+         */
+        public double playerROI()
+        {
+            return playerROI;
+        }
+    }
+
+    /**
+     * Evaluates the player advantage of a full, or infinite, shoe for a single combination
+     */
+    @SuppressWarnings("serial")
+    private static final class CellTask extends RecursiveAction
+    {
+        private Settings settings;
+        private double   playerROI;
+
+        private CellTask(Settings settings)
+        {
+            this.settings = settings;
+        }
+
+        @Override
+        protected void compute()
+        {
+            playerROI = settings.evaluateInfiniteDeck() ? 
+                    PlayerAdvantage.evaluateInfiniteDeck(settings).totalPlayerROI() :
+                    PlayerAdvantage.evaluate(settings, new Shoe(settings)).totalPlayerROI();
+        }
+    }
+}
@@ -7,6 +7,11 @@
 
 // *********************************************ERRORS**********************************************
 package ryan.blackjack.domain;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.TreeSet;
 
@@ -27,6 +32,7 @@ public final class Settings implements Serializable
 	
 	
 	//------------------------------------ Instance Attributes -------------------------------------
+    private transient RuleSet ruleSet;                        //built on demand, null once stale
     private double           shoeMaxPenetration           = Shoe.DEFAULT_SHOE_MAX_PENETRATION;
     private int              shoeCapacity                 = Shoe.DEFAULT_SHOE_CAPACITY;
     private int              shoeShuffleType              = Shoe.DEFAULT_SHUFFLE_TYPE;
@@ -62,6 +68,11 @@ public final class Settings implements Serializable
     private boolean          fiveCard21Wins               = GameLogic.DEFAULT_FIVE_CARD_21_WINS;
     private double           fiveCard21Amount             = ROI.DEFAULT_FIVE_CARD_21_AMOUNT;
     private boolean   	     showBankHistory              = true;
+    private boolean          evaluateAdvantageInParallel  = PlayerAdvantage.DEFAULT_EVALUATE_IN_PARALLEL;
+    private boolean          evaluateInfiniteDeck         = InfiniteDeckEvaluator.DEFAULT_EVALUATE_INFINITE_DECK;
+    private boolean          evaluateTotalDependent       = PlayerAdvantage.DEFAULT_EVALUATE_TOTAL_DEPENDENT;
+    private int              tableMemoryMegabytes         = ROIEvaluator.DEFAULT_TABLE_MEMORY_MEGABYTES;
+    private boolean          evaluateOffHeap              = EvaluationSession.DEFAULT_EVALUATE_OFF_HEAP;
 
     //------------------------------------- Instance Behaviour -------------------------------------
     
@@ -72,6 +83,80 @@ public final class Settings implements Serializable
     {
     }
 
+    /**
+     * Returns a deep copy of these settings, eg to vary rules without modifying these settings.
+     * Copies by serialization, so no setting is applied to the system.
+     * @return a deep copy of these settings
+     */
+    public Settings copy()
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(this);
+            out.close();
+            return (Settings)new ObjectInputStream(
+                    new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        }
+        catch(IOException | ClassNotFoundException e)
+        {
+            throw new IllegalStateException("Settings could not be copied", e);
+        }
+    }
+
+    /**
+     * Returns a deep copy of these settings whose table memory budget is an equal share of this
+     * one's, for one of several sets of evaluators kept at once, eg one per simulation shard.
+     * @param countShares count of sets of evaluators sharing this budget
+     * @return a deep copy of these settings, with at least 1 MB of table memory
+     */
+    public Settings copyWithTableMemoryShare(int countShares)
+    {
+        if(countShares < 1)
+            throw new IllegalArgumentException("Invalid count of shares: " + countShares);
+        Settings copy = copy();
+        copy.setTableMemoryMegabytes(Math.max(1, tableMemoryMegabytes() / countShares));
+        return copy;
+    }
+
+    /**
+     * Returns a fingerprint of every setting that affects the player advantage of a full shoe.
+     * Settings with equal fingerprints have equal advantages. Display, betting and shoe 
+     * shuffling settings are excluded. Infinite-deck and total-dependent evaluation are marked,
+     * as their advantages differ from the exact one.
+     * @return a fingerprint of the rules, eg "cards=416;h17=false;..."
+     */
+    public String ruleFingerprint()
+    {
+        return "cards=" + shoeCapacity + ";h17=" + dealerHitsSoft17 + 
+                ";holeCard=" + dealerDealtHoleCard + ";surrender=" + surrenderType + 
+                ";insurance=" + dealerOffersInsurance + ";evenMoney=" + dealerOffersEvenMoney + 
+                ";hitSplitAces=" + canHitAfterAcesSplit + ";splitBy=" + splitCardEqualityType + 
+                ";splits2toK=" + times2toK_Splittable + ";splitsAces=" + timesAcesSplittable + 
+                ";das2toK=" + canDoubleAfter2toK_Split + ";dasAces=" + canDoubleAfterAcesSplit + 
+                ";doubleCards=" + doublableCardCounts + ";doubleScores=" + doublableScores + 
+                ";dealerWinsTies=" + dealerWinsTies + ";originalBetsOnly=" + originalBetsOnly + 
+                ";bj=" + blackJackROI + ";splitBj=" + splitBlackJackROI + 
+                ";charlie=" + fiveCardCharlieWins + ";fiveCard21=" + fiveCard21Wins + 
+                ";fiveCard21Amount=" + fiveCard21Amount + 
+                (evaluateInfiniteDeck ? ";infinite" : "") + 
+                (evaluateTotalDependent ? ";totalDependent" : "");
+    }
+
+    /**
+     * Returns an immutable snapshot of the table rules in these settings. The same RuleSet is 
+     * returned until a rule is next changed.
+     * @return the current table rules
+     */
+    public RuleSet ruleSet()
+    {
+        RuleSet rules = ruleSet;
+        if(rules == null)
+            ruleSet = rules = new RuleSet(this);
+        return rules;
+    }
+
 
     /**
      * Returns shoeMaxPenetration
@@ -224,6 +309,7 @@ public final class Settings implements Serializable
     {
         this.customCountAdjustments = customCountAdjustments;
         CountStrategy.setCustomAdjustments(customCountAdjustments);
+        ruleSet = null;
     }
 
     /**
@@ -299,7 +385,7 @@ public final class Settings implements Serializable
     public void setMinBet(double minBet)
     {
         this.minBet = minBet;
-        BetStrategy.setMinBet(minBet);
+        ruleSet = null;
     }
 
     /**
@@ -318,7 +404,7 @@ public final class Settings implements Serializable
     public void setMaxBet(double maxBet)
     {
         this.maxBet = maxBet;
-        BetStrategy.setMaxBet(maxBet);
+        ruleSet = null;
     }
 
     /**
@@ -427,7 +513,7 @@ public final class Settings implements Serializable
     public void setCanHitAfterAcesSplit(boolean canHitAfterAcesSplit)
     {
         this.canHitAfterAcesSplit = canHitAfterAcesSplit;
-        PlayerHand.setCanHitAfterAcesSplit(canHitAfterAcesSplit);
+        ruleSet = null;
     }
 
     /**
@@ -446,7 +532,7 @@ public final class Settings implements Serializable
     public void setSplitCardEqualityType(int splitCardEqualityType)
     {
         this.splitCardEqualityType = splitCardEqualityType;
-        PlayerHand.setSplitCardEqualityType(splitCardEqualityType);
+        ruleSet = null;
     }
 
     /**
@@ -465,7 +551,7 @@ public final class Settings implements Serializable
     public void setTimes2toK_Splittable(int times2toK_Splittable)
     {
         this.times2toK_Splittable = times2toK_Splittable;
-        PlayerHand.setTimes2toK_Splittable(times2toK_Splittable);
+        ruleSet = null;
     }
 
     /**
@@ -484,7 +570,7 @@ public final class Settings implements Serializable
     public void setTimesAcesSplittable(int timesAcesSplittable)
     {
         this.timesAcesSplittable = timesAcesSplittable;
-        PlayerHand.setTimesAcesSplittable(timesAcesSplittable);
+        ruleSet = null;
     }
 
     /**
@@ -503,8 +589,7 @@ public final class Settings implements Serializable
     public void setCanDoubleAfter2toK_Split(boolean canDoubleAfter2toK_Split)
     {
         this.canDoubleAfter2toK_Split = canDoubleAfter2toK_Split;
-        PlayerHand.setDoublableStates(doublableCardCounts, doublableScores,
-                canDoubleAfter2toK_Split, canDoubleAfterAcesSplit);
+        ruleSet = null;
     }
 
     /**
@@ -523,8 +608,7 @@ public final class Settings implements Serializable
     public void setCanDoubleAfterAcesSplit(boolean canDoubleAfterAcesSplit)
     {
         this.canDoubleAfterAcesSplit = canDoubleAfterAcesSplit;
-        PlayerHand.setDoublableStates(doublableCardCounts, doublableScores,
-                canDoubleAfter2toK_Split, canDoubleAfterAcesSplit);
+        ruleSet = null;
     }
 
     /**
@@ -546,12 +630,7 @@ public final class Settings implements Serializable
     {
         this.doublableCardCounts = (TreeSet<Integer>) doublableCardCounts.clone();
         
-        PlayerHand.setDoublableStates(
-        		doublableCardCounts,
-        		doublableScores,
-                canDoubleAfter2toK_Split,
-                canDoubleAfterAcesSplit
-        );
+        ruleSet = null;
     }
 
     /**
@@ -572,8 +651,7 @@ public final class Settings implements Serializable
 	public void setDoublableScores(TreeSet<Integer> doublableScores)
     {
         this.doublableScores = (TreeSet<Integer>)doublableScores.clone();
-        PlayerHand.setDoublableStates(doublableCardCounts, doublableScores,
-                canDoubleAfter2toK_Split, canDoubleAfterAcesSplit);
+        ruleSet = null;
     }
 
     /**
@@ -646,7 +724,7 @@ public final class Settings implements Serializable
     public void setBlackJackROI(double blackJackROI)
     {
         this.blackJackROI = blackJackROI;
-        ROI.setBlackJackROI(blackJackROI);
+        ruleSet = null;
     }
 
     /**
@@ -665,7 +743,7 @@ public final class Settings implements Serializable
     public void setSplitBlackJackROI(double splitBlackJackROI)
     {
         this.splitBlackJackROI = splitBlackJackROI;
-        ROI.setSplitBlackJackROI(splitBlackJackROI);
+        ruleSet = null;
     }
 
     /**
@@ -720,7 +798,7 @@ public final class Settings implements Serializable
     public void setFiveCard21Amount(double fiveCard21Amount)
     {
         this.fiveCard21Amount = fiveCard21Amount;
-        ROI.setFiveCard21Amount(fiveCard21Amount);
+        ruleSet = null;
     }
     
     public boolean showBankHistory()
@@ -733,6 +811,117 @@ public final class Settings implements Serializable
     	this.showBankHistory = showBankHistory;
     }
 
+    /**
+     * Returns evaluateAdvantageInParallel
+     * @return evaluateAdvantageInParallel
+     */
+    public boolean evaluateAdvantageInParallel()
+    {
+        return evaluateAdvantageInParallel;
+    }
+
+    /**
+     * Sets evaluateAdvantageInParallel
+     * @param evaluateAdvantageInParallel
+     */
+    public void setEvaluateAdvantageInParallel(boolean evaluateAdvantageInParallel)
+    {
+        this.evaluateAdvantageInParallel = evaluateAdvantageInParallel;
+    }
+
+    /**
+     * Returns evaluateInfiniteDeck
+     * @return evaluateInfiniteDeck
+     */
+    public boolean evaluateInfiniteDeck()
+    {
+        return evaluateInfiniteDeck;
+    }
+
+    /**
+     * Sets evaluateInfiniteDeck
+     * @param evaluateInfiniteDeck
+     */
+    public void setEvaluateInfiniteDeck(boolean evaluateInfiniteDeck)
+    {
+        this.evaluateInfiniteDeck = evaluateInfiniteDeck;
+    }
+
+    /**
+     * Returns evaluateTotalDependent
+     * @return evaluateTotalDependent
+     */
+    public boolean evaluateTotalDependent()
+    {
+        return evaluateTotalDependent;
+    }
+
+    /**
+     * Sets evaluateTotalDependent. Caller must also clear ROIEvaluator tables
+     * @param evaluateTotalDependent
+     */
+    public void setEvaluateTotalDependent(boolean evaluateTotalDependent)
+    {
+        this.evaluateTotalDependent = evaluateTotalDependent;
+    }
+
+    /**
+     * Returns tableMemoryMegabytes, the memory budget of the transposition tables of all 
+     * ROIEvaluators for a shoe. Heap-allocated tables are limited to a quarter of the maximum heap
+     * @return tableMemoryMegabytes, or the default if loaded from settings saved without it
+     */
+    public int tableMemoryMegabytes()
+    {
+        int megabytes = tableMemoryMegabytes > 0 ? tableMemoryMegabytes : 
+                ROIEvaluator.DEFAULT_TABLE_MEMORY_MEGABYTES;
+        return evaluateOffHeap ? megabytes : 
+                Math.min(megabytes, ROIEvaluator.MAX_HEAP_TABLE_MEMORY_MEGABYTES);
+    }
+
+    /**
+     * Sets tableMemoryMegabytes. Applies to ROIEvaluators created afterwards
+     * @param tableMemoryMegabytes
+     */
+    public void setTableMemoryMegabytes(int tableMemoryMegabytes)
+    {
+        this.tableMemoryMegabytes = tableMemoryMegabytes;
+    }
+
+    /**
+     * Returns evaluateOffHeap, whether transposition tables are allocated off the Java heap
+     * @return evaluateOffHeap
+     */
+    public boolean evaluateOffHeap()
+    {
+        return evaluateOffHeap;
+    }
+
+    /**
+     * Sets evaluateOffHeap. Applies to EvaluationSessions created afterwards
+     * @param evaluateOffHeap
+     */
+    public void setEvaluateOffHeap(boolean evaluateOffHeap)
+    {
+        this.evaluateOffHeap = evaluateOffHeap;
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Restores these settings from a stream. Field initializers do not run on deserialization, 
+     * so settings added since a config.dat was saved are first given their defaults. Otherwise
+     * they would be false or 0, eg evaluating in serial despite the parallel default.
+     * @param in stream of saved settings
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        evaluateAdvantageInParallel = PlayerAdvantage.DEFAULT_EVALUATE_IN_PARALLEL;
+        evaluateInfiniteDeck        = InfiniteDeckEvaluator.DEFAULT_EVALUATE_INFINITE_DECK;
+        evaluateTotalDependent      = PlayerAdvantage.DEFAULT_EVALUATE_TOTAL_DEPENDENT;
+        tableMemoryMegabytes        = ROIEvaluator.DEFAULT_TABLE_MEMORY_MEGABYTES;
+        evaluateOffHeap             = EvaluationSession.DEFAULT_EVALUATE_OFF_HEAP;
+        in.defaultReadObject();
+    }
 }
 
 
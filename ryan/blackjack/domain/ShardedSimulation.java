@@ -0,0 +1,235 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// void run(long roundsPerShard)                   --> plays rounds on every shard, on all cores
+// void run(long roundsPerShard, int parallelism)  --> plays rounds on every shard
+// ArrayList<Player> players()                     --> each Player's results merged over shards
+// long countRounds()                              --> total rounds played over all shards
+// double roundsPerSecond()                        --> total rounds per second of wall time
+// long[] shardState(int shard)                    --> recorded starting state of a shard's streams
+// SimulationEngine createShard(settings, factory, shardState) --> replays a recorded shard
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if countShards, roundsPerShard or parallelism is not positive
+// IllegalArgumentException if a shard state is not a recorded shard state
+package ryan.blackjack.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ShardedSimulation class.
+ * Runs independent tables (shards), each a SimulationEngine with its own Shoe, Players, 
+ * DecisionPolicy and RandomStreams, on a thread pool. Shards share nothing mutable, so 
+ * throughput scales with cores.
+ * Every RandomStream is jumped ahead from a single master seed, so a run is reproducible 
+ * regardless of how many threads play it. The starting state of each shard's streams is recorded,
+ * so any single shard can be replayed exactly without replaying the others. Results are merged in
+ * shard order, as if each shard's rounds were played after the previous shard's.
+ */
+public final class ShardedSimulation
+{
+    //----------------------------------------- Constants ------------------------------------------
+    public static final int SHARD_STATE_LENGTH = 2 * RandomStream.STATE_LENGTH;  //shoe, then peek
+
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Creates a shard from the recorded starting state of its streams. Its shoe is freshly 
+     * shuffled, so playing the same rounds with an equivalent factory replays the shard exactly.
+     * @param settings the rules to play by. Must not be modified while playing.
+     * @param factory creates the shard's Players and DecisionPolicy
+     * @param shardState starting state of the shard's streams, as from shardState()
+     * @return a new SimulationEngine for the shard, before any rounds are played
+     */
+    public static SimulationEngine createShard(Settings settings, TableFactory factory, 
+            long[] shardState)
+    {
+        if(shardState == null || shardState.length != SHARD_STATE_LENGTH)
+            throw new IllegalArgumentException("Shard state must be " + SHARD_STATE_LENGTH + 
+                    " longs");
+
+        int half = RandomStream.STATE_LENGTH;
+        Shoe shoe = new Shoe(settings, 
+                new RandomStream(Arrays.copyOfRange(shardState, 0, half)));
+        shoe.shuffle();
+        return new SimulationEngine(settings, shoe, factory.createPlayers(), 
+                factory.createPolicy(settings), 
+                new RandomStream(Arrays.copyOfRange(shardState, half, 2 * half)));
+    }
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private TableFactory       factory;             //creates each shard's Players and policy
+    private SimulationEngine[] engines;             //one per shard
+    private long[][]           shardStates;         //starting state of each shard's streams
+    private long               elapsedNanos;        //wall time spent in run()
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Creates every shard, each with a freshly shuffled shoe. Every shard's 
+     * DecisionPolicy is created with an equal share of the table memory budget in settings, so
+     * that all shards' evaluators together stay within it.
+     * @param settings the rules to play by. Must not be modified while playing.
+     * @param factory creates each shard's Players and DecisionPolicy
+     * @param countShards count of independent tables
+     * @param seed master seed, from which every shard's shoe and dealer peek streams are jumped
+     */
+    public ShardedSimulation(Settings settings, TableFactory factory, int countShards, long seed)
+    {
+        if(countShards < 1)
+            throw new IllegalArgumentException("Invalid count of shards: " + countShards);
+
+        this.factory = factory;
+        Settings shardSettings = settings.copyWithTableMemoryShare(countShards);
+        RandomStream master = new RandomStream(seed);
+        engines = new SimulationEngine[countShards];
+        shardStates = new long[countShards][];
+        for(int shard = 0; shard < countShards; shard++)
+        {
+            long[] shardState = new long[SHARD_STATE_LENGTH];
+            System.arraycopy(master.nextStream().state(), 0, shardState, 0, 
+                    RandomStream.STATE_LENGTH);
+            System.arraycopy(master.nextStream().state(), 0, shardState, 
+                    RandomStream.STATE_LENGTH, RandomStream.STATE_LENGTH);
+            shardStates[shard] = shardState;
+            engines[shard] = createShard(shardSettings, factory, shardState);
+        }
+    }
+
+    /**
+     * Returns the total count of rounds played over all shards
+     * @return the total count of rounds played over all shards
+     */
+    public long countRounds()
+    {
+        long countRounds = 0;
+        for(SimulationEngine engine : engines)
+            countRounds += engine.countRounds();
+        return countRounds;
+    }
+
+    /**
+     * Returns each Player's results merged over all shards, in shard order. Shards are not 
+     * modified, so this may be called between runs.
+     * @return a new Player from the factory for each seat at the table, holding the merged
+     *         results
+     */
+    public ArrayList<Player> players()
+    {
+        ArrayList<Player> merged = factory.createPlayers();
+        for(SimulationEngine engine : engines)
+            for(int pIdx = 0; pIdx < merged.size(); pIdx++)
+                merged.get(pIdx).merge(engine.players().get(pIdx));
+        return merged;
+    }
+
+    /**
+     * Returns the recorded starting state of the specified shard's streams, for createShard()
+     * @param shard index of the shard
+     * @return a copy of the state of the shard's shoe stream, then its dealer peek stream, before
+     *         its shoe was first shuffled
+     */
+    public long[] shardState(int shard)
+    {
+        return shardStates[shard].clone();
+    }
+
+    /**
+     * Returns the total count of rounds played per second of wall time, over all runs so far
+     * @return rounds played per second, or 0.0 if no rounds have been played
+     */
+    public double roundsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0.0 : countRounds() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Plays the specified count of rounds on every shard, with a thread per core
+     * @param roundsPerShard count of rounds to play on each shard
+     */
+    public void run(long roundsPerShard)
+    {
+        run(roundsPerShard, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Plays the specified count of rounds on every shard
+     * @param roundsPerShard count of rounds to play on each shard
+     * @param parallelism count of threads to play shards on
+     */
+    public void run(long roundsPerShard, int parallelism)
+    {
+        if(roundsPerShard < 1)
+            throw new IllegalArgumentException("Invalid rounds per shard: " + roundsPerShard);
+        if(parallelism < 1)
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+
+        long start = System.nanoTime();
+        ShardTask[] tasks = new ShardTask[engines.length];
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            for(int shard = 0; shard < engines.length; shard++)
+                tasks[shard] = new ShardTask(engines[shard], roundsPerShard);
+            for(ShardTask task : tasks)
+                pool.execute(task);
+            for(ShardTask task : tasks)
+                task.join();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    //---------------------------------------- INNER CLASSES ---------------------------------------
+    /**
+     * Creates the Players and DecisionPolicy for each shard. Every shard must get new instances,
+     * as neither is thread-safe. Every shard must get the same seats, in the same order.
+     */
+    public interface TableFactory
+    {
+        /**
+         * Creates the Players for a single shard
+         * @return new Players, none of whose BetStrategy requires a UserInterface
+         */
+        public ArrayList<Player> createPlayers();
+
+        /**
+         * Creates the DecisionPolicy for a single shard
+         * @param settings the rules the shard plays by
+         * @return a new DecisionPolicy
+         */
+        public DecisionPolicy createPolicy(Settings settings);
+    }
+
+    /**
+     * Plays a count of rounds on a single shard
+     */
+    @SuppressWarnings("serial")
+    private static final class ShardTask extends RecursiveAction
+    {
+        private SimulationEngine engine;
+        private long             countRounds;
+
+        private ShardTask(SimulationEngine engine, long countRounds)
+        {
+            this.engine = engine;
+            this.countRounds = countRounds;
+        }
+
+        @Override
+        protected void compute()
+        {
+            engine.run(countRounds);
+        }
+    }
+}
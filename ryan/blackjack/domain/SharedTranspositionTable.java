@@ -0,0 +1,229 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// boolean get(long key, double[] values, int offset)
+//                                   --> copies the values stored for key, if present
+// void put(long key, double[] values, int offset)
+//                                   --> stores values for key. May replace another entry
+// void clear()                      --> removes all entries
+// static int capacityFor(long bytes, int width)
+//                                   --> capacity of a table within a memory budget
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if a capacity, width or memory budget is invalid
+// IllegalStateException if the table is used after its EvaluationSession is closed
+package ryan.blackjack.domain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transposition table mapping a long key to a fixed count of doubles, shared by every thread of
+ * an evaluation without locks.
+ * Each slot is a check word followed by its values, in a single buffer allocated by an
+ * EvaluationSession, so neither get() nor put() box or allocate. The check word is a hash of the
+ * key and every value's bits, as in the lockless hash tables of parallel chess engines. Threads
+ * read and write slots with plain accesses, so a reader may see a slot half written by another
+ * thread. It then fails verification, and is a miss. The hash multiplies at each word rather than simply XORing them, as values such as
+ * probabilities share many bits, so a torn slot could otherwise XOR to a valid check word.
+ * A key is stored in any slot of its bucket of BUCKET_SIZE slots. Once its bucket is full, a new
+ * key replaces the one in the slot selected by its spare hash bits. The capacity is fixed, as the
+ * table cannot be resized while other threads use it.
+ */
+public final class SharedTranspositionTable
+{
+    //----------------------------------------- Constants ------------------------------------------
+    private static final long  HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;  //Fibonacci hashing
+    private static final int   BUCKET_SIZE = 4;          //slots probed per key
+    private static final int   MIN_CAPACITY = 2 * BUCKET_SIZE;
+    private static final long  CHECK_SEED = HASH_MULTIPLIER;   //so an empty slot fails verification
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private ByteBuffer slots;        //check word, then width values, per slot. null once closed
+    private int      width;          //count of values per slot
+    private int      stride;         //count of bytes per slot
+    private int      shift;          //64 - log2(count of buckets), selects the top bits of hash
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Returns the largest capacity of a table of the specified width within a memory budget
+     * @param bytes memory budget of the table
+     * @param width count of values per slot
+     * @return the largest power of 2 count of slots that fits in bytes
+     */
+    public static int capacityFor(long bytes, int width)
+    {
+        long bytesPerSlot = (width + 1) * 8L;
+        if(width < 1 || bytes < MIN_CAPACITY * bytesPerSlot)
+            throw new IllegalArgumentException("Memory budget too small: " + bytes + " bytes");
+        long maxCapacity = Integer.highestOneBit(Integer.MAX_VALUE / (int)bytesPerSlot);
+        return (int)Math.min(maxCapacity, Long.highestOneBit(bytes / bytesPerSlot));
+    }
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Creates an empty table, allocated in full.
+     * @param capacity count of slots. Rounded up to a power of 2.
+     * @param width count of values per slot
+     * @param session session owning the table's storage. The table throws if used once it closes.
+     */
+    public SharedTranspositionTable(int capacity, int width, EvaluationSession session)
+    {
+        if(width < 1)
+            throw new IllegalArgumentException("Invalid width: " + width);
+        if(capacity < MIN_CAPACITY || capacity > Integer.highestOneBit(Integer.MAX_VALUE /
+                ((width + 1) * 8)))
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.width = width;
+        stride = (width + 1) * 8;
+        slots = session.allocate((long)capacity * stride);
+        shift = 64 - Integer.numberOfTrailingZeros(capacity / BUCKET_SIZE);
+        session.register(this::invalidate);
+    }
+
+    /**
+     * Removes all entries. Every slot is zeroed, so that put() finds it empty again rather than
+     * replacing entries of its bucket as if the bucket were full.
+     * Must not be called while any other thread uses this table.
+     */
+    public void clear()
+    {
+        checkValid();
+        for(int word = 0; word < slots.capacity(); word += 8)
+            slots.putLong(word, 0L);
+    }
+
+    /**
+     * Copies the values stored for the specified key. May be called concurrently with get() and
+     * put() on other threads.
+     * @param key key of the values
+     * @param values array to copy into. Overwritten even if key is not present
+     * @param offset index in values of the first value
+     * @return whether this table contains the key
+     */
+    public boolean get(long key, double[] values, int offset)
+    {
+        checkValid();
+        int first = bucket(key);
+        for(int slot = first; slot < first + BUCKET_SIZE; slot++)
+        {
+            int word = slot * stride;
+            long stored = slots.getLong(word);
+            long check = key ^ CHECK_SEED;
+            for(int i = offset; i < offset + width; i++)
+            {
+                word += 8;
+                long bits = slots.getLong(word);
+                check = mix(check, bits);
+                values[i] = Double.longBitsToDouble(bits);
+            }
+            if(stored == check)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stores the values for the specified key, replacing any existing values for that key.
+     * If the key's bucket is full, another entry is replaced. May be called concurrently with
+     * get() and put() on other threads.
+     * @param key key of the values
+     * @param values array holding the values
+     * @param offset index in values of the first value
+     */
+    public void put(long key, double[] values, int offset)
+    {
+        checkValid();
+        int first = bucket(key);
+        int target = first + (int)(key & (BUCKET_SIZE - 1));  //replaced if bucket is full
+        for(int slot = first; slot < first + BUCKET_SIZE; slot++)
+        {
+            if(holds(slot, key) || isEmpty(slot))
+            {
+                target = slot;
+                break;
+            }
+        }
+
+        int word = target * stride;
+        long check = key ^ CHECK_SEED;
+        for(int i = offset; i < offset + width; i++)
+        {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            check = mix(check, bits);
+            slots.putLong(word + (1 + i - offset) * 8, bits);
+        }
+        slots.putLong(word, check);
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Throws if this table has been invalidated, as its storage may have been freed
+     */
+    private void checkValid()
+    {
+        if(slots == null)
+            throw new IllegalStateException("Table's evaluation session is closed");
+    }
+
+    /**
+     * Drops this table's storage as its session closes. Any further use throws.
+     */
+    private void invalidate()
+    {
+        slots = null;
+    }
+
+    /**
+     * Gets the first slot of the bucket of the specified key
+     * @param key key of some values
+     * @return the first slot of its bucket
+     */
+    private int bucket(long key)
+    {
+        return (int)((key * HASH_MULTIPLIER) >>> shift) * BUCKET_SIZE;
+    }
+
+    /**
+     * Returns whether the specified slot holds the specified key
+     * @param slot a slot
+     * @param key key of some values
+     * @return whether the slot's check word is the hash of key and the slot's values
+     */
+    private boolean holds(int slot, long key)
+    {
+        int word = slot * stride;
+        long check = key ^ CHECK_SEED;
+        for(int i = 8; i < stride; i += 8)
+            check = mix(check, slots.getLong(word + i));
+        return slots.getLong(word) == check;
+    }
+
+    /**
+     * Returns whether the specified slot has not been written since the last clear()
+     * @param slot a slot
+     * @return whether every word of slot is 0
+     */
+    private boolean isEmpty(int slot)
+    {
+        for(int word = slot * stride; word < (slot + 1) * stride; word += 8)
+            if(slots.getLong(word) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Adds a value's bits to the hash of a check word
+     * @param check hash of the key and the values before this one
+     * @param bits bits of this value
+     * @return hash of the key and values up to and including this one
+     */
+    private static long mix(long check, long bits)
+    {
+        return (check ^ bits) * HASH_MULTIPLIER + (check >>> 29);
+    }
+}
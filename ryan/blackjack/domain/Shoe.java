@@ -7,14 +7,16 @@
 
 // *********************************************ERRORS**********************************************
 package ryan.blackjack.domain;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.random.RandomGenerator;
 
 /**
- * Represents a shoe filled with cards
+ * Represents a shoe filled with cards.
+ * Cards are held as codes (Card.code()) in a primitive array. The cards remaining are
+ * those from the draw cursor to the end of the array, in dealing order, so drawing the next card
+ * just advances the cursor. A count of each card type, and of each suit of each card type, is 
+ * maintained on every remove and insert, so all count, probability and suit queries are O(1).
  */
 public final class Shoe implements Cloneable
 {
@@ -28,6 +30,10 @@ public final class Shoe implements Cloneable
 
     public static final int    REMOVE                            = 0;
     public static final int    INSERT                            = 1;
+
+    public static final int    EXCLUDE_NONE                      = 0;         //for nextExcluding()
+    public static final int    EXCLUDE_10_VALUE                  = 1 << 10;
+    public static final int    EXCLUDE_ACE                       = 1 << 11;
     
 
 
@@ -40,7 +46,6 @@ public final class Shoe implements Cloneable
     
 
     //-------------------------------------- Class Attributes --------------------------------------
-    private static final Random rand = new Random();              //Random number generator        
 
     //-------------------------------------- Class Behaviour ---------------------------------------
 
@@ -49,22 +54,45 @@ public final class Shoe implements Cloneable
     private int countShuffleCuts;                                 //used by cut,split,merge
     private int countShuffleLoops;                                //used by cut,split,merge
     private double[] runningCounts;                               //one for each countStrategy
+    private RuleSet rules;                                        //custom count adjustments
+    private double[] countDeltas;                                 //from rules.buildCountDeltas()
+    private double decksRemaining;                                //size() / 52, for trueCount()
     private int capacity;                                         //number of cards in full shoe
-    private LinkedList<Card> shoe;                                //not used in prob. calculations
+    private int[] cards;                                          //card codes, length == capacity
+    private int cursor;                                           //index of next card to be dealt
+    private int[] cardTypeCounts13;                               //count of each type remaining
+    private int[][] cardCounts;                                   //[type][suit] count remaining
     private double maxPenetration;                                //if here, shoe reset at round-end
+    private RandomGenerator rand;                                 //Random number generator
+    private int[] scratch;                                        //cut-split-merge work array
 
     //------------------------------------- Instance Behaviour -------------------------------------
     /**
      * Constructor
      * Sets instance attributes. Inserts cards into shoe. Does not shuffle.
+     * The shoe owns its own, randomly seeded RandomStream.
      */
     public Shoe(Settings settings)
     {
+        this(settings, new RandomStream(new Random().nextLong()));
+    }
+
+    /**
+     * Constructor
+     * Sets instance attributes. Inserts cards into shoe. Does not shuffle.
+     * @param settings the shoe's capacity, penetration and shuffle settings
+     * @param rand shuffles and inserts cards, eg a RandomStream. Seed it, or restore a recorded
+     *             RandomStream state, to reproduce a sequence of shoes. Owned by this shoe.
+     */
+    public Shoe(Settings settings, RandomGenerator rand)
+    {
+        this.rand              = rand;
         this.shuffleType       = settings.shoeShuffleType();
         this.countShuffleCuts  = settings.shoeCountShuffleCuts();
         this.countShuffleLoops = settings.shoeCountShuffleLoops();
 
-        runningCounts = new double[8];
+        setRules(settings.ruleSet());
+        runningCounts = new double[CountStrategy.countStrategies()];
 
         if(capacity % 52 != 0)
             throw new IllegalArgumentException("Shoe size must be mulitple of 52: " + capacity);
@@ -95,22 +123,15 @@ public final class Shoe implements Cloneable
      */
     public int cardCount(Card card)
     {
-        int cardCount = 0;
-        for(Card c : shoe)
-            if(c.equals(card))
-                cardCount++;
-        return cardCount;
+        return cardCounts[card.playerType()][card.suit()];
     }
 
     /**
-     *
+     * Returns a copy of the count of each card type remaining, which the caller may modify
      */
     public int[] cardTypeCounts()
     {
-        int[] cardTypeCounts13 = new int[13];
-        for(Card c : shoe)
-            cardTypeCounts13[c.playerType()]++;
-        return cardTypeCounts13;
+        return cardTypeCounts13.clone();
     }
 
     /**
@@ -118,27 +139,31 @@ public final class Shoe implements Cloneable
      */
     public int cardTypeCount(int cardType)
     {
-        int cardTypeCount = 0;
-        for(Card c : shoe)
-            if(c.playerType() == cardType)
-                cardTypeCount++;
-        return cardTypeCount;
+        return cardTypeCounts13[cardType];
     }
 
     /**
      *
      */
-    @SuppressWarnings("unchecked")
-	public Shoe clone()
+    public Shoe clone()
     {
         Shoe clone = new Shoe();
         clone.shuffleType = shuffleType;
         clone.countShuffleCuts = countShuffleCuts;
         clone.countShuffleLoops = countShuffleLoops;
         clone.runningCounts = runningCounts.clone();
+        clone.rules = rules;
+        clone.countDeltas = countDeltas;                          //never modified, so shared
+        clone.decksRemaining = decksRemaining;
         clone.capacity = capacity;
-        clone.shoe = (LinkedList<Card>)shoe.clone();
+        clone.cards = cards.clone();
+        clone.cursor = cursor;
+        clone.cardTypeCounts13 = cardTypeCounts13.clone();
+        clone.cardCounts = new int[Card.COUNT_PLAYER_CARD_TYPES][];
+        for(int type = Card.TWO; type <= Card.PLAYER_ACE; type++)
+            clone.cardCounts[type] = cardCounts[type].clone();
         clone.maxPenetration = maxPenetration;
+        clone.rand = rand;                                        //shared, as clone is a what-if
         return clone;
     }
 
@@ -152,30 +177,32 @@ public final class Shoe implements Cloneable
     {
         if(card == null)
             throw new NullPointerException("Cannot search for Null card in shoe");
-        return shoe.contains(card);
+        return cardCounts[card.playerType()][card.suit()] > 0;
     }
 
 
 
     /**
-     * Inserts a card at a random point in shoe.
+     * Inserts a card at a random point in shoe, in O(1). Every point, including the top and
+     * bottom, is equally likely. The card displaced from that point is moved to the top of the 
+     * shoe, so if the shoe was randomly ordered it remains so.
      * Allows user to manually configure initial shoe contents.
      * Will not insert Card if shoe contains maximum number of that Card
      */
     public boolean insert(Card card)
     {
-        //Get each cardType52 count
-        int[] cardTypeCounts52 = new int[52];
-        for(Card c : shoe)
-            cardTypeCounts52[c.suit() * 13 + c.playerType()]++;
-
         //If shoe already full of specified Card
-        if(cardTypeCounts52[card.suit() * 13 + card.playerType()] == capacity / 52)
+        if(cardCount(card) == capacity / 52)
             return false;
         else
         {
-            shoe.add(rand.nextInt(shoe.size()), card);   //add Card at random position
-            adjustRunningCounts(card, INSERT);
+            //add Card at random position, moving the card there to the top of the shoe
+            int position = cursor - 1 + rand.nextInt(size() + 1);
+            cards[--cursor] = cards[position];
+            cards[position] = card.code();
+            cardTypeCounts13[card.playerType()]++;
+            cardCounts[card.playerType()][card.suit()]++;
+            adjustRunningCounts(card.playerType(), -1.0);
             return true;   
         }
     }
@@ -193,7 +220,7 @@ public final class Shoe implements Cloneable
      */
     public double penetration()
     {
-        return 1.0 - (double)shoe.size() / capacity;
+        return 1.0 - (double)size() / capacity;
     }
 
     /**
@@ -201,11 +228,7 @@ public final class Shoe implements Cloneable
      */
     public double probability10Value()
     {
-        int count10Vals = 0;
-        for(Card c : shoe)
-            if(c.value() == 10)
-                count10Vals++;
-        return (double)count10Vals / shoe.size();
+        return (double)count10Vals() / size();
     }
 
     /**
@@ -213,11 +236,7 @@ public final class Shoe implements Cloneable
      */
     public double probabilityAce()
     {
-        int countAces = 0;
-        for(Card c : shoe)
-            if(c.value() == 11)
-                countAces++;
-        return (double)countAces / shoe.size();
+        return (double)cardTypeCounts13[Card.PLAYER_ACE] / size();
     }
 
     /**
@@ -225,16 +244,9 @@ public final class Shoe implements Cloneable
      */
     public double probabilityBlackJack()
     {
-        int count10Vals = 0, countAces = 0;
-        for(Card c : shoe)
-            if(c.value() == 10)
-                count10Vals++;
-            else if(c.value() == 11)
-                countAces++;
-
         return 2.0 *                                             //can be [X][A] or [A][X]
-                ((double)count10Vals / shoe.size()) * 
-                ((double)countAces / (shoe.size() - 1));
+                ((double)count10Vals() / size()) * 
+                ((double)cardTypeCounts13[Card.PLAYER_ACE] / (size() - 1));
     }
 
     /**
@@ -245,29 +257,8 @@ public final class Shoe implements Cloneable
      */
     public int probableSuit(int playerCardType, int direction)
     {
-        int[] countSuits = new int[Card.COUNT_CARD_SUITS];     //how many of each suit of this type
-        int countPlayerCardType = 0;                           //how many of this type eg 3*Ace
-        for(Card c : shoe)
-        {
-            if(c.playerType() == playerCardType)
-            {
-                countPlayerCardType++;
-                switch(c.suit())
-                {
-                    case Card.CLUBS:
-                        countSuits[Card.CLUBS]++;
-                        break;
-                    case Card.DIAMONDS:
-                        countSuits[Card.DIAMONDS]++;
-                        break;
-                    case Card.HEARTS:
-                        countSuits[Card.HEARTS]++;
-                        break;
-                    case Card.SPADES:
-                        countSuits[Card.SPADES]++;                        
-                }
-            }
-        }
+        int[] countSuits = cardCounts[playerCardType];         //how many of each suit of this type
+        int countPlayerCardType = cardTypeCounts13[playerCardType];  //how many of this type
         if(direction == REMOVE)
         {
             if(countPlayerCardType == 0)
@@ -288,15 +279,13 @@ public final class Shoe implements Cloneable
             if(countPlayerCardType == capacity / 13)
                 throw new IllegalStateException("Shoe already full of specified Card Type");
             int maxCountSuit = capacity / 52;
-            for(int suit = Card.CLUBS; suit <= Card.SPADES; suit++)
-                countSuits[suit] = maxCountSuit - countSuits[suit];
             int randomIdx = rand.nextInt(capacity / 13 - countPlayerCardType);//pick index at random
             for(int suit = 0; suit < Card.COUNT_CARD_SUITS; suit++)        //get suit at this index
             {
-                if(randomIdx < countSuits[suit])
+                if(randomIdx < maxCountSuit - countSuits[suit])
                     return suit;
                 else
-                    randomIdx -= countSuits[suit];
+                    randomIdx -= maxCountSuit - countSuits[suit];
             }
             throw new IllegalStateException("Suit should already be chosen: " + randomIdx);
         }
@@ -307,24 +296,40 @@ public final class Shoe implements Cloneable
      */
     public void refill()
     {
-        shoe = new LinkedList<Card>();
+        cards = new int[capacity];
+        cursor = 0;
+        int idx = 0;
         for(int deck = 0; deck < capacity / 52; deck++)
             for(int suit = 0; suit < Card.COUNT_CARD_SUITS; suit++)
                 for(int type = 0; type < Card.COUNT_PLAYER_CARD_TYPES; type++)
-                    shoe.add(new Card(type, suit));
+                    cards[idx++] = Card.code(type, suit);
+        cardTypeCounts13 = new int[Card.COUNT_PLAYER_CARD_TYPES];
+        cardCounts = new int[Card.COUNT_PLAYER_CARD_TYPES][Card.COUNT_CARD_SUITS];
+        for(int type = 0; type < Card.COUNT_PLAYER_CARD_TYPES; type++)
+        {
+            cardTypeCounts13[type] = capacity / 13;
+            for(int suit = 0; suit < Card.COUNT_CARD_SUITS; suit++)
+                cardCounts[type][suit] = capacity / 52;
+        }
 
         resetRunningCounts();   
     }
 
     /**
-     *
+     * Removes the first occurrence of the specified card. The remaining cards keep their order.
+     * O(1) if card is the next card, as when dealing.
      */
     public boolean remove(Card card)
     {
-        boolean cardRemoved = shoe.remove(card);
-        if(cardRemoved)
+        int idx = cardCounts[card.playerType()][card.suit()] > 0 ? indexOf(card) : -1;
+        if(idx >= 0)
         {
-            adjustRunningCounts(card, REMOVE);
+            //shift the cards before it over the gap, then advance the cursor past them
+            System.arraycopy(cards, cursor, cards, cursor + 1, idx - cursor);
+            cursor++;
+            cardTypeCounts13[card.playerType()]--;
+            cardCounts[card.playerType()][card.suit()]--;
+            adjustRunningCounts(card.playerType(), 1.0);
             return true;
         }
         else
@@ -336,9 +341,41 @@ public final class Shoe implements Cloneable
      */
     public Card next()
     {
-        if(shoe.size() == 0)
+        if(size() == 0)
             throw new IllegalStateException("Cannot remove next Card. Shoe is empty");
-        return shoe.get(0);    
+        return Card.of(cards[cursor]);
+    }
+
+    /**
+     * Returns the next card from the shoe whose value is not excluded. Does not remove it.
+     * A random position is picked from the rest of the shoe, rejecting excluded cards, and its card
+     * is swapped with the next card. Every arrangement of the shoe with an eligible next card is
+     * then equally likely, as if it were reshuffled until the next card is eligible, so the cards
+     * dealt afterwards are also unbiased. Expected O(1): ~1.4 positions are picked on average when
+     * excluding 10-values from a standard shoe.
+     * @param excludedValues bit (1 << value) set for each excluded Card value, eg EXCLUDE_ACE
+     * @return the next card, which is not excluded
+     */
+    public Card nextExcluding(int excludedValues)
+    {
+        boolean hasEligible = false;
+        for(int cardType = Card.TWO; cardType <= Card.PLAYER_ACE && !hasEligible; cardType++)
+            hasEligible = cardTypeCounts13[cardType] > 0 && 
+                    (excludedValues & (1 << Card.PLAYER_VALUES[cardType])) == 0;
+        if(!hasEligible)
+            throw new IllegalStateException("No Card in shoe has a value not excluded");
+
+        while(true)
+        {
+            int idx = cursor + rand.nextInt(size());
+            int code = cards[idx];
+            if((excludedValues & (1 << Card.PLAYER_VALUES[Card.playerType(code)])) == 0)
+            {
+                cards[idx] = cards[cursor];
+                cards[cursor] = code;
+                return Card.of(code);
+            }
+        }
     }
 
     /**
@@ -346,16 +383,16 @@ public final class Shoe implements Cloneable
      */
     public void resetRunningCounts()
     {
-        for(int countStrat = 0; countStrat < runningCounts.length; countStrat++)
-            runningCounts[countStrat] = 0.0;
+        runningCounts = new double[CountStrategy.countStrategies()];
+        decksRemaining = (double)size() / 52;
     }
 
     /**
-     *
+     * Strategies registered since the running counts were last reset have a running count of 0
      */
     public double runningCount(int countStrategy)
     {
-        return runningCounts[countStrategy];
+        return countStrategy < runningCounts.length ? runningCounts[countStrategy] : 0.0;
     }
 
     /**
@@ -382,6 +419,17 @@ public final class Shoe implements Cloneable
         this.maxPenetration = maxPenetration;
     }
 
+    /**
+     * Sets the rules this shoe counts by: the custom CountStrategy's adjustments.
+     * Running counts so far are not recounted.
+     * @param rules the table rules
+     */
+    public void setRules(RuleSet rules)
+    {
+        this.rules = rules;
+        countDeltas = rules.buildCountDeltas();
+    }
+
     /**
      *
      */
@@ -395,76 +443,77 @@ public final class Shoe implements Cloneable
     }
 
     /**
-     *
+     * Shuffles the cards remaining, in place. PSEUDORANDOM is a Fisher-Yates shuffle. 
+     * CUT_SPLIT_MERGE_LOOP restacks the cuts in reverse, splits the stack in half, then riffles 
+     * the halves back together, taking 64 coin flips from each random long. Neither allocates, 
+     * once the first cut-split-merge has created its work array.
      */
     public void shuffle()
     {
+        int size = size();
         switch(shuffleType)
         {
             case SHUFFLE_TYPE_PSEUDORANDOM:
-                ArrayList<Card> tmpArray = new ArrayList<Card>(shoe.size());
-                for(Card c : shoe)
-                    tmpArray.add(c);
-                for(int idx = 1; idx < tmpArray.size(); idx++)
+                for(int idx = 1; idx < size; idx++)
                 {
-                    Card tmp = tmpArray.get(idx);
-                    int swapIdx = rand.nextInt(idx + 1);
-                    tmpArray.set(idx, tmpArray.get(swapIdx));
-                    tmpArray.set(swapIdx, tmp);
+                    int tmp = cards[cursor + idx];
+                    int swapIdx = cursor + rand.nextInt(idx + 1);
+                    cards[cursor + idx] = cards[swapIdx];
+                    cards[swapIdx] = tmp;
                 }
-                shoe.clear();
-                for(Card c : tmpArray)
-                    shoe.addLast(c);
                 break;
             case SHUFFLE_TYPE_CUT_SPLIT_MERGE_LOOP:
-                LinkedList tmpShoe = shoe;                     //note the lack of parameterised type
-                List[] shoeCuts = new List[countShuffleCuts];  //holds shoe cuts
-                double cutSize = shoe.size() / (double)countShuffleCuts;
+                if(scratch == null || scratch.length < size)
+                    scratch = new int[capacity];
+                int[] cuts = scratch;                                      //cuts, in reverse order
+                double cutSize = size / (double)countShuffleCuts;
                 int start;                                                 //start of cut
                 int end;                                                   //end of cut
-                int middle = (int)Math.round(shoe.size() / 2.0);           //middle of shoe
-                int idx;                                                   //current shoe index
-                ArrayList left = new ArrayList(), right = new ArrayList(); //so we can split & merge
-                ListIterator itrLeft, itrRight;                            //to merge halves,no type
+                int middle = (int)Math.round(size / 2.0);                  //middle of shoe
+                int idx;                                                   //current cuts index
+                int left, right;                                           //to merge halves
+                long bits = 0;                                             //random bits to merge by
+                int countBits = 0;                                         //count of unused bits
 
                 for(int n = 0; n < countShuffleLoops; n++)                 //for each shuffle loop
                 {
-                    start = 0;                                             //start shoe idx of this cut
-                    for(int cut = 1; cut <= countShuffleCuts; cut++)        //for each cut of shoe
+                    //stack cuts in reverse order, so the last cut is on top
+                    idx = 0;
+                    end = size;
+                    for(int cut = countShuffleCuts - 1; cut >= 0; cut--)    //for each cut of shoe
                     {
-                        end = (int)Math.round(cut * cutSize);
+                        start = (int)Math.round(cut * cutSize);
                         if(end > start)
                         {
-                            shoeCuts[cut-1] = tmpShoe.subList(start, end);
-                            start = end;
+                            System.arraycopy(cards, cursor + start, cuts, idx, end - start);
+                            idx += end - start;
+                            end = start;
                         }
-                        else
-                            shoeCuts[cut-1] = null;
                     }
-                    idx = 0;
-                    left.clear();
-                    right.clear();
-                    for(int cut = countShuffleCuts - 1; cut >= 0; cut--)
-                        if(shoeCuts[cut] != null)
-                            for(Object o : shoeCuts[cut])
-                                if(idx++ < middle)
-                                    left.add(o);
-                                else
-                                    right.add(o);
-                    tmpShoe.clear();
-                    itrLeft = left.listIterator();
-                    itrRight = right.listIterator();
-                    while(itrLeft.hasNext() && itrRight.hasNext())
-                        if(rand.nextInt(2) == 0)
-                            tmpShoe.add(itrLeft.next());
+
+                    //split at middle, then riffle the halves back into the shoe
+                    idx = cursor;
+                    left = 0;
+                    right = middle;
+                    while(left < middle && right < size)
+                    {
+                        if(countBits == 0)                                 //64 coin flips at once
+                        {
+                            bits = rand.nextLong();
+                            countBits = 64;
+                        }
+                        if((bits & 1) == 0)
+                            cards[idx++] = cuts[left++];
                         else
-                            tmpShoe.add(itrRight.next());
-                    while(itrLeft.hasNext())
-                        tmpShoe.add(itrLeft.next());
-                    while(itrRight.hasNext())
-                        tmpShoe.add(itrRight.next());
+                            cards[idx++] = cuts[right++];
+                        bits >>>= 1;
+                        countBits--;
+                    }
+                    while(left < middle)
+                        cards[idx++] = cuts[left++];
+                    while(right < size)
+                        cards[idx++] = cuts[right++];
                 }
-                shoe = (LinkedList<Card>)tmpShoe;
         }
     }
 
@@ -473,7 +522,7 @@ public final class Shoe implements Cloneable
      */
     public int size()
     {
-        return shoe.size();
+        return cards.length - cursor;
     }
 
     /**
@@ -481,19 +530,48 @@ public final class Shoe implements Cloneable
      */
     public double trueCount(int countStrategy)
     {
-        return runningCounts[countStrategy] / ((double)shoe.size() / 52);
+        return runningCount(countStrategy) / decksRemaining;
     }
 
     /**
-     *
+     * Gets the count of 10-valued cards remaining
+     */
+    private int count10Vals()
+    {
+        return cardTypeCounts13[Card.TEN] + cardTypeCounts13[Card.JACK] + 
+                cardTypeCounts13[Card.QUEEN] + cardTypeCounts13[Card.KING];
+    }
+
+    /**
+     * Gets the index of the first occurrence of the specified card, or -1 if not present.
+     * Pre: card is present if cardCounts says so, so callers check it first.
+     */
+    private int indexOf(Card card)
+    {
+        int code = card.code();
+        for(int idx = cursor; idx < cards.length; idx++)
+            if(cards[idx] == code)
+                return idx;
+        return -1;
+    }
+
+    /**
+     * Adjusts every running count for a card removed from (+1.0) or inserted into (-1.0) the 
+     * shoe, in one pass over that card type's row of the delta table. Also updates 
+     * decksRemaining, as the shoe's size has changed.
      */
-    private void adjustRunningCounts(Card card, int direction)
+    private void adjustRunningCounts(int playerCardType, double direction)
     {
-        for(int countStrat = 0; countStrat < runningCounts.length; countStrat++)
-            if(direction == REMOVE)
-                runningCounts[countStrat] += CountStrategy.getAdjustment(countStrat, card);
-            else if(direction == INSERT)
-                runningCounts[countStrat] -= CountStrategy.getAdjustment(countStrat, card);
+        if(countDeltas.length != CountStrategy.countStrategies() * Card.COUNT_PLAYER_CARD_TYPES)
+            countDeltas = rules.buildCountDeltas();                  //strategy registered since
+        double[] deltas = countDeltas;
+        int countStrategies = deltas.length / Card.COUNT_PLAYER_CARD_TYPES;
+        if(runningCounts.length < countStrategies)
+            runningCounts = Arrays.copyOf(runningCounts, countStrategies);
+        int row = playerCardType * countStrategies;
+        for(int countStrat = 0; countStrat < countStrategies; countStrat++)
+            runningCounts[countStrat] += direction * deltas[row + countStrat];
+        decksRemaining = (double)size() / 52;
     }
 
 
@@ -0,0 +1,493 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// void playRound()                  --> plays a single round, no UI
+// void run(long countRounds)        --> plays the specified count of rounds
+// long countRounds()                --> count of rounds played so far
+// double roundsPerSecond()          --> throughput of rounds played so far
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if any Player's BetStrategy requires a UserInterface, (ie has no
+//                          CountStrategy)
+package ryan.blackjack.domain;
+
+import java.util.ArrayList;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+
+/**
+ * SimulationEngine class.
+ * Plays rounds under the same rules as GameLogic, but headless: every decision is made by a 
+ * DecisionPolicy, cards are always randomly dealt, and nothing is displayed. Used for long
+ * bankroll studies, where console I/O would otherwise limit throughput.
+ */
+public final class SimulationEngine
+{
+    //------------------------------------ Instance Attributes -------------------------------------
+    private Settings                settings;               //read, never modified
+    private RuleSet                 rules;                  //settings' table rules
+    private Shoe                    shoe;                   //the table's shoe
+    private ArrayList<Player>       players;                //array of Players at table
+    private DecisionPolicy          policy;                 //makes every Player decision
+    private RandomGenerator         random;                 //decides the dealer's peek
+    private DealerHand              dH;                     //the dealer's Hand
+    private long                    countRounds;            //count of rounds played
+    private long                    elapsedNanos;           //time spent in playRound()
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. The dealer's peek is decided by this engine's own, randomly seeded stream.
+     * @param settings the rules to play by. Must not be modified while playing.
+     * @param shoe the shoe to deal from. Owned by this engine while playing.
+     * @param players the Players at the table. Owned by this engine while playing.
+     * @param policy makes every Player decision
+     */
+    public SimulationEngine(Settings settings, Shoe shoe, ArrayList<Player> players,
+            DecisionPolicy policy)
+    {
+        this(settings, shoe, players, policy, new RandomStream(new Random().nextLong()));
+    }
+
+    /**
+     * Constructor
+     * @param settings the rules to play by. Must not be modified while playing.
+     * @param shoe the shoe to deal from. Owned by this engine while playing.
+     * @param players the Players at the table. Owned by this engine while playing.
+     * @param policy makes every Player decision
+     * @param random decides the dealer's peek, eg a RandomStream. Owned by this engine.
+     */
+    public SimulationEngine(Settings settings, Shoe shoe, ArrayList<Player> players,
+            DecisionPolicy policy, RandomGenerator random)
+    {
+        if(players.size() < GameLogic.COUNT_MIN_PLAYERS || 
+                players.size() > GameLogic.COUNT_MAX_PLAYERS)
+            throw new IllegalArgumentException("Invalid count of players: " + players.size());
+        for(Player player : players)
+            if(player.betStrategy() instanceof BetStrategyUserSpecified || 
+                    player.countStrategy() == CountStrategy.NONE)
+                throw new IllegalArgumentException("BetStrategy requires a UserInterface");
+        this.settings = settings;
+        this.rules = settings.ruleSet();
+        this.shoe = shoe;
+        this.players = players;
+        this.policy = policy;
+        this.random = random;
+    }
+
+    /**
+     * Returns the count of rounds played so far
+     * @return the count of rounds played so far
+     */
+    public long countRounds()
+    {
+        return countRounds;
+    }
+
+    /**
+     * Returns the Players at the table
+     * @return the Players at the table
+     */
+    public ArrayList<Player> players()
+    {
+        return players;
+    }
+
+    /**
+     * Plays a single round: initial bets, initial deal, player action, dealer action, settlement.
+     * Refills and shuffles the shoe at the end of the round if penetration exceeds its maximum.
+     */
+    public void playRound()
+    {
+        long start = System.nanoTime();
+
+        for(Player player : players)
+            player.placeInitialBet(shoe, rules);
+
+        dealInitialDeal();
+
+        //if any PlayerHand is not surrendered and not redeemed,  playerAction is required
+        boolean playerActionRequired = false;
+        for(Player player : players)
+        {
+            PlayerHand pH = player.hands().next();
+            if(!pH.isSurrendered() && !pH.isRedeemed())
+            {
+                playerActionRequired = true;
+                break;
+            }
+        }
+        if(playerActionRequired)
+            playerAction();
+
+        if(dealerActionRequired())
+            dealerAction();
+
+        settleInsurance();
+        settleBets();
+
+        if(shoe.penetration() > shoe.maxPenetration())
+        {
+            shoe.refill();
+            shoe.shuffle();
+        }
+
+        countRounds++;
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the count of rounds played per second, over all rounds played so far
+     * @return rounds played per second, or 0.0 if no rounds have been played
+     */
+    public double roundsPerSecond()
+    {
+        return elapsedNanos == 0 ? 0.0 : countRounds * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Plays the specified count of rounds
+     * @param countRounds count of rounds to play
+     */
+    public void run(long countRounds)
+    {
+        if(countRounds < 0)
+            throw new IllegalArgumentException("Invalid count of rounds: " + countRounds);
+        for(long round = 0; round < countRounds; round++)
+            playRound();
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Deals the next card from the shoe to the specified Hand
+     * @param hand the Hand to insert card into
+     */
+    private void dealCard(Hand hand)
+    {
+        Card card = shoe.next();
+        shoe.remove(card);
+        hand.insertCard(card);
+    }
+
+    /**
+     * Deals cards until dealer busts or stands. If dealer has peeked and confirmed not BlackJack,
+     * the next card is swapped for a random card that won't violate that peek.
+     * If dealer gets 2nd card and is not BJ, and all players have BJ, then return as dealer 
+     * knows they have lost.
+     */
+    private void dealerAction()
+    {
+        boolean allPlayerHandsAreBlackJack = true;
+        for(int pIdx = 0; pIdx < players.size() && allPlayerHandsAreBlackJack; pIdx++)
+        {
+            ListIterator<PlayerHand> itr = players.get(pIdx).hands();
+            while(itr.hasNext() && allPlayerHandsAreBlackJack)
+                allPlayerHandsAreBlackJack = itr.next().isBlackJack();
+        }
+
+        while(dH.score() < 17 || (dH.score() == 17 && dH.isSoft() && settings.dealerHitsSoft17()))
+        {
+            if(allPlayerHandsAreBlackJack && dH.countCards() == 2 && !dH.isBlackJack())
+                return;
+
+            if(dH.confirmedNotBlackJack())
+                if(dH.isSingle10())
+                    shoe.nextExcluding(Shoe.EXCLUDE_ACE);
+                else if(dH.isSingleAce())
+                    shoe.nextExcluding(Shoe.EXCLUDE_10_VALUE);
+
+            dealCard(dH);
+        }
+    }
+
+    /**
+     * Tests whether any PlayerHand is still to be compared against the dealer's hand
+     * @return whether dealer must play their hand
+     */
+    private boolean dealerActionRequired()
+    {
+        boolean dealerActionRequired = false;
+        dealerActionLoop:
+        for(Player player : players)
+        {
+            ListIterator<PlayerHand> itr = player.hands();
+            while(itr.hasNext())
+            {
+                PlayerHand pH = itr.next();
+                //if !bust & !surrenderd & !redeemed & !fiveCardCharlie & !fiveCard21
+                if(!(pH.isBust() || pH.isSurrendered() || pH.isRedeemed() ||  
+                        (pH.countCards() == 5 && (settings.fiveCardCharlieWins() ||  
+                        pH.score() == 21 && settings.fiveCard21Wins()))))     
+                {
+                    dealerActionRequired = true;
+                    break dealerActionLoop;
+                }
+            }
+        }
+
+        //if all players are BJ dealer can't be, no dealerAction required
+        boolean allPlayersBlackJack = true;
+        for(int pIdx = 0; pIdx < players.size() && allPlayersBlackJack; pIdx++)
+            if(!players.get(pIdx).hands().next().isBlackJack())
+                allPlayersBlackJack = false;
+        if(allPlayersBlackJack && (dH.confirmedNotBlackJack() || dH.score() < 10))
+            dealerActionRequired = false;
+
+        return dealerActionRequired;
+    }
+
+    /**
+     * Deals initial Deal at beginning of Round, in the same order as GameLogic.
+     * Gives 2 cards to each player, 1 card to dealer. 
+     * May offer insurance, even money, and/or surrender
+     */
+    private void dealInitialDeal()
+    {
+        if(settings.playerHandDealtFaceUp())
+            for(Player player : players)
+                dealCard(player.hands().next());
+
+        dH = new DealerHand();
+        dealCard(dH);                                    //Deals face Card
+
+        if(settings.playerHandDealtFaceUp())
+            for(Player player : players)
+                dealCard(player.hands().next());
+
+        if(dH.score() == 11)                             //if Dealer has [A]
+        {
+            if(settings.playerHandDealtFaceUp() && settings.dealerOffersEvenMoney())
+                offerEvenMoney();
+
+            boolean anyPlayerHandsNotRedeemed = false;
+            for(Player player : players)
+                if(!player.hands().next().isRedeemed())
+                {
+                    anyPlayerHandsNotRedeemed = true;
+                    break;
+                }
+
+            if(settings.dealerOffersInsurance() && 
+                    (!settings.playerHandDealtFaceUp() || anyPlayerHandsNotRedeemed))
+                offerInsurance();
+        }
+
+        if(!settings.playerHandDealtFaceUp())
+        {
+            for(Player player : players)
+                dealCard(player.hands().next());
+            for(Player player : players)
+                dealCard(player.hands().next());
+
+            if(dH.isSingleAce() && settings.dealerOffersEvenMoney())
+                offerEvenMoney();
+        }
+
+        if(settings.surrenderType() == GameLogic.SURRENDER_TYPE_EARLY)
+            offerSurrender();
+
+        boolean dealerActionRequired = false;
+        for(Player player : players)
+        {
+            PlayerHand pH = player.hands().next();
+            if(!pH.isSurrendered() && !pH.isRedeemed())
+            {
+                dealerActionRequired = true;
+                break;
+            }
+        }
+
+        if(dealerActionRequired && settings.dealerDealtHoleCard() && 
+                (dH.score() == 10 || dH.score() == 11))
+            peekAtDealerHoleCard();
+
+        if(settings.surrenderType() == GameLogic.SURRENDER_TYPE_LATE && !dH.isBlackJack())
+            offerSurrender();
+    }
+
+    /**
+     * Offers Even Money to each Player that has BlackJack
+     * Pre: Dealer has single Ace && dealerOffersEvenMoney()
+     */
+    private void offerEvenMoney()
+    {
+        for(Player player : players)
+        {
+            PlayerHand pH = player.hands().next();
+            if(pH.isBlackJack() && policy.acceptEvenMoney(shoe, dH, pH))
+                player.redeemHand(pH);
+        }
+    }
+
+    /**
+     * Offers Insurance to each player whose sole hand is not redeemed. 
+     * Insurance taken is the maximum wager, half the hand's bet.
+     * Pre: Dealer has single Ace
+     */
+    private void offerInsurance()
+    {
+        for(Player player : players)
+        {
+            PlayerHand pH = player.hands().next();
+            if(!pH.isRedeemed() && policy.takeInsurance(shoe, dH, pH))
+                player.takeInsurance(pH.bet() / 2.0);
+        }
+    }
+
+    /**
+     * Offers Surrender to each player that has not taken Even Money or Insurance & !isBJ
+     */
+    private void offerSurrender()
+    {
+        for(Player player : players)
+        {
+            PlayerHand pH = player.hands().next();
+            if(player.insurance() == 0.0 && !pH.isRedeemed() && !pH.isBlackJack() &&
+                    policy.surrender(shoe, dH, pH))
+                player.surrenderHand();
+        }
+    }
+
+    /**
+     * Dealer Peek at Hole Card. Whether it reveals BJ is decided by the shoe's probabilities.
+     * If it does, 2nd card is given to dealer.
+     * Pre: dealerActionRequired && dealerDealtHoleCard() && dealer score = 10,11
+     *      && dealer count cards = 1
+     */
+    private void peekAtDealerHoleCard()
+    {
+        boolean dealerIsBlackJack = dH.score() == 10 ? 
+                random.nextDouble() < shoe.probabilityAce() : 
+                random.nextDouble() < shoe.probability10Value();
+        if(dealerIsBlackJack)
+        {
+            Card c;
+            if(dH.score() == 10)
+                c = Card.of(Card.PLAYER_ACE, shoe.probableSuit(Card.PLAYER_ACE, Shoe.REMOVE));
+            else
+                c = Card.of(Card.TEN, shoe.probableSuit(Card.TEN, Shoe.REMOVE));
+            shoe.remove(c);
+            dH.insertCard(c);
+        }
+        else
+            dH.confirmNotBlackJack();
+    }
+
+    /**
+     * Plays each Player's hands until they bust, stand, get BJ, 5CardCharlie or 5Card21.
+     * If dealer has peeked and revealed blackJack, hands that can't be BJ are not played.
+     */
+    private void playerAction()
+    {
+        for(Player player : players)
+        {
+            if(!player.hands().next().isHittable())
+                continue;
+
+            ListIterator<PlayerHand> handItr = player.hands();
+            while(handItr.hasNext())
+            {
+                PlayerHand pH = handItr.next();
+
+                if(pH.countCards() == 1)           //if this the 2nd of a pair of split Hands
+                    dealCard(pH);
+
+                while(pH.isHittable())             //score < 21, !srrd, !rdmd, !dd, !spltAc
+                {
+                    if(dH.isBlackJack() && !(pH.isBlackJack() || pH.isPairTensOrAces()))
+                        break;
+
+                    String action = policy.action(shoe, dH, pH);
+                    if(action.equals(Option.STAND))
+                        break;
+                    else if(action.equals(Option.HIT))
+                    {
+                        dealCard(pH);
+                        if(pH.isBust())
+                            break;
+                        else if(pH.countCards() == 5)
+                        {
+                            if(pH.score() == 21 && settings.fiveCard21Wins())
+                                player.redeemHand(pH);
+                            else if(settings.fiveCardCharlieWins())
+                                player.redeemHand(pH);
+                        }
+                    }
+                    else if(action.equals(Option.SPLIT) && pH.isSplittable())
+                    {
+                        handItr.add(player.splitHand(pH)); //inserts split hand after current
+                        handItr.previous();                //retreat pointer to before added Hand
+                        dealCard(pH);                      //only get 2nd card for 1st of split pair
+                    }
+                    else if(action.equals(Option.DOUBLE_DOWN) && pH.isDoublable())
+                    {
+                        Card finalCard = shoe.next();
+                        shoe.remove(finalCard);
+                        player.doubleDownHand(pH, pH.bet(), finalCard);
+                    }
+                    else
+                        throw new IllegalStateException("Invalid action: " + action);
+                }
+
+                //If player split then got blackjack
+                if(pH.isBlackJack() && dH.isSingleAce() &&
+                        !dH.confirmedNotBlackJack() && settings.dealerOffersEvenMoney() &&
+                        settings.splitBlackJackROI() > settings.blackJackROI() &&
+                        policy.acceptEvenMoney(shoe, dH, pH))
+                    player.redeemHand(pH);
+            }
+        }
+    }
+
+    /**
+     * Settles Insurance Wagers for each player that took insurance
+     */
+    private void settleInsurance()
+    {
+        for(Player player : players)
+            if(player.insurance() > 0.0)
+            {
+                if(dH.isBlackJack())
+                    player.winInsurance();
+                else
+                    player.loseInsurance();
+            }
+    }
+
+    /**
+     * For each playerHand !bust, !surrendered, !5CardCharlie, & !5Card21, compare against dealer
+     */
+    private void settleBets()
+    {
+        for(Player player : players)
+        {
+            ListIterator<PlayerHand> itr = player.hands();
+            while(itr.hasNext())
+            {
+                PlayerHand pH = itr.next();
+                if(pH.isBust() || pH.isRedeemed() || pH.isSurrendered())
+                    continue;
+
+                if(pH.isBlackJack())
+                {
+                    if(!dH.isBlackJack())
+                        player.winHand(pH, settings);
+                    else if(!settings.dealerWinsTies())
+                        player.pushHand(pH);
+                }
+                else if(dH.isBust())
+                    player.winHand(pH, settings);
+                else if(dH.isBlackJack())
+                    continue;
+                else if(pH.score() > dH.score())
+                    player.winHand(pH, settings);
+                else if(pH.score() == dH.score() && !settings.dealerWinsTies())
+                    player.pushHand(pH);
+            }
+        }
+    }
+}
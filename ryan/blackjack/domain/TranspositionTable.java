@@ -0,0 +1,414 @@
+//--------------------------------------------------------------------------------------------------
+//Andrew Ryan
+//2014 Mar
+//Optimal Play BlackJack app
+//--------------------------------------------------------------------------------------------------
+// ****************************************PUBLIC OPERATIONS****************************************
+// double get(long key)              --> stored ROI, or MISS if key not present
+// void put(long key, double roi)    --> inserts or replaces ROI for key. May evict another entry
+// void put(long key, double roi, int cost)
+//                                   --> as put(), cost of evaluating roi guides eviction
+// void clear()                      --> O(1), removes all entries
+// long hits(), misses(), evictions()--> counts since this table was created
+// static int capacityFor(long bytes)--> max capacity of a table within a memory budget
+
+// *********************************************ERRORS**********************************************
+// IllegalArgumentException if a capacity or memory budget is invalid
+// IllegalStateException if the table is used after its EvaluationSession is closed
+package ryan.blackjack.domain;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transposition table mapping a Hand's hash key to its ROI.
+ * Open addressing with linear probing over a single buffer of fixed-size slots, so neither get()
+ * nor put() box or allocate. The buffer is allocated by an EvaluationSession, on or off the Java
+ * heap. Each slot is stamped with the generation it was written in, so clear() simply starts a
+ * new generation rather than touching every slot.
+ * The table grows until it reaches its maximum capacity. It then stays within that memory bound
+ * by evicting entries with the clock algorithm: get() marks an entry as referenced, and the clock
+ * hand passes over referenced entries, clearing references as it goes. Of the next few
+ * unreferenced entries the clock hand reaches, the cheapest to re-evaluate is evicted, as a chess
+ * engine prefers to keep deep subtrees. The cost of each entry passed over is halved, so that
+ * an expensive entry that is no longer read is eventually evicted too.
+ */
+public final class TranspositionTable
+{
+    //----------------------------------------- Constants ------------------------------------------
+    public static final double MISS = Double.NaN;        //returned by get() if key not present
+                                                         // test with Double.isNaN(), never ==
+    public static final int    BYTES_PER_SLOT = 24;      //key, roi, generation, cost|referenced
+    public static final int    MIN_CAPACITY = 16;        //smallest maxCapacity of capacityFor()
+    private static final int   KEY = 0;                  //offset of each field within a slot
+    private static final int   ROI = 8;
+    private static final int   GENERATION = 16;
+    private static final int   COST = 20;                //cost, or REFERENCED if slot has been read
+    private static final int   REFERENCED = 0x80000000;  //  since the clock hand passed it
+    private static final long  HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;  //Fibonacci hashing
+    private static final int   MAX_LOAD_PERCENT = 50;    //resize when more than half full
+    private static final int   EVICTION_CANDIDATES = 4;  //unreferenced entries compared per evict
+
+    //------------------------------------------ Defaults ------------------------------------------
+    public static final int    DEFAULT_CAPACITY = 1 << 12;
+    public static final int    DEFAULT_MAX_CAPACITY = 1 << 26;  //slots fit in a single buffer
+
+    //------------------------------------ Instance Attributes -------------------------------------
+    private EvaluationSession session;  //owns slots
+    private ByteBuffer slots;        //BYTES_PER_SLOT bytes per slot. In use only if its 
+                                     // generation == generation. Cost is halved as it ages.
+                                     // null once session closes
+    private int      capacity;       //count of slots
+    private int      generation;     //current generation. Incremented by clear()
+    private int      shift;          //64 - log2(capacity), selects the top bits of the hash
+    private int      size;           //count of slots in use
+    private int      maxSize;        //size at which table is resized or an entry evicted
+    private int      maxCapacity;    //count of slots beyond which table evicts rather than grows
+    private int      clockHand;      //next slot to consider for eviction
+    private long     hits;           //count of get() that found its key
+    private long     misses;         //count of get() that did not
+    private long     evictions;      //count of entries evicted to stay within maxCapacity
+
+    //-------------------------------------- Class Behaviour ---------------------------------------
+    /**
+     * Returns the largest maximum capacity of a table whose slots fit in a memory budget. 
+     * A full table is only half full of entries, as probing needs free slots.
+     * @param bytes memory budget of the table
+     * @return the largest power of 2 count of slots that fits in bytes
+     */
+    public static int capacityFor(long bytes)
+    {
+        if(bytes < (long)MIN_CAPACITY * BYTES_PER_SLOT)
+            throw new IllegalArgumentException("Memory budget too small: " + bytes + " bytes");
+        return (int)Math.min(DEFAULT_MAX_CAPACITY, Long.highestOneBit(bytes / BYTES_PER_SLOT));
+    }
+
+    //------------------------------------- Instance Behaviour -------------------------------------
+    /**
+     * Constructor. Creates an empty table with the default capacity, on the heap
+     */
+    public TranspositionTable()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor. Creates an empty table, on the heap
+     * @param capacity initial count of slots. Rounded up to a power of 2. Grows as required.
+     */
+    public TranspositionTable(int capacity)
+    {
+        this(capacity, DEFAULT_MAX_CAPACITY, new EvaluationSession(false));
+    }
+
+    /**
+     * Constructor. Creates an empty, memory-bounded table
+     * @param capacity initial count of slots. Rounded up to a power of 2. Grows as required.
+     * @param maxCapacity maximum count of slots. Rounded up to a power of 2. Once reached,
+     *                    entries are evicted rather than the table growing.
+     * @param session allocates the table's storage. The table throws if used once it closes.
+     */
+    public TranspositionTable(int capacity, int maxCapacity, EvaluationSession session)
+    {
+        if(capacity < 2 || capacity > DEFAULT_MAX_CAPACITY)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        if(maxCapacity < capacity || maxCapacity > DEFAULT_MAX_CAPACITY)
+            throw new IllegalArgumentException("Invalid maxCapacity: " + maxCapacity);
+        this.session = session;
+        allocate(Integer.highestOneBit(capacity - 1) << 1);
+        session.register(this::invalidate);
+        this.maxCapacity = Integer.highestOneBit(maxCapacity - 1) << 1;
+        generation = 1;
+    }
+
+    /**
+     * Removes all entries. O(1), existing slots are invalidated by starting a new generation.
+     * Hit, miss and eviction counts are kept.
+     */
+    public void clear()
+    {
+        checkValid();
+        size = 0;
+        if(++generation == 0)                         //wrapped, so old stamps could become valid
+        {
+            for(int slot = 0; slot < capacity; slot++)
+                slots.putInt(slot * BYTES_PER_SLOT + GENERATION, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Returns the count of entries evicted to stay within the maximum capacity
+     * @return the count of entries evicted since this table was created
+     */
+    public long evictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Gets the ROI stored for the specified key, in a single probe sequence
+     * @param key hash key of a Hand
+     * @return the stored ROI, or MISS if this table does not contain the key
+     */
+    public double get(long key)
+    {
+        checkValid();
+        ByteBuffer slots = this.slots;
+        int mask = capacity - 1;
+        for(int slot = slot(key); generation(slot) == generation; slot = (slot + 1) & mask)
+        {
+            int offset = slot * BYTES_PER_SLOT;
+            if(slots.getLong(offset + KEY) == key)
+            {
+                slots.putInt(offset + COST, slots.getInt(offset + COST) | REFERENCED);
+                hits++;
+                return slots.getDouble(offset + ROI);
+            }
+        }
+        misses++;
+        return MISS;
+    }
+
+    /**
+     * Returns the count of get() calls that found their key
+     * @return the count of hits since this table was created
+     */
+    public long hits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the count of get() calls that did not find their key
+     * @return the count of misses since this table was created
+     */
+    public long misses()
+    {
+        return misses;
+    }
+
+    /**
+     * Stores the ROI for the specified key, replacing any existing ROI for that key, as the
+     * cheapest kind of entry to re-evaluate.
+     * If the table is full and at its maximum capacity, another entry is evicted.
+     * @param key hash key of a Hand
+     * @param roi the ROI to store
+     */
+    public void put(long key, double roi)
+    {
+        put(key, roi, 0);
+    }
+
+    /**
+     * Stores the ROI for the specified key, replacing any existing ROI for that key.
+     * If the table is full and at its maximum capacity, another entry is evicted.
+     * @param key hash key of a Hand
+     * @param roi the ROI to store
+     * @param cost cost of evaluating roi, eg count of states in its subtree. Entries of least
+     *             cost are evicted first.
+     */
+    public void put(long key, double roi, int cost)
+    {
+        checkValid();
+        int mask = capacity - 1;
+        int slot = slot(key);
+        for(; generation(slot) == generation; slot = (slot + 1) & mask)
+            if(slots.getLong(slot * BYTES_PER_SLOT + KEY) == key)
+            {
+                int offset = slot * BYTES_PER_SLOT;
+                slots.putDouble(offset + ROI, roi);
+                slots.putInt(offset + COST, 
+                        (cost & ~REFERENCED) | (slots.getInt(offset + COST) & REFERENCED));
+                return;
+            }
+
+        if(size >= maxSize)
+        {
+            if(capacity < maxCapacity)
+                resize();
+            else
+                evict();
+            mask = capacity - 1;                             //slots may have moved
+            for(slot = slot(key); generation(slot) == generation; slot = (slot + 1) & mask)
+                ;
+        }
+
+        write(slot, key, roi, (cost & ~REFERENCED) | REFERENCED);
+        size++;
+    }
+
+    /**
+     * Returns the count of entries in this table
+     * @return the count of entries in this table
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    //--------------------------------- Private Instance Behaviour ---------------------------------
+
+    /**
+     * Throws if this table has been invalidated, as its storage may have been freed
+     */
+    private void checkValid()
+    {
+        if(slots == null)
+            throw new IllegalStateException("Table's evaluation session is closed");
+    }
+
+    /**
+     * Drops this table's storage as its session closes. Any further use throws.
+     */
+    private void invalidate()
+    {
+        slots = null;
+        size = 0;
+    }
+
+    /**
+     * Allocates empty slots of the specified capacity
+     * @param capacity count of slots. Must be a power of 2
+     */
+    private void allocate(int capacity)
+    {
+        slots = session.allocate((long)capacity * BYTES_PER_SLOT);
+        this.capacity = capacity;
+        clockHand = 0;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        maxSize = (int)((long)capacity * MAX_LOAD_PERCENT / 100);
+    }
+
+    /**
+     * Doubles this table's capacity, re-inserting all current entries
+     */
+    private void resize()
+    {
+        ByteBuffer oldSlots = slots;
+        int        oldCapacity = capacity;
+
+        allocate(capacity * 2);
+        size = 0;
+        for(int offset = 0; offset < oldCapacity * BYTES_PER_SLOT; offset += BYTES_PER_SLOT)
+            if(oldSlots.getInt(offset + GENERATION) == generation)
+            {
+                long key = oldSlots.getLong(offset + KEY);
+                int mask = capacity - 1;
+                int slot = slot(key);
+                while(generation(slot) == generation)
+                    slot = (slot + 1) & mask;
+                write(slot, key, oldSlots.getDouble(offset + ROI), 
+                        oldSlots.getInt(offset + COST));
+                size++;
+            }
+        session.release(oldSlots);
+    }
+
+    /**
+     * Evicts a single entry using the clock algorithm. Entries read since the clock hand last
+     * passed are given a second chance. Of the next EVICTION_CANDIDATES unreferenced entries, the
+     * one of least cost is evicted, and the cost of the others is halved.
+     * Pre: table has at least 1 entry.
+     */
+    private void evict()
+    {
+        int mask = capacity - 1;
+        int victim = -1;
+        for(int countCandidates = 0; countCandidates < EVICTION_CANDIDATES; 
+                clockHand = (clockHand + 1) & mask)
+        {
+            if(generation(clockHand) != generation)
+                continue;
+            int cost = slots.getInt(clockHand * BYTES_PER_SLOT + COST);
+            if((cost & REFERENCED) != 0)
+            {
+                slots.putInt(clockHand * BYTES_PER_SLOT + COST, cost & ~REFERENCED);
+                continue;
+            }
+            if(clockHand == victim)                          //fewer entries than candidates
+                break;
+            if(victim < 0 || cost < slots.getInt(victim * BYTES_PER_SLOT + COST))
+            {
+                if(victim >= 0)
+                    age(victim);
+                victim = clockHand;
+            }
+            else
+                age(clockHand);
+            countCandidates++;
+        }
+        remove(victim);
+        evictions++;
+    }
+
+    /**
+     * Removes the entry in the specified slot. Later entries in the same probe sequence are
+     * shifted back into the gap, so that get() never stops short of them.
+     * @param slot an occupied slot
+     */
+    private void remove(int slot)
+    {
+        int mask = capacity - 1;
+        int gap = slot;
+        for(int next = (gap + 1) & mask; generation(next) == generation; next = (next + 1) & mask)
+        {
+            int offset = next * BYTES_PER_SLOT;
+            long key = slots.getLong(offset + KEY);
+            int home = slot(key);
+            //move next into gap only if gap lies cyclically between next's home slot and next
+            if(((next - home) & mask) >= ((next - gap) & mask))
+            {
+                write(gap, key, slots.getDouble(offset + ROI), slots.getInt(offset + COST));
+                gap = next;
+            }
+        }
+        slots.putInt(gap * BYTES_PER_SLOT + GENERATION, 0);  //0 is never the current generation
+        size--;
+    }
+
+    /**
+     * Halves the cost of the entry in the specified slot, as it has been passed over for eviction
+     * @param slot an occupied, unreferenced slot
+     */
+    private void age(int slot)
+    {
+        int offset = slot * BYTES_PER_SLOT + COST;
+        slots.putInt(offset, slots.getInt(offset) >>> 1);
+    }
+
+    /**
+     * Gets the generation the specified slot was written in
+     * @param slot a slot
+     * @return the slot's generation. The slot is in use only if this is the current generation.
+     */
+    private int generation(int slot)
+    {
+        return slots.getInt(slot * BYTES_PER_SLOT + GENERATION);
+    }
+
+    /**
+     * Gets the first slot to probe for the specified key
+     * @param key hash key of a Hand
+     * @return the first slot to probe
+     */
+    private int slot(long key)
+    {
+        return (int)((key * HASH_MULTIPLIER) >>> shift);
+    }
+
+    /**
+     * Writes an entry into the specified slot, in the current generation
+     * @param slot the slot to write
+     * @param key hash key of a Hand
+     * @param roi the ROI of the Hand
+     * @param cost the cost of evaluating roi, with REFERENCED set if it has been read
+     */
+    private void write(int slot, long key, double roi, int cost)
+    {
+        int offset = slot * BYTES_PER_SLOT;
+        slots.putLong(offset + KEY, key);
+        slots.putDouble(offset + ROI, roi);
+        slots.putInt(offset + GENERATION, generation);
+        slots.putInt(offset + COST, cost);
+    }
+}
@@ -14,6 +14,8 @@ import java.util.Scanner;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import ryan.blackjack.dataAccess.RuleSweepDA;
+import ryan.blackjack.dataAccess.SettingsDA;
 import ryan.blackjack.domain.BetStrategy;
 import ryan.blackjack.domain.BetStrategyConstantRisk;
 import ryan.blackjack.domain.BetStrategyDiscreteBinary;
@@ -29,6 +31,8 @@ import ryan.blackjack.domain.Option;
 import ryan.blackjack.domain.Player;
 import ryan.blackjack.domain.PlayerHand;
 import ryan.blackjack.domain.Recommendations;
+import ryan.blackjack.domain.RuleSet;
+import ryan.blackjack.domain.RuleSweep;
 import ryan.blackjack.domain.Settings;
 import ryan.blackjack.domain.Shoe;
 
@@ -47,11 +51,117 @@ public final class CommandLineUI implements UserInterface
     //-------------------------------------- Class Behaviour ---------------------------------------
     /**
      * Program starts here
-     * @param args Command line arguments
+     * @param args Command line arguments. Empty to play, or "sweep" for a batch rule sweep
      */
     public static void main(String[] args)
     {
-        new CommandLineUI().run();                        // Instantiates system objects
+        if(args.length > 0 && args[0].equals("sweep"))
+            sweep(args);
+        else
+            new CommandLineUI().run();                    // Instantiates system objects
+    }
+
+    /**
+     * Runs a batch rule sweep over a grid of rule variants of the saved settings, and writes a
+     * results table. Combinations in an existing results table are not evaluated again.
+     * Usage: sweep FILE.csv [decks=1,2,6,8] [h17=false,true] [das=false,true] 
+     *        [surrender=none,late,early] [splits=1,3] [bj=1.5,1.2] [infinite]
+     * @param args Command line arguments, starting with "sweep"
+     */
+    private static void sweep(String[] args)
+    {
+        if(args.length < 2)
+        {
+            System.err.println("Usage: sweep FILE.csv [decks=1,2,6,8] [h17=false,true] " +
+                    "[das=false,true] [surrender=none,late,early] [splits=1,3] [bj=1.5,1.2] " +
+                    "[infinite]");
+            return;
+        }
+
+        RuleSweep sweep = new RuleSweep(SettingsDA.getInstance().loadSettings());
+        try
+        {
+            for(int aIdx = 2; aIdx < args.length; aIdx++)
+            {
+                String[] dimension = args[aIdx].split("=", 2);
+                String[] values = dimension.length == 2 ? dimension[1].split(",") : new String[0];
+                switch(dimension[0])
+                {
+                    case "decks":
+                        int[] decks = new int[values.length];
+                        for(int vIdx = 0; vIdx < values.length; vIdx++)
+                            decks[vIdx] = Integer.parseInt(values[vIdx]);
+                        sweep.setDeckCounts(decks);
+                        break;
+                    case "h17":
+                        sweep.setDealerHitsSoft17(parseBooleans(values));
+                        break;
+                    case "das":
+                        sweep.setDoubleAfterSplit(parseBooleans(values));
+                        break;
+                    case "surrender":
+                        int[] types = new int[values.length];
+                        for(int vIdx = 0; vIdx < values.length; vIdx++)
+                            types[vIdx] = values[vIdx].equals("none") ? 
+                                    GameLogic.SURRENDER_TYPE_NONE : values[vIdx].equals("late") ?
+                                    GameLogic.SURRENDER_TYPE_LATE : values[vIdx].equals("early") ?
+                                    GameLogic.SURRENDER_TYPE_EARLY : INVALID;
+                        sweep.setSurrenderTypes(types);
+                        break;
+                    case "splits":
+                        int[] times = new int[values.length];
+                        for(int vIdx = 0; vIdx < values.length; vIdx++)
+                            times[vIdx] = Integer.parseInt(values[vIdx]);
+                        sweep.setTimesSplittable(times);
+                        break;
+                    case "bj":
+                        double[] rois = new double[values.length];
+                        for(int vIdx = 0; vIdx < values.length; vIdx++)
+                            rois[vIdx] = Double.parseDouble(values[vIdx]);
+                        sweep.setBlackJackROIs(rois);
+                        break;
+                    case "infinite":
+                        sweep.setEvaluateInfiniteDeck(true);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown dimension: " + dimension[0]);
+                }
+            }
+        }
+        catch(IllegalArgumentException iae)                 //includes NumberFormatException
+        {
+            System.err.println("Invalid sweep argument. " + iae.getMessage());
+            return;
+        }
+
+        int countLoaded = RuleSweepDA.getInstance().loadResults(args[1], sweep);
+        long start = System.nanoTime();
+        ArrayList<RuleSweep.Cell> cells = sweep.run();
+        int countEvaluated = 0;
+        for(RuleSweep.Cell cell : cells)
+            if(!cell.isCached())
+                countEvaluated++;
+        System.out.println(cells.size() + " combinations: " + countEvaluated + " evaluated, " +
+                (cells.size() - countEvaluated) + " cached (" + countLoaded + " loaded) in " +
+                (System.nanoTime() - start) / 1000000 + "ms");
+        if(!RuleSweepDA.getInstance().saveResults(cells, args[1]))
+            System.err.println("Results could not be saved to " + args[1]);
+    }
+
+    /**
+     * Parses a list of booleans, strictly
+     * @param values each "true" or "false"
+     * @return the parsed values
+     */
+    private static boolean[] parseBooleans(String[] values)
+    {
+        boolean[] booleans = new boolean[values.length];
+        for(int vIdx = 0; vIdx < values.length; vIdx++)
+            if(values[vIdx].equals("true") || values[vIdx].equals("false"))
+                booleans[vIdx] = Boolean.parseBoolean(values[vIdx]);
+            else
+                throw new IllegalArgumentException("Not true or false: " + values[vIdx]);
+        return booleans;
     }
 
     //------------------------------------------ Defaults ------------------------------------------
@@ -336,6 +446,40 @@ public final class CommandLineUI implements UserInterface
         System.out.println();
     }
 
+    /**
+     * Displays the player advantage given up by total-dependent play at this point in the game
+     * @param totalDependentAdvantage advantage if every hand with the same total is played alike
+     * @param compositionDependentAdvantage advantage if every hand is played by its cards
+     */
+    @Override
+    public void displayTotalDependentCost(double totalDependentAdvantage, 
+            double compositionDependentAdvantage)
+    {
+        System.out.print("Table above is total-dependent. Composition-dependent play gains: ");
+        System.out.printf("%7.5f%% (player advantage %7.5f%%)", 
+                (compositionDependentAdvantage - totalDependentAdvantage) * 100.0,
+                compositionDependentAdvantage * 100.0);
+        System.out.println();
+    }
+
+    /**
+     * Displays how effective the transposition tables of the ROIEvaluators have been
+     * @param hits count of lookups that found their state
+     * @param misses count of lookups that did not
+     * @param evictions count of entries evicted to stay within the memory budget
+     * @param megabytes the memory budget of the tables
+     */
+    @Override
+    public void displayTableStats(long hits, long misses, long evictions, int megabytes)
+    {
+        long lookups = Math.max(hits + misses, 1);
+        System.out.printf("Tables (%d MB): %d lookups, %5.2f%% hits, %5.2f%% misses, " +
+                "%d evictions (%5.2f%% of misses)", megabytes, hits + misses, 
+                hits * 100.0 / lookups, misses * 100.0 / lookups, evictions, 
+                evictions * 100.0 / Math.max(misses, 1));
+        System.out.println();
+    }
+
     /**
      * Displays a message indicating dealer is BlackJack therefore player's non-BJ hand loses
      * @param pIdx the player concerned
@@ -450,7 +594,8 @@ public final class CommandLineUI implements UserInterface
             {
                 System.out.println("           Flat");
                 System.out.print("           Bet Size: ");
-                System.out.printf("%15s\n", "$" + fmt2.format(player.betStrategy().getBet(0)));
+                System.out.printf("%15s\n", "$" + 
+                        fmt2.format(player.betStrategy().getBet(0, settings.ruleSet())));
             }
             else if(player.betStrategy() instanceof BetStrategyRamped)
             {
@@ -544,8 +689,8 @@ public final class CommandLineUI implements UserInterface
             if(settings.showBankHistory())
             {
             	NumberFormat fmt = NumberFormat.getCurrencyInstance();
-            	TreeMap<Integer,Double> bankHistory = player.bankHistory();
-            	for(Entry<Integer,Double> dataPoint : bankHistory.entrySet())
+            	TreeMap<Long,Double> bankHistory = player.bankHistory();
+            	for(Entry<Long,Double> dataPoint : bankHistory.entrySet())
             	{
             		System.out.println(dataPoint.getKey() + ": " +  fmt.format(dataPoint.getValue()));
             	}
@@ -871,7 +1016,7 @@ public final class CommandLineUI implements UserInterface
 
             //print the count of cardTypes13 for this Suit
             for(int type = Card.TWO; type <= Card.PLAYER_ACE; type++)
-                System.out.printf("%3d|", shoe.cardCount(new Card(type,suit)));
+                System.out.printf("%3d|", shoe.cardCount(Card.of(type,suit)));
             System.out.println();
         }
         System.out.println("\nShoe size: " + shoe.size() + " / " + shoe.capacity());
@@ -912,6 +1057,7 @@ public final class CommandLineUI implements UserInterface
     public BetStrategy getBetStrategy(int pIdx)
     {
         int betStrat;
+        RuleSet rules = gL.getSettings().ruleSet();
         while(true)
         {
             betStrat = (int)getConsoleLong("Player#" + (pIdx + 1) + " Bet Strategy: ");
@@ -926,12 +1072,12 @@ public final class CommandLineUI implements UserInterface
                 return new BetStrategyUserSpecified(this, pIdx);
             case BetStrategy.FLAT:
                 double flatBet = -1.0;
-                while(flatBet < BetStrategy.minBet() || flatBet > BetStrategy.maxBet())
+                while(flatBet < rules.minBet() || flatBet > rules.maxBet())
                 {
                     flatBet = getConsoleDouble("Player#" + (pIdx + 1) + " Flat Bet Size: $");
-                    if(flatBet < BetStrategy.minBet() || flatBet > BetStrategy.maxBet())
-                        System.out.println("Bet must be between $" + BetStrategy.minBet() + 
-                                " and $" + BetStrategy.maxBet());
+                    if(flatBet < rules.minBet() || flatBet > rules.maxBet())
+                        System.out.println("Bet must be between $" + rules.minBet() + 
+                                " and $" + rules.maxBet());
                 }
                 return new BetStrategyFlat(flatBet);
             case BetStrategy.RAMPED:
@@ -942,7 +1088,7 @@ public final class CommandLineUI implements UserInterface
                 double rampFactor = 
                         getConsoleDouble("Player#" + (pIdx + 1) + " Ramp Factor: ");
                 return new BetStrategyRamped(trueCountThreshold, 
-                        Math.max(BetStrategy.minBet(), minRampedBet), rampFactor);
+                        Math.max(rules.minBet(), minRampedBet), rampFactor);
             case BetStrategy.DISCRETE_BINARY:
                 trueCountThreshold = 
                         getConsoleDouble("Player#" + (pIdx + 1) + " True Count Threshold: ");
@@ -1028,7 +1174,7 @@ public final class CommandLineUI implements UserInterface
                     try
                     {
                         cardSuit = cardSuit(token2);
-                        proposedCard = new Card(cardType, cardSuit);
+                        proposedCard = Card.of(cardType, cardSuit);
                         if(shoe.contains(proposedCard)){
                         	scan.close();
                             return proposedCard;
@@ -1055,7 +1201,7 @@ public final class CommandLineUI implements UserInterface
                     {
                         cardSuit = shoe.probableSuit(cardType, Shoe.REMOVE);
                         scan.close();
-                        return new Card(cardType, cardSuit);
+                        return Card.of(cardType, cardSuit);
                     }
                     catch (IllegalStateException ise)
                     {
@@ -1535,7 +1681,7 @@ public final class CommandLineUI implements UserInterface
 
                     if(countArgs == 3)             //if suit indicated, insert/remove only this suit
                     {
-                        Card card = new Card(cardType, cardSuit(args[2]));
+                        Card card = Card.of(cardType, cardSuit(args[2]));
                         if(countCard < 0)                 //removal request
                             for(int i = 0; i > countCard; i--)
                                 shoe.remove(card);
@@ -1549,13 +1695,13 @@ public final class CommandLineUI implements UserInterface
                             for(int i = 0; i > countCard; i--)
                             {
                                 cardSuit = shoe.probableSuit(cardType, Shoe.REMOVE);
-                                shoe.remove(new Card(cardType, cardSuit));
+                                shoe.remove(Card.of(cardType, cardSuit));
                             }
                         else if(countCard > 0)            //insert request
                             for(int i = 0; i < countCard; i++)
                             {
                                 cardSuit = shoe.probableSuit(cardType, Shoe.INSERT);
-                                shoe.insert(new Card(cardType, cardSuit));
+                                shoe.insert(Card.of(cardType, cardSuit));
                             }
                     }
                 }
@@ -1800,10 +1946,21 @@ public final class CommandLineUI implements UserInterface
             System.out.println("37. Toggle Five Card 21 wins (" + s.fiveCard21Wins() + ")");
             System.out.println("38. Set Five Card 21 Jackpot ($" + s.fiveCard21Amount() + ")");
             System.out.println("39. Toggle show bank history after game (" + s.showBankHistory() + ")");
+            System.out.println("\n-- Evaluation --");
+            System.out.println("40. Toggle Evaluate advantage in parallel (" + 
+                    s.evaluateAdvantageInParallel() + ")");
+            System.out.println("41. Toggle Evaluate advantage for an infinite deck (" + 
+                    s.evaluateInfiniteDeck() + ")");
+            System.out.println("42. Toggle Evaluate total-dependent play (" + 
+                    s.evaluateTotalDependent() + ")");
+            System.out.println("43. Set Evaluation table memory (" + s.tableMemoryMegabytes() + 
+                    " MB)");
+            System.out.println("44. Toggle Evaluate with off-heap tables (" + 
+                    s.evaluateOffHeap() + ")");
             System.out.println("\n-- Admin --");
-            System.out.println("40. Save Settings");
-            System.out.println("41. Revert to System default settings");
-            System.out.println("42. Help");
+            System.out.println("45. Save Settings");
+            System.out.println("46. Revert to System default settings");
+            System.out.println("47. Help");
             System.out.println(lineBreak('-', 80));
 
             choice = (int)getConsoleLong("Choice: ");
@@ -2121,15 +2278,40 @@ public final class CommandLineUI implements UserInterface
                 	gL.toggleShowBankHistoryAfterGame();
                 	break;
                 case 40:
+                    gL.toggleEvaluateAdvantageInParallel();
+                    break;
+                case 41:
+                    gL.toggleEvaluateInfiniteDeck();
+                    break;
+                case 42:
+                    gL.toggleEvaluateTotalDependent();
+                    break;
+                case 43:
+                    int megabytes = 0;
+                    while(megabytes < 1)
+                    {
+                        megabytes = (int)getConsoleLong("Memory for all evaluation tables (MB): ");
+                        if(megabytes < 1)
+                            System.out.println("Memory must be at least 1 MB");
+                    }
+                    gL.setTableMemoryMegabytes(megabytes);
+                    if(s.tableMemoryMegabytes() < megabytes)
+                        System.out.println("Limited to " + s.tableMemoryMegabytes() + 
+                                " MB, a quarter of the maximum heap, unless tables are off-heap");
+                    break;
+                case 44:
+                    gL.toggleEvaluateOffHeap();
+                    break;
+                case 45:
                     if(gL.saveSettings())
                         pressEnterToContinue("Settings successfully saved. ");
                     else
                         pressEnterToContinue("Settings could not be saved. ");
                     break;
-                case 41:
+                case 46:
                     gL.applyDefaultSettings();
                     break;
-                case 42:
+                case 47:
 //TODO make help for some menu items
                     System.out.println("TODO... Help for some menu items will go here"); //TODO
                     break;
@@ -93,6 +93,23 @@ public interface UserInterface
     public void displayPlayerAdvantage(Settings settings, Shoe shoe, 
             Recommendations recommendations, double playerAdvantage);
 
+    /**
+     * Displays the player advantage given up by total-dependent play at this point in the game
+     * @param totalDependentAdvantage advantage if every hand with the same total is played alike
+     * @param compositionDependentAdvantage advantage if every hand is played by its cards
+     */
+    public void displayTotalDependentCost(double totalDependentAdvantage, 
+            double compositionDependentAdvantage);
+
+    /**
+     * Displays how effective the transposition tables of the ROIEvaluators have been
+     * @param hits count of lookups that found their state
+     * @param misses count of lookups that did not
+     * @param evictions count of entries evicted to stay within the memory budget
+     * @param megabytes the memory budget of the tables
+     */
+    public void displayTableStats(long hits, long misses, long evictions, int megabytes);
+
     /**
      * Displays a message indicating dealer is BlackJack therefore player's non-BJ hand loses
      * @param pIdx the player concerned